@@ -1,15 +1,20 @@
 package com.tibagni.logviewer;
 
+import com.tibagni.logviewer.logger.Logger;
+
 import javax.swing.*;
-import java.util.concurrent.Executor;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 
 public abstract class AsyncPresenter {
   private final AsyncPresenterView asyncView;
   private ExecutorService bgExecutorService = Executors.newSingleThreadExecutor();
   private Executor uiExecutor = SwingUtilities::invokeLater;
 
+  // The latest task submitted for each key
+  private final Map<String, Task> latestTasks = new ConcurrentHashMap<>();
+
   protected AsyncPresenter(AsyncPresenterView asyncView) {
     this.asyncView = asyncView;
   }
@@ -19,6 +24,42 @@ public abstract class AsyncPresenter {
     bgExecutorService.execute(runnable);
   }
 
+  /**
+   * Same as {@link #doAsync(Runnable)}, but only the result of the latest task submitted with the same key matters.
+   * Submitting a new task cancels the previous one with the same key: if it did not start yet, it is skipped.
+   * Otherwise, the {@link ProgressReporter} given to it starts reporting it as cancelled, so it can stop at its next
+   * cancellation point by throwing a {@link CancellationException}
+   *
+   * @param key  Identifies which tasks supersede each other
+   * @param task Receives the progress reporter it must use to report progress and check for cancellation
+   */
+  protected void doAsync(String key, Consumer<ProgressReporter> task) {
+    Task newTask = new Task();
+    Task previousTask = latestTasks.put(key, newTask);
+    if (previousTask != null) {
+      previousTask.cancel();
+    }
+
+    doAsync(() -> {
+      try {
+        if (!newTask.isCancelled()) {
+          task.accept(newTask);
+        }
+      } catch (CancellationException e) {
+        Logger.debug("Task '" + key + "' was superseded by a newer one");
+      } finally {
+        latestTasks.remove(key, newTask);
+      }
+    });
+  }
+
+  /**
+   * Runs 'runnable' in the background without showing the view as loading. For work the user is not waiting for
+   */
+  protected void doInBackground(Runnable runnable) {
+    bgExecutorService.execute(runnable);
+  }
+
   protected void updateAsyncProgress(int progress, String note) {
     uiExecutor.execute(() -> {
       if (progress >= 100) {
@@ -37,6 +78,27 @@ public abstract class AsyncPresenter {
     bgExecutorService.shutdownNow();
   }
 
+  private class Task implements ProgressReporter {
+    private volatile boolean cancelled;
+
+    @Override
+    public void onProgress(int progress, String description) {
+      // The newer task reports its own progress
+      if (!cancelled) {
+        updateAsyncProgress(progress, description);
+      }
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return cancelled;
+    }
+
+    private void cancel() {
+      cancelled = true;
+    }
+  }
+
   public interface AsyncPresenterView {
     void showStartLoading();
     void showLoadingProgress(int progress, String note);
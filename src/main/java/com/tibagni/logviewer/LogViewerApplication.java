@@ -1,6 +1,7 @@
 package com.tibagni.logviewer;
 
 import com.formdev.flatlaf.util.UIScale;
+import com.tibagni.logviewer.logger.EdtWatchdog;
 import com.tibagni.logviewer.logger.Logger;
 import com.tibagni.logviewer.preferences.LogViewerPreferences;
 import com.tibagni.logviewer.rc.CrashReportConfig;
@@ -76,6 +77,11 @@ public class LogViewerApplication implements UpdateManager.UpdateListener {
   }
 
   private void start(Set<File> initialLogFiles) {
+    EdtWatchdog edtWatchdog = ServiceLocator.INSTANCE.getEdtWatchdog();
+    if (edtWatchdog != null) {
+      edtWatchdog.start();
+    }
+
     startCheckingForUpdates();
     initLookAndFeel();
 
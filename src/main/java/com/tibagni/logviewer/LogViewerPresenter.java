@@ -1,5 +1,6 @@
 package com.tibagni.logviewer;
 
+import com.tibagni.logviewer.filter.CandidateLines;
 import com.tibagni.logviewer.filter.Filter;
 import com.tibagni.logviewer.log.LogEntry;
 import com.tibagni.logviewer.log.LogStream;
@@ -48,6 +49,8 @@ public interface LogViewerPresenter {
   void ignoreLogsAfter(int index);
   void resetIgnoredLogs(boolean resetStarting, boolean resetEnding);
   int getVisibleLogsOffset();
+  int getFilteredLogPosition(LogEntry entry);
+  CandidateLines getCandidateLines();
 
   LogEntry getFirstVisibleLog();
   LogEntry getLastVisibleLog();
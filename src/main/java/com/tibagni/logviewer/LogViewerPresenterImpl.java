@@ -1,40 +1,98 @@
 package com.tibagni.logviewer;
 
+import com.tibagni.logviewer.filter.CandidateLines;
 import com.tibagni.logviewer.filter.Filter;
+import com.tibagni.logviewer.filter.FilterMatchCache;
 import com.tibagni.logviewer.filter.Filters;
 import com.tibagni.logviewer.log.LogEntry;
 import com.tibagni.logviewer.log.LogStream;
 import com.tibagni.logviewer.log.LogTimestamp;
+import com.tibagni.logviewer.log.TimestampIndex;
 import com.tibagni.logviewer.logger.Logger;
 import com.tibagni.logviewer.preferences.LogViewerPreferences;
 import com.tibagni.logviewer.util.StringUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.ArrayUtils;
-import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 import static com.tibagni.logviewer.logger.ProfilerKt.wrapProfiler;
 
 public class LogViewerPresenterImpl extends AsyncPresenter implements LogViewerPresenter {
+  // Only the latest of these tasks matters. A new one cancels the one that is running
+  private static final String LOAD_LOGS_TASK = "load-logs";
+  private static final String APPLY_FILTERS_TASK = "apply-filters";
+
   private final LogViewerPresenterView view;
 
-  private final List<LogEntry> filteredLogs;
-  private final List<LogEntry> cachedAllowedFilteredLogs;
+  // The logs matched by the applied filters, and only the ones of the allowed streams (the ones shown on the UI).
+  // Each is replaced as a whole, so the positions of the entries of each filter always belong to the logs they are
+  // published with, and the lists are never changed, as the view shows them without copying
+  private volatile FilteredLogs filteredLogs = FilteredLogs.EMPTY;
+  private volatile FilteredLogs allowedFilteredLogs = FilteredLogs.EMPTY;
+
+  // Used to go to a timestamp without checking all entries. The indices are built in the background whenever the
+  // logs change, and published together with them (before they are ready) so they never belong to other logs
+  private volatile IndexedLogs indexedLogs;
+  private volatile IndexedLogs allowedFilteredLogsIndex = IndexedLogs.EMPTY;
 
   private final List<String> unsavedFilterGroups;
   private final Map<LogStream, Boolean> allowedStreamsMap;
   private final LogViewerPreferences userPrefs;
 
+  // Lines matched by each filter on the currently visible logs. Replaced whenever the visible logs change
+  private FilterMatchCache filterMatchCache = new FilterMatchCache();
+
   private final LogsRepository logsRepository;
   private final MyLogsRepository myLogsRepository;
   private final FiltersRepository filtersRepository;
 
+  private static final class FilteredLogs {
+    static final FilteredLogs EMPTY = new FilteredLogs(Collections.emptyList(), Collections.emptyMap());
+
+    final List<LogEntry> logs;
+    // Positions in 'logs' of the entries matched by each applied filter. Used to navigate between the entries of a
+    // filter without checking the entries again
+    final Map<Filter, int[]> positions;
+
+    FilteredLogs(List<LogEntry> logs, Map<Filter, int[]> positions) {
+      this.logs = logs;
+      this.positions = positions;
+    }
+
+    FilteredLogs withoutFilter(Filter filter) {
+      if (!positions.containsKey(filter)) {
+        return this;
+      }
+
+      Map<Filter, int[]> result = new IdentityHashMap<>(positions);
+      result.remove(filter);
+      return new FilteredLogs(logs, result);
+    }
+  }
+
+  /**
+   * Logs and the index to find them by timestamp, completed once it is built
+   */
+  private static final class IndexedLogs {
+    static final IndexedLogs EMPTY = new IndexedLogs(Collections.emptyList(),
+        CompletableFuture.completedFuture(TimestampIndex.create(Collections.emptyList())));
+
+    final List<LogEntry> logs;
+    final CompletableFuture<TimestampIndex> timestampIndex;
+
+    IndexedLogs(List<LogEntry> logs, CompletableFuture<TimestampIndex> timestampIndex) {
+      this.logs = logs;
+      this.timestampIndex = timestampIndex;
+    }
+  }
+
   LogViewerPresenterImpl(LogViewerPresenterView view,
                          LogViewerPreferences userPrefs,
                          LogsRepository logsRepository,
@@ -48,8 +106,6 @@ public class LogViewerPresenterImpl extends AsyncPresenter implements LogViewerP
     this.filtersRepository = filtersRepository;
 
     unsavedFilterGroups = new ArrayList<>();
-    cachedAllowedFilteredLogs = new ArrayList<>();
-    filteredLogs = new ArrayList<>();
     allowedStreamsMap = new HashMap<>();
   }
 
@@ -198,8 +254,9 @@ public class LogViewerPresenterImpl extends AsyncPresenter implements LogViewerP
   @Override
   public int getNextFilteredLogForFilter(Filter filter, int firstLogIndexSearch) {
     // we need to navigate on the logs that are being shown on the UI,
-    // so use 'cachedAllowedFilteredLogs' here
-    if (cachedAllowedFilteredLogs.isEmpty()) {
+    // so use 'allowedFilteredLogs' here
+    FilteredLogs allowed = allowedFilteredLogs;
+    if (allowed.logs.isEmpty()) {
       return -1;
     }
 
@@ -207,16 +264,21 @@ public class LogViewerPresenterImpl extends AsyncPresenter implements LogViewerP
       firstLogIndexSearch = -1;
     }
 
-    if (firstLogIndexSearch >= cachedAllowedFilteredLogs.size()) {
-      firstLogIndexSearch = cachedAllowedFilteredLogs.size() - 1;
+    if (firstLogIndexSearch >= allowed.logs.size()) {
+      firstLogIndexSearch = allowed.logs.size() - 1;
+    }
+
+    int[] positions = allowed.positions.get(filter);
+    if (positions != null) {
+      return getNextPosition(positions, firstLogIndexSearch);
     }
 
     int startSearch = firstLogIndexSearch + 1;
-    int endSearch = startSearch + cachedAllowedFilteredLogs.size();
+    int endSearch = startSearch + allowed.logs.size();
 
     for (int i = startSearch; i <= endSearch; i++) {
-      int index = i % cachedAllowedFilteredLogs.size();
-      if (filter.appliesTo(cachedAllowedFilteredLogs.get(index))) {
+      int index = i % allowed.logs.size();
+      if (filter.appliesTo(allowed.logs.get(index))) {
         if (index < firstLogIndexSearch) {
           view.showNavigationNextOver();
         }
@@ -230,8 +292,9 @@ public class LogViewerPresenterImpl extends AsyncPresenter implements LogViewerP
   @Override
   public int getPrevFilteredLogForFilter(Filter filter, int firstLogIndexSearch) {
     // we need to navigate on the logs that are being shown on the UI,
-    // so use 'cachedAllowedFilteredLogs' here
-    if (cachedAllowedFilteredLogs.isEmpty()) {
+    // so use 'allowedFilteredLogs' here
+    FilteredLogs allowed = allowedFilteredLogs;
+    if (allowed.logs.isEmpty()) {
       return -1;
     }
 
@@ -239,16 +302,21 @@ public class LogViewerPresenterImpl extends AsyncPresenter implements LogViewerP
       firstLogIndexSearch = -1;
     }
 
-    if (firstLogIndexSearch >= cachedAllowedFilteredLogs.size()) {
-      firstLogIndexSearch = cachedAllowedFilteredLogs.size() - 1;
+    if (firstLogIndexSearch >= allowed.logs.size()) {
+      firstLogIndexSearch = allowed.logs.size() - 1;
+    }
+
+    int[] positions = allowed.positions.get(filter);
+    if (positions != null) {
+      return getPrevPosition(positions, firstLogIndexSearch, allowed.logs.size());
     }
 
     int startSearch = firstLogIndexSearch < 0 ? firstLogIndexSearch : firstLogIndexSearch - 1;
-    int endSearch = startSearch - cachedAllowedFilteredLogs.size();
+    int endSearch = startSearch - allowed.logs.size();
 
     for (int i = startSearch; i >= endSearch; i--) {
-      int index = i >= 0 ? i : (cachedAllowedFilteredLogs.size() + i);
-      if (filter.appliesTo(cachedAllowedFilteredLogs.get(index))) {
+      int index = i >= 0 ? i : (allowed.logs.size() + i);
+      if (filter.appliesTo(allowed.logs.get(index))) {
         if (index > firstLogIndexSearch && firstLogIndexSearch >= 0) {
           view.showNavigationPrevOver();
         }
@@ -259,6 +327,44 @@ public class LogViewerPresenterImpl extends AsyncPresenter implements LogViewerP
     return -1;
   }
 
+  private int getNextPosition(int[] positions, int firstLogIndexSearch) {
+    if (positions.length == 0) {
+      return -1;
+    }
+
+    int i = Arrays.binarySearch(positions, firstLogIndexSearch + 1);
+    if (i < 0) i = -i - 1;
+    if (i < positions.length) {
+      return positions[i];
+    }
+
+    // Nothing after 'firstLogIndexSearch'. Start over from the beginning
+    if (positions[0] < firstLogIndexSearch) {
+      view.showNavigationNextOver();
+    }
+    return positions[0];
+  }
+
+  private int getPrevPosition(int[] positions, int firstLogIndexSearch, int logsCount) {
+    if (positions.length == 0) {
+      return -1;
+    }
+
+    int target = firstLogIndexSearch < 0 ? logsCount - 1 : firstLogIndexSearch - 1;
+    int i = Arrays.binarySearch(positions, target);
+    if (i < 0) i = -i - 2;
+    if (i >= 0) {
+      return positions[i];
+    }
+
+    // Nothing before 'firstLogIndexSearch'. Start over from the end
+    int last = positions[positions.length - 1];
+    if (last > firstLogIndexSearch && firstLogIndexSearch >= 0) {
+      view.showNavigationPrevOver();
+    }
+    return last;
+  }
+
   @Override
   public void goToTimestamp(String timestamp) {
     try {
@@ -284,40 +390,54 @@ public class LogViewerPresenterImpl extends AsyncPresenter implements LogViewerP
       LogTimestamp searchTimestamp = new LogTimestamp(month, day, hour, min, sec, hund);
       Logger.info("Going to timestamp: " + searchTimestamp);
 
-      int unfilteredLogIndex = wrapProfiler(
-          "findClosestLogIndexByTimestamp-AllLogs",
-          () -> findClosestLogIndexByTimestamp(searchTimestamp, logsRepository.getCurrentlyOpenedLogs())
-      );
-      int filteredLogIndex = wrapProfiler(
-          "findClosestLogIndexByTimestamp-FilteredLogs",
-          () -> findClosestLogIndexByTimestamp(searchTimestamp, cachedAllowedFilteredLogs)
-      );
+      IndexedLogs logs = indexedLogs;
+      if (logs == null) {
+        logs = visibleLogsChanged();
+      }
 
-      view.showLogLocationAtSearchedTimestamp(unfilteredLogIndex, filteredLogIndex);
+      // If the indices are not ready yet, go to the timestamp once they are built instead of waiting for them here
+      logs.timestampIndex.thenAcceptBoth(allowedFilteredLogsIndex.timestampIndex,
+          (logsIndex, filteredLogsIndex) ->
+              doOnUiThread(() -> showLogLocationAt(searchTimestamp, logsIndex, filteredLogsIndex)));
     } catch (Exception e) {
       Logger.error("Failed to parse timestamp: " + timestamp, e);
       view.showInvalidTimestampSearchError(timestamp);
     }
   }
 
-  private int findClosestLogIndexByTimestamp(@NotNull LogTimestamp timestamp, List<LogEntry> logList) {
-    if (logList == null || logList.isEmpty()) {
-      return -1;
-    }
+  private void showLogLocationAt(LogTimestamp searchTimestamp, TimestampIndex logsIndex,
+                                 TimestampIndex filteredLogsIndex) {
+    int unfilteredLogIndex = wrapProfiler(
+        "findClosestLogIndexByTimestamp-AllLogs",
+        () -> logsIndex.findClosestIndex(searchTimestamp.getPacked())
+    );
+    int filteredLogIndex = wrapProfiler(
+        "findClosestLogIndexByTimestamp-FilteredLogs",
+        () -> filteredLogsIndex.findClosestIndex(searchTimestamp.getPacked())
+    );
+
+    view.showLogLocationAtSearchedTimestamp(unfilteredLogIndex, filteredLogIndex);
+  }
 
-    int index = -1;
-    for (LogEntry entry : logList) {
-      index++;
-      if (timestamp.compareTo(entry.timestamp) == 0) {
-        break;
-      } else if (timestamp.compareTo(entry.timestamp) < 0) {
-        // We want the log line before
-        if (index > 0) index--;
-        break;
-      }
-    }
+  /**
+   * Publishes the currently opened logs, with their index being built in the background
+   *
+   * @return the logs that were published
+   */
+  private IndexedLogs visibleLogsChanged() {
+    IndexedLogs logs = indexInBackground(logsRepository.getCurrentlyOpenedLogs());
+    indexedLogs = logs;
+    return logs;
+  }
 
-    return index;
+  /**
+   * Starts building the timestamp index of 'logs' in the background. Lookups are chained to it, so a pending index
+   * is never built again
+   */
+  private IndexedLogs indexInBackground(List<LogEntry> logs) {
+    CompletableFuture<TimestampIndex> index =
+        CompletableFuture.supplyAsync(() -> TimestampIndex.create(logs), this::doInBackground);
+    return new IndexedLogs(logs, index);
   }
 
   @Override
@@ -404,20 +524,22 @@ public class LogViewerPresenterImpl extends AsyncPresenter implements LogViewerP
   public void  loadLogs(File[] logFiles, Charset charset) {
     // Clean up the filters info as it does not apply anymore
     cleanUpFilterTempInfo();
-    doAsync(() -> {
+    filterMatchCache = new FilterMatchCache();
+    doAsync(LOAD_LOGS_TASK, progressReporter -> {
       try {
-        logsRepository.openLogFiles(logFiles, charset, this::updateAsyncProgress);
+        logsRepository.openLogFiles(logFiles, charset, progressReporter);
+        List<LogEntry> openedLogs = logsRepository.getCurrentlyOpenedLogs();
+        indexedLogs = new IndexedLogs(openedLogs, CompletableFuture.completedFuture(TimestampIndex.create(openedLogs)));
         rebuildLogStreamsMap(logsRepository.getAvailableStreams());
-        filteredLogs.clear();
-        cachedAllowedFilteredLogs.clear();
-        cachedAllowedFilteredLogs.addAll(excludeNonAllowedStreams(filteredLogs));
+        filteredLogs = FilteredLogs.EMPTY;
+        updateAllowedFilteredLogs();
 
         List<String> skippedLogs = logsRepository.getLastSkippedLogFiles();
         Map<String, String> bugReports = logsRepository.getPotentialBugReports();
         final boolean myLogsChanged = updateMyLogs();
         doOnUiThread(() -> {
-          view.showFilteredLogs(cachedAllowedFilteredLogs);
-          view.showLogs(logsRepository.getCurrentlyOpenedLogs());
+          view.showFilteredLogs(allowedFilteredLogs.logs);
+          view.showLogs(openedLogs);
           view.showAvailableLogStreams(allowedStreamsMap.keySet());
           // In case something changed with 'My Logs', make sure to update the UI as well
           if (myLogsChanged) {
@@ -477,13 +599,14 @@ public class LogViewerPresenterImpl extends AsyncPresenter implements LogViewerP
 
   @Override
   public void saveFilteredLogs(File file) {
-    if (filteredLogs.isEmpty()) {
+    List<LogEntry> logs = filteredLogs.logs;
+    if (logs.isEmpty()) {
       return;
     }
 
     try {
       BufferedWriter fileWriter = new BufferedWriter(new FileWriter(file));
-      for (LogEntry entry : filteredLogs) {
+      for (LogEntry entry : logs) {
         fileWriter.write(entry.toString());
         fileWriter.newLine();
       }
@@ -504,7 +627,7 @@ public class LogViewerPresenterImpl extends AsyncPresenter implements LogViewerP
   public void applyFilters() {
     testStats.applyFiltersCallCount++;
     if (logsRepository.getCurrentlyOpenedLogs().isEmpty()) {
-      doOnUiThread(() -> view.showFilteredLogs(cachedAllowedFilteredLogs));
+      doOnUiThread(() -> view.showFilteredLogs(allowedFilteredLogs.logs));
       return;
     }
 
@@ -514,14 +637,20 @@ public class LogViewerPresenterImpl extends AsyncPresenter implements LogViewerP
     cleanUpFilterTempInfo();
 
     List<Filter> toApply = getFiltersThat(Filter::isApplied);
-    doAsync(() -> {
-      filteredLogs.clear();
-      filteredLogs.addAll(Filters.applyMultipleFilters(
-          logsRepository.getCurrentlyOpenedLogs(), toApply.toArray(new Filter[0]), this::updateAsyncProgress));
-      cachedAllowedFilteredLogs.clear();
-      cachedAllowedFilteredLogs.addAll(excludeNonAllowedStreams(filteredLogs));
+    List<LogEntry> logs = logsRepository.getCurrentlyOpenedLogs();
+    FilterMatchCache cache = filterMatchCache;
+    doAsync(APPLY_FILTERS_TASK, progressReporter -> {
+      Filter[] filters = toApply.toArray(new Filter[0]);
+      Filters.Result result = Filters.applyFilters(logs, filters, cache, getCandidateLines(),
+          progressReporter);
+      Map<Filter, int[]> positions = new IdentityHashMap<>();
+      for (int i = 0; i < filters.length; i++) {
+        positions.put(filters[i], result.getFilterPositions(i));
+      }
+      filteredLogs = new FilteredLogs(result.getFilteredLogs(), positions);
+      updateAllowedFilteredLogs();
       updateFiltersContextInfo();
-      doOnUiThread(() -> view.showFilteredLogs(cachedAllowedFilteredLogs));
+      doOnUiThread(() -> view.showFilteredLogs(allowedFilteredLogs.logs));
     });
   }
 
@@ -529,6 +658,10 @@ public class LogViewerPresenterImpl extends AsyncPresenter implements LogViewerP
   public void filterEdited(Filter filter) {
     checkForUnsavedChanges();
 
+    // The known positions of this filter are not valid anymore
+    filteredLogs = filteredLogs.withoutFilter(filter);
+    allowedFilteredLogs = allowedFilteredLogs.withoutFilter(filter);
+
     if (userPrefs.getReapplyFiltersAfterEdit()) {
       // Make sure the edited filter will also be re-applied.
       // If it was not previously applied, apply now
@@ -557,19 +690,12 @@ public class LogViewerPresenterImpl extends AsyncPresenter implements LogViewerP
 
     allowedStreamsMap.put(stream, allowed);
     updateFiltersContextInfo();
-    cachedAllowedFilteredLogs.clear();
-    cachedAllowedFilteredLogs.addAll(excludeNonAllowedStreams(filteredLogs));
-    view.showFilteredLogs(cachedAllowedFilteredLogs);
+    updateAllowedFilteredLogs();
+    view.showFilteredLogs(allowedFilteredLogs.logs);
   }
 
   private void updateFiltersContextInfo() {
-    Set<LogStream> allowedStreams = new HashSet<>();
-    for (Map.Entry<LogStream, Boolean> entry : allowedStreamsMap.entrySet()) {
-      if (entry.getValue()) {
-        allowedStreams.add(entry.getKey());
-      }
-    }
-
+    Set<LogStream> allowedStreams = getAllowedStreams();
     forEachFilter(filter -> {
       Filter.ContextInfo filterTemporaryInfo = filter.getTemporaryInfo();
       if (filterTemporaryInfo != null) {
@@ -605,7 +731,8 @@ public class LogViewerPresenterImpl extends AsyncPresenter implements LogViewerP
     }
 
     logsRepository.setFirstVisibleLogIndex(index);
-    view.showLogs(logsRepository.getCurrentlyOpenedLogs());
+    filterMatchCache = new FilterMatchCache();
+    view.showLogs(visibleLogsChanged().logs);
     applyFilters();
   }
 
@@ -623,7 +750,8 @@ public class LogViewerPresenterImpl extends AsyncPresenter implements LogViewerP
     }
 
     logsRepository.setLastVisibleLogIndex(index);
-    view.showLogs(logsRepository.getCurrentlyOpenedLogs());
+    filterMatchCache = new FilterMatchCache();
+    view.showLogs(visibleLogsChanged().logs);
     applyFilters();
   }
 
@@ -636,7 +764,8 @@ public class LogViewerPresenterImpl extends AsyncPresenter implements LogViewerP
       logsRepository.setLastVisibleLogIndex(-1);
     }
 
-    view.showLogs(logsRepository.getCurrentlyOpenedLogs());
+    filterMatchCache = new FilterMatchCache();
+    view.showLogs(visibleLogsChanged().logs);
     applyFilters();
   }
 
@@ -645,6 +774,34 @@ public class LogViewerPresenterImpl extends AsyncPresenter implements LogViewerP
     return logsRepository.getFirstVisibleLogIndex();
   }
 
+  @Override
+  public int getFilteredLogPosition(LogEntry entry) {
+    // The filtered logs keep the order of the opened logs, so they are sorted by index
+    List<LogEntry> logs = allowedFilteredLogs.logs;
+    int low = 0;
+    int high = logs.size() - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      LogEntry middleEntry = logs.get(middle);
+      if (middleEntry.getIndex() < entry.getIndex()) {
+        low = middle + 1;
+      } else if (middleEntry.getIndex() > entry.getIndex()) {
+        high = middle - 1;
+      } else {
+        return (middleEntry == entry || middleEntry.equals(entry)) ? middle : -1;
+      }
+    }
+
+    return -1;
+  }
+
+  @Override
+  public CandidateLines getCandidateLines() {
+    // Without an index, all lines are candidates
+    CandidateLines textIndex = logsRepository.getTextIndex();
+    return textIndex != null ? textIndex : CandidateLines.ALL;
+  }
+
   @Override
   public LogEntry getFirstVisibleLog() {
     int index = logsRepository.getFirstVisibleLogIndex();
@@ -743,13 +900,40 @@ public class LogViewerPresenterImpl extends AsyncPresenter implements LogViewerP
     return false;
   }
 
-  private List<LogEntry> excludeNonAllowedStreams(List<LogEntry> entries) {
-    if (allowedStreamsMap.isEmpty()) {
-      // If there is no stream restriction just work with all entries
-      return entries;
+  private void updateAllowedFilteredLogs() {
+    FilteredLogs filtered = filteredLogs;
+    List<LogEntry> allowedLogs = excludeNonAllowedStreams(filtered.logs);
+    allowedFilteredLogs = new FilteredLogs(allowedLogs, excludeNonAllowedPositions(filtered, allowedLogs));
+    // Not built here, as this may run on the UI thread (i.e. when a stream is allowed)
+    allowedFilteredLogsIndex = indexInBackground(allowedLogs);
+  }
+
+  private Map<Filter, int[]> excludeNonAllowedPositions(FilteredLogs filtered, List<LogEntry> allowedLogs) {
+    if (filtered.positions.isEmpty() || allowedLogs.size() == filtered.logs.size()) {
+      // All filtered logs are allowed, so the positions are the same
+      return filtered.positions;
     }
 
-    ArrayList<LogEntry> result = new ArrayList<>();
+    // Where each filtered entry is in 'allowedLogs' (or -1 if it is not allowed)
+    Set<LogStream> allowedStreams = getAllowedStreams();
+    int[] allowedPositions = new int[filtered.logs.size()];
+    int nextAllowedPosition = 0;
+    for (int i = 0; i < filtered.logs.size(); i++) {
+      boolean isAllowed = allowedStreams.contains(filtered.logs.get(i).getStream());
+      allowedPositions[i] = isAllowed ? nextAllowedPosition++ : -1;
+    }
+
+    Map<Filter, int[]> result = new IdentityHashMap<>();
+    for (Map.Entry<Filter, int[]> entry : filtered.positions.entrySet()) {
+      result.put(entry.getKey(), Arrays.stream(entry.getValue())
+          .map(position -> allowedPositions[position])
+          .filter(position -> position >= 0)
+          .toArray());
+    }
+    return result;
+  }
+
+  private Set<LogStream> getAllowedStreams() {
     Set<LogStream> allowedStreams = new HashSet<>();
     for (Map.Entry<LogStream, Boolean> entry : allowedStreamsMap.entrySet()) {
       if (entry.getValue()) {
@@ -757,13 +941,29 @@ public class LogViewerPresenterImpl extends AsyncPresenter implements LogViewerP
       }
     }
 
+    return allowedStreams;
+  }
+
+  private List<LogEntry> excludeNonAllowedStreams(List<LogEntry> entries) {
+    if (allowedStreamsMap.isEmpty()) {
+      // If there is no stream restriction just work with all entries
+      return entries;
+    }
+
+    Set<LogStream> allowedStreams = getAllowedStreams();
+    if (allowedStreams.size() == allowedStreamsMap.size()) {
+      // All streams are allowed, so the same entries can be shown
+      return entries;
+    }
+
+    ArrayList<LogEntry> result = new ArrayList<>();
     for (LogEntry entry : entries) {
       if (allowedStreams.contains(entry.getStream())) {
         result.add(entry);
       }
     }
 
-    return result;
+    return Collections.unmodifiableList(result);
   }
 
   @Override
@@ -805,10 +1005,8 @@ public class LogViewerPresenterImpl extends AsyncPresenter implements LogViewerP
   }
 
   private void cleanUpFilterInfoFromLogEntries() {
-    if (filteredLogs != null) {
-      for (LogEntry entry : filteredLogs) {
-        entry.setAppliedFilter(null);
-      }
+    for (LogEntry entry : filteredLogs.logs) {
+      entry.setAppliedFilter(null);
     }
   }
 
@@ -913,11 +1111,12 @@ public class LogViewerPresenterImpl extends AsyncPresenter implements LogViewerP
   }
 
   void setFilteredLogsForTesting(LogEntry[] filteredLogs, boolean setCached) {
-    this.filteredLogs.clear();
-    this.filteredLogs.addAll(Arrays.asList(filteredLogs));
+    this.filteredLogs = new FilteredLogs(Arrays.asList(filteredLogs), Collections.emptyMap());
+    this.allowedFilteredLogs = new FilteredLogs(allowedFilteredLogs.logs, Collections.emptyMap());
     if (setCached) {
-      this.cachedAllowedFilteredLogs.clear();
-      this.cachedAllowedFilteredLogs.addAll(Arrays.asList(filteredLogs));
+      this.allowedFilteredLogs = this.filteredLogs;
+      this.allowedFilteredLogsIndex = new IndexedLogs(allowedFilteredLogs.logs,
+          CompletableFuture.completedFuture(TimestampIndex.create(allowedFilteredLogs.logs)));
     }
   }
 
@@ -143,6 +143,9 @@ class LogViewerViewImpl(private val mainView: MainView, initialLogFiles: Set<Fil
       ServiceLocator.filtersRepository
     )
     presenter.init()
+    logList.candidateLinesProvider = presenter::getCandidateLines
+    filteredLogList.candidateLinesProvider = presenter::getCandidateLines
+    myLogsList.candidateLinesProvider = presenter::getCandidateLines
 
     logRenderer = LogCellRenderer()
     logRenderer.showLineNumbers(userPrefs.showLineNumbers)
@@ -158,12 +161,12 @@ class LogViewerViewImpl(private val mainView: MainView, initialLogFiles: Set<Fil
       override fun onShowLineNumbersChanged() {
         logRenderer.showLineNumbers(userPrefs.showLineNumbers)
         myLogsRenderer.showLineNumbers(userPrefs.showLineNumbers)
-        logList.table.revalidate()
-        logList.table.repaint()
-        filteredLogList.table.revalidate()
-        filteredLogList.table.repaint()
-        myLogsList.table.revalidate()
-        myLogsList.table.repaint()
+        logList.viewport.revalidate()
+        logList.viewport.repaint()
+        filteredLogList.viewport.revalidate()
+        filteredLogList.viewport.repaint()
+        myLogsList.viewport.revalidate()
+        myLogsList.viewport.repaint()
       }
 
       /*
@@ -187,9 +190,9 @@ class LogViewerViewImpl(private val mainView: MainView, initialLogFiles: Set<Fil
 
     setupFiltersContextActions()
 
-    logList.table.setDefaultRenderer(LogEntry::class.java, logRenderer)
-    filteredLogList.table.setDefaultRenderer(LogEntry::class.java, logRenderer)
-    myLogsList.table.setDefaultRenderer(LogEntry::class.java, myLogsRenderer)
+    logList.viewport.renderer = logRenderer
+    filteredLogList.viewport.renderer = logRenderer
+    myLogsList.viewport.renderer = myLogsRenderer
     setupLogsContextActions()
     setupFilteredLogsContextActions()
     setupMyLogsContextActions()
@@ -385,20 +388,20 @@ class LogViewerViewImpl(private val mainView: MainView, initialLogFiles: Set<Fil
       }
 
       override fun onNavigateNextFilteredLog(filter: Filter) {
-        val selectedFilteredLog = filteredLogList.table.selectedRow
+        val selectedFilteredLog = filteredLogList.viewport.selectedRow
         val filteredLogIdx = presenter.getNextFilteredLogForFilter(filter, selectedFilteredLog)
         if (filteredLogIdx != -1) {
-          SwingUtils.scrollToVisible(filteredLogList.table, filteredLogIdx)
-          filteredLogList.table.setRowSelectionInterval(filteredLogIdx, filteredLogIdx)
+          filteredLogList.viewport.scrollToVisible(filteredLogIdx)
+          filteredLogList.viewport.setRowSelectionInterval(filteredLogIdx, filteredLogIdx)
         }
       }
 
       override fun onNavigatePrevFilteredLog(filter: Filter) {
-        val selectedFilteredLog = filteredLogList.table.selectedRow
+        val selectedFilteredLog = filteredLogList.viewport.selectedRow
         val filteredLogIdx = presenter.getPrevFilteredLogForFilter(filter, selectedFilteredLog)
         if (filteredLogIdx != -1) {
-          SwingUtils.scrollToVisible(filteredLogList.table, filteredLogIdx)
-          filteredLogList.table.setRowSelectionInterval(filteredLogIdx, filteredLogIdx)
+          filteredLogList.viewport.scrollToVisible(filteredLogIdx)
+          filteredLogList.viewport.setRowSelectionInterval(filteredLogIdx, filteredLogIdx)
         }
       }
 
@@ -427,42 +430,36 @@ class LogViewerViewImpl(private val mainView: MainView, initialLogFiles: Set<Fil
   private fun saveFilter(filtersGroup: String) = presenter.saveFilters(filtersGroup)
 
   private fun setupLogsContextActions() {
-    logList.table.addMouseListener(object : MouseAdapter() {
+    logList.viewport.addMouseListener(object : MouseAdapter() {
       override fun mouseClicked(e: MouseEvent) {
         if (e.clickCount == 2) {
-          val selectedIndex = logList.table.selectedRow
+          val selectedIndex = logList.viewport.selectedRow
           val clickedEntry = logListTableModel.getValueAt(selectedIndex, 0) as LogEntry
           // go back to the filter list pos
           if (clickedEntry.appliedFilter != null) {
-            var logIndex = -1
-            for (index in 0 until filteredLogList.table.rowCount) {
-              if (filteredLogListTableModel.getValueAt(index, 0) == clickedEntry) {
-                logIndex = index
-                break
-              }
-            }
-            if (logIndex != -1) {
-              SwingUtils.scrollToVisible(filteredLogList.table, logIndex)
-              filteredLogList.table.setRowSelectionInterval(logIndex, logIndex)
+            val logIndex = presenter.getFilteredLogPosition(clickedEntry)
+            if (logIndex != -1 && logIndex < filteredLogList.viewport.rowCount) {
+              filteredLogList.viewport.scrollToVisible(logIndex)
+              filteredLogList.viewport.setRowSelectionInterval(logIndex, logIndex)
             }
           }
-        } else if (SwingUtilities.isRightMouseButton(e) && logList.table.selectedRow != -1) {
+        } else if (SwingUtilities.isRightMouseButton(e) && logList.viewport.selectedRow != -1) {
           val popup = JPopupMenu()
-          addCommonLogsContextActions(popup, logList.table.selectedRows, logListTableModel)
-          if (logList.table.selectedRowCount == 1) {
+          addCommonLogsContextActions(popup, logList.viewport.selectedRows, logListTableModel)
+          if (logList.viewport.selectedRowCount == 1) {
             popup.add(JSeparator())
             popup.add("Ignore all logs before this point").addActionListener {
-              val entry = logListTableModel.getValueAt(logList.table.selectedRow, 0) as LogEntry
+              val entry = logListTableModel.getValueAt(logList.viewport.selectedRow, 0) as LogEntry
               presenter.ignoreLogsBefore(entry.index)
             }
 
             popup.add("Ignore all logs after this point").addActionListener {
-              val entry = logListTableModel.getValueAt(logList.table.selectedRow, 0) as LogEntry
+              val entry = logListTableModel.getValueAt(logList.viewport.selectedRow, 0) as LogEntry
               presenter.ignoreLogsAfter(entry.index)
             }
           }
 
-          popup.show(logList.table, e.x, e.y)
+          popup.show(logList.viewport, e.x, e.y)
         }
       }
     })
@@ -521,61 +518,57 @@ class LogViewerViewImpl(private val mainView: MainView, initialLogFiles: Set<Fil
   }
 
   private fun setupFilteredLogsContextActions() {
-    filteredLogList.table.addMouseListener(object : MouseAdapter() {
+    filteredLogList.viewport.addMouseListener(object : MouseAdapter() {
       override fun mouseClicked(e: MouseEvent) {
         if (e.clickCount == 2) {
-          val selectedIndex = filteredLogList.table.selectedRow
+          val selectedIndex = filteredLogList.viewport.selectedRow
           val clickedEntry = filteredLogListTableModel.getValueAt(selectedIndex, 0) as LogEntry
           val logIndex = (clickedEntry.index - presenter.visibleLogsOffset) // Map to the visible index
-          SwingUtils.scrollToVisible(logList.table, logIndex)
-          logList.table.setRowSelectionInterval(logIndex, logIndex)
-        } else if (SwingUtilities.isRightMouseButton(e) && filteredLogList.table.selectedRow != -1) {
+          logList.viewport.scrollToVisible(logIndex)
+          logList.viewport.setRowSelectionInterval(logIndex, logIndex)
+        } else if (SwingUtilities.isRightMouseButton(e) && filteredLogList.viewport.selectedRow != -1) {
           val popup = JPopupMenu()
-          addCommonLogsContextActions(popup, filteredLogList.table.selectedRows, filteredLogListTableModel)
-          popup.show(filteredLogList.table, e.x, e.y)
+          addCommonLogsContextActions(popup, filteredLogList.viewport.selectedRows, filteredLogListTableModel)
+          popup.show(filteredLogList.viewport, e.x, e.y)
         }
       }
     })
   }
 
   private fun setupMyLogsContextActions() {
-    myLogsList.table.addMouseListener(object : MouseAdapter() {
+    myLogsList.viewport.addMouseListener(object : MouseAdapter() {
       override fun mouseClicked(e: MouseEvent) {
         if (e.clickCount == 2) {
-          val selectedIndex = myLogsList.table.selectedRow
+          val selectedIndex = myLogsList.viewport.selectedRow
           val clickedEntry = myLogsListTableModel.getValueAt(selectedIndex, 0) as LogEntry
-          var logIndex = clickedEntry.index
+          val filteredLogIndex =
+            if (clickedEntry.appliedFilter != null) presenter.getFilteredLogPosition(clickedEntry) else -1
 
           // if it is filtered, first jump to the filtered log panel
-          val targetTable = if (clickedEntry.appliedFilter != null) {
-            for (index in 0 until filteredLogList.table.rowCount) {
-              if (filteredLogListTableModel.getValueAt(index, 0) == clickedEntry) {
-                logIndex = index
-                break
-              }
-            }
-            filteredLogList.table
+          val (targetTable, logIndex) = if (filteredLogIndex != -1) {
+            Pair(filteredLogList.viewport, filteredLogIndex)
           } else {
-            logIndex -= presenter.visibleLogsOffset // Map to the visible index
-            logList.table
+            Pair(logList.viewport, clickedEntry.index - presenter.visibleLogsOffset) // Map to the visible index
+          }
+          if (logIndex in 0 until targetTable.rowCount) {
+            targetTable.scrollToVisible(logIndex)
+            targetTable.setRowSelectionInterval(logIndex, logIndex)
           }
-          SwingUtils.scrollToVisible(targetTable, logIndex)
-          targetTable.setRowSelectionInterval(logIndex, logIndex)
-        } else if (SwingUtilities.isRightMouseButton(e) && myLogsList.table.selectedRow != -1) {
+        } else if (SwingUtilities.isRightMouseButton(e) && myLogsList.viewport.selectedRow != -1) {
           val popup = JPopupMenu()
           val removeItem = popup.add("Remove")
           removeItem.addActionListener {
-            presenter.removeFromMyLog(myLogsList.table.selectedRows)
+            presenter.removeFromMyLog(myLogsList.viewport.selectedRows)
           }
-          popup.show(myLogsList.table, e.x, e.y)
+          popup.show(myLogsList.viewport, e.x, e.y)
         }
       }
     })
 
-    myLogsList.table.addKeyListener(object : KeyAdapter() {
+    myLogsList.viewport.addKeyListener(object : KeyAdapter() {
       override fun keyPressed(e: KeyEvent?) {
-        if (myLogsList.table.selectedRow != -1 && (e?.keyCode == KeyEvent.VK_DELETE)) {
-          presenter.removeFromMyLog(myLogsList.table.selectedRows)
+        if (myLogsList.viewport.selectedRow != -1 && (e?.keyCode == KeyEvent.VK_DELETE)) {
+          presenter.removeFromMyLog(myLogsList.viewport.selectedRows)
         }
       }
     })
@@ -640,13 +633,13 @@ class LogViewerViewImpl(private val mainView: MainView, initialLogFiles: Set<Fil
   override fun handleGoToTimestampMenu() {
     var hintText = "{month}-{day} {hour}:{min}:{sec}:{hund}"
     var ts: LogTimestamp? = null
-    if (filteredLogList.table.hasFocus() && filteredLogList.table.selectedRow >= 0) {
+    if (filteredLogList.viewport.hasFocus() && filteredLogList.viewport.selectedRow >= 0) {
       val selectedEntry =
-        filteredLogList.table.model.getValueAt(filteredLogList.table.selectedRow, filteredLogList.table.selectedColumn) as LogEntry
+        filteredLogList.viewport.model.getValueAt(filteredLogList.viewport.selectedRow, 0) as LogEntry
       ts = selectedEntry.timestamp
-    } else if (logList.table.hasFocus() && logList.table.selectedRow >= 0) {
+    } else if (logList.viewport.hasFocus() && logList.viewport.selectedRow >= 0) {
       val selectedEntry =
-        logList.table.model.getValueAt(logList.table.selectedRow, logList.table.selectedColumn) as LogEntry
+        logList.viewport.model.getValueAt(logList.viewport.selectedRow, 0) as LogEntry
       ts = selectedEntry.timestamp
     }
 
@@ -765,13 +758,13 @@ class LogViewerViewImpl(private val mainView: MainView, initialLogFiles: Set<Fil
   override fun showLogLocationAtSearchedTimestamp(allLogsPosition: Int, filteredLogsPosition: Int) {
     Logger.debug("showLogLocationAtSearchedTimestamp: ($allLogsPosition, $filteredLogsPosition)")
     if (allLogsPosition >= 0) {
-      SwingUtils.scrollToVisible(logList.table, allLogsPosition)
-      logList.table.setRowSelectionInterval(allLogsPosition, allLogsPosition)
+      logList.viewport.scrollToVisible(allLogsPosition)
+      logList.viewport.setRowSelectionInterval(allLogsPosition, allLogsPosition)
     }
 
     if (filteredLogsPosition >= 0) {
-      SwingUtils.scrollToVisible(filteredLogList.table, filteredLogsPosition)
-      filteredLogList.table.setRowSelectionInterval(filteredLogsPosition, filteredLogsPosition)
+      filteredLogList.viewport.scrollToVisible(filteredLogsPosition)
+      filteredLogList.viewport.setRowSelectionInterval(filteredLogsPosition, filteredLogsPosition)
     }
   }
 
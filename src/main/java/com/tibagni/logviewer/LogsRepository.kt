@@ -2,11 +2,15 @@ package com.tibagni.logviewer
 
 import com.tibagni.logviewer.log.*
 import com.tibagni.logviewer.log.parser.LogParser
+import com.tibagni.logviewer.logger.Logger
 import com.tibagni.logviewer.logger.wrapProfiler
 import java.io.File
 import java.nio.charset.Charset
 import java.nio.charset.StandardCharsets
 import java.util.*
+import java.util.concurrent.CancellationException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
 
 class OpenLogsException(message: String?, cause: Throwable) : java.lang.Exception(message, cause)
 
@@ -25,19 +29,25 @@ interface LogsRepository {
    */
   val allLogsSize: Int
 
+  /**
+   * Trigram index of the opened logs, or null if it is disabled. It is built in the background after the logs are
+   * opened and can be used while it is built
+   */
+  val textIndex: TextIndex?
+
   @Throws(OpenLogsException::class)
   fun openLogFiles(files: Array<File>, charset: Charset, progressReporter: ProgressReporter)
   fun getMatchingLogEntry(entry: LogEntry): LogEntry?
 }
 
-class LogsRepositoryImpl : LogsRepository {
+class LogsRepositoryImpl(private val textIndexEnabled: Boolean = false) : LogsRepository {
   private val _currentlyOpenedLogFiles = mutableListOf<File>()
   override val currentlyOpenedLogFiles: List<File>
     get() = _currentlyOpenedLogFiles
 
-  private val _currentlyOpenedLogs = mutableListOf<LogEntry>()
+  private var logStore = LogStore.EMPTY
   override val currentlyOpenedLogs: List<LogEntry>
-    get() = _currentlyOpenedLogs.subList(_firstVisibleLogIndex, _lastVisibleLogIndex + 1)
+    get() = logStore.subList(_firstVisibleLogIndex, _lastVisibleLogIndex + 1)
 
   private val _availableStreams = hashSetOf<LogStream>()
   override val availableStreams: Set<LogStream>
@@ -62,22 +72,32 @@ class LogsRepositoryImpl : LogsRepository {
   override var lastVisibleLogIndex: Int
     get() = _lastVisibleLogIndex
     set(value) {
-      _lastVisibleLogIndex = if (value == -1) _currentlyOpenedLogs.lastIndex else value
+      _lastVisibleLogIndex = if (value == -1) logStore.lastIndex else value
     }
   override val allLogsSize: Int
-    get() = _currentlyOpenedLogs.size
+    get() = logStore.size
 
+  @Volatile
+  private var _textIndex: TextIndex? = null
+  override val textIndex: TextIndex?
+    get() = _textIndex
+
+  private var textIndexBuild: Future<*>? = null
+  private val textIndexExecutor by lazy {
+    Executors.newSingleThreadExecutor { runnable -> Thread(runnable, "TextIndex").apply { isDaemon = true } }
+  }
 
   @Throws(OpenLogsException::class)
   override fun openLogFiles(files: Array<File>, charset: Charset, progressReporter: ProgressReporter) {
     try {
-      val logParser = LogParser(FileLogReader(files), progressReporter)
+      val logParser = LogParser(MappedFileLogReader(files), progressReporter)
       val parsedLogs = wrapProfiler("ParseLogs") { logParser.parseLogs(charset) }
 
       _firstVisibleLogIndex = 0
       _lastVisibleLogIndex = parsedLogs.lastIndex
 
-      _currentlyOpenedLogs.reset(parsedLogs)
+      logStore = parsedLogs
+      buildTextIndex(parsedLogs)
       _availableStreams.reset(logParser.availableStreams)
       _lastSkippedLogFiles.reset(logParser.logsSkipped)
       _potentialBugReports.reset(logParser.potentialBugReports)
@@ -101,25 +121,43 @@ class LogsRepositoryImpl : LogsRepository {
     }
   }
 
+  private fun buildTextIndex(store: LogStore) {
+    textIndexBuild?.cancel(true)
+    _textIndex = null
+    if (!textIndexEnabled || store.isEmpty()) return
+
+    val index = TextIndex(store)
+    _textIndex = index
+    textIndexBuild = textIndexExecutor.submit {
+      try {
+        wrapProfiler("BuildTextIndex") { index.build { Thread.currentThread().isInterrupted } }
+        Logger.info("Text index of ${store.size} lines uses ${index.memoryUsage / 1024} KB")
+      } catch (e: CancellationException) {
+        Logger.debug("Text index build was cancelled")
+      }
+    }
+  }
+
   override fun getMatchingLogEntry(entry: LogEntry): LogEntry? {
     // Here we want to check if the given log entry exists anywhere in the list, not necessarily in the same index,
     // And we also want to make sure the text is the same. So, use a different comparator here that only considers
     // the timestamp for comparison and also checks if the log text is the same
-    val cmp = Comparator.comparing { o: LogEntry -> o.timestamp }
+    val cmp = Comparator.comparingLong { o: LogEntry -> o.packedTimestamp }
 
     val indexFound = Collections.binarySearch(currentlyOpenedLogs, entry, cmp)
     if (indexFound >= 0) {
       // We found one index for a possible entry. But there might be multiple log entries for the same timestamp
       // so, iterate until we find the exact line we are looking for.
       // First we want to find the first log in this timestamp
+      val timestamp = entry.packedTimestamp
       var i = indexFound
-      while (i >= 0 && currentlyOpenedLogs[i].timestamp == entry.timestamp) {
+      while (i > 0 && currentlyOpenedLogs[i - 1].packedTimestamp == timestamp) {
         i--
       }
 
       // Now that we are in the beginning of the timestamp, look for the entry
-      while (currentlyOpenedLogs[i].logText != entry.logText &&
-        currentlyOpenedLogs[i].timestamp <= entry.timestamp) {
+      while (i < currentlyOpenedLogs.lastIndex && currentlyOpenedLogs[i].logText != entry.logText &&
+        currentlyOpenedLogs[i].packedTimestamp <= timestamp) {
         i++
       }
 
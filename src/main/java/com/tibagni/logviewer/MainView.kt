@@ -1,6 +1,7 @@
 package com.tibagni.logviewer
 
 import com.tibagni.logviewer.about.AboutDialog
+import com.tibagni.logviewer.about.DiagnosticsDialog
 import com.tibagni.logviewer.bugreport.BugReportView
 import com.tibagni.logviewer.bugreport.BugReportViewImpl
 import com.tibagni.logviewer.filter.Filter
@@ -289,10 +290,14 @@ class MainViewImpl(
     val helpMenu = JMenu("Help")
     val aboutItem = JMenuItem("About")
     val onlineHelpItem = JMenuItem("User Guide")
+    val diagnosticsItem = JMenuItem("Diagnostics")
     aboutItem.addActionListener { AboutDialog.showAboutDialog(parent) }
     onlineHelpItem.addActionListener { openUserGuide() }
+    diagnosticsItem.addActionListener { DiagnosticsDialog.showDiagnosticsDialog(parent) }
     helpMenu.add(aboutItem)
     helpMenu.add(onlineHelpItem)
+    helpMenu.addSeparator()
+    helpMenu.add(diagnosticsItem)
 
     // Build menus specific to child views
     val streamsMenu = logViewerView.buildStreamsMenu()
@@ -13,32 +13,35 @@ interface MyLogsRepository {
 }
 
 class MyLogsRepositoryImpl : MyLogsRepository {
-  private val _logs = mutableListOf<LogEntry>()
+  // Replaced on every change instead of changed, so the lists returned by 'logs' can be shown without copying them
+  @Volatile
+  private var _logs = emptyList<LogEntry>()
   override val logs: List<LogEntry>
     get() = _logs
 
   override fun addLogEntries(entries: List<LogEntry>) {
+    val logs = _logs.toMutableList()
     // We need to add the logs in order
     for (entry in entries) {
-      insertInOrder(entry)
+      insertInOrder(logs, entry)
     }
+    _logs = Collections.unmodifiableList(logs)
   }
 
   override fun removeLogEntries(entries: List<LogEntry>) {
-    _logs.removeAll(entries)
+    _logs = Collections.unmodifiableList(_logs.toMutableList().apply { removeAll(entries) })
   }
 
   override fun reset(entries: List<LogEntry>) {
-    _logs.clear()
-    _logs.addAll(entries)
+    _logs = Collections.unmodifiableList(entries.toList())
   }
 
-  private fun insertInOrder(entry: LogEntry) {
+  private fun insertInOrder(logs: MutableList<LogEntry>, entry: LogEntry) {
     // find the nearest time pos to insert the new entry
-    val indexFound = Collections.binarySearch(_logs, entry)
+    val indexFound = Collections.binarySearch(logs, entry)
     if (indexFound < 0) { // Element not found. Insert
       val targetIndex = abs(indexFound + 1)
-      _logs.add(targetIndex, entry)
+      logs.add(targetIndex, entry)
     }
   }
 }
\ No newline at end of file
@@ -8,4 +8,12 @@ public interface ProgressReporter {
     // and set the 'Failed' description
     onProgress(100, "Failed");
   }
+
+  /**
+   * Long running operations should check this from time to time and stop (throwing a
+   * {@link java.util.concurrent.CancellationException}) if their result is not needed anymore
+   */
+  default boolean isCancelled() {
+    return false;
+  }
 }
@@ -3,14 +3,27 @@ package com.tibagni.logviewer
 import com.tibagni.logviewer.bugreport.BugReportRepository
 import com.tibagni.logviewer.bugreport.BugReportRepositoryImpl
 import com.tibagni.logviewer.bugreport.parser.*
+import com.tibagni.logviewer.logger.EdtWatchdog
 import com.tibagni.logviewer.preferences.LogViewerPreferences
 import com.tibagni.logviewer.preferences.LogViewerPreferencesImpl
+import com.tibagni.logviewer.rc.EdtWatchdogConfig
+import com.tibagni.logviewer.rc.RuntimeConfiguration
+import com.tibagni.logviewer.rc.TextIndexConfig
 import com.tibagni.logviewer.theme.LogViewerThemeManager
 
 object ServiceLocator {
   val themeManager: LogViewerThemeManager = LogViewerThemeManager
   val logViewerPrefs: LogViewerPreferences = LogViewerPreferencesImpl
-  val logsRepository: LogsRepository by lazy { LogsRepositoryImpl() }
+  val logsRepository: LogsRepository by lazy {
+    LogsRepositoryImpl(
+      RuntimeConfiguration.getConfig(RuntimeConfiguration.TEXT_INDEX, TextIndexConfig::class.java)?.configValue == true
+    )
+  }
+  val edtWatchdog: EdtWatchdog? by lazy {
+    val threshold = RuntimeConfiguration.getConfig(RuntimeConfiguration.EDT_WATCHDOG, EdtWatchdogConfig::class.java)
+      ?.configValue ?: EdtWatchdogConfig.DEFAULT_THRESHOLD_MS
+    if (threshold == EdtWatchdogConfig.THRESHOLD_OFF) null else EdtWatchdog(threshold)
+  }
   val myLogsRepository: MyLogsRepository by lazy {MyLogsRepositoryImpl()}
   val filtersRepository: FiltersRepository by lazy { FiltersRepositoryImpl() }
   val bugReportRepository: BugReportRepository by lazy {
@@ -0,0 +1,132 @@
+package com.tibagni.logviewer.about
+
+import com.tibagni.logviewer.ServiceLocator
+import com.tibagni.logviewer.logger.EdtWatchdog
+import com.tibagni.logviewer.util.layout.FontBuilder
+import com.tibagni.logviewer.util.layout.GBConstraintsBuilder
+import com.tibagni.logviewer.util.scaling.UIScaleUtils
+import com.tibagni.logviewer.view.ButtonsPane
+import java.awt.*
+import java.awt.event.KeyEvent
+import java.awt.event.WindowAdapter
+import java.awt.event.WindowEvent
+import java.text.SimpleDateFormat
+import javax.swing.*
+
+/**
+ * Shows how responsive the UI has been: the latency of the events posted to the Event Dispatch Thread and where it
+ * was blocked when it stalled, as found by the [EdtWatchdog]
+ */
+class DiagnosticsDialog(owner: JFrame?) : JDialog(owner), ButtonsPane.Listener {
+  private val buttonsPane = ButtonsPane(ButtonsPane.ButtonsMode.OK_ONLY, this)
+  private val contentPane = JPanel()
+  private val diagnosticsText = JTextArea()
+  private val refreshBtn = JButton("Refresh")
+
+  companion object {
+    fun showDiagnosticsDialog(parent: JFrame?) {
+      val dialog = DiagnosticsDialog(parent)
+      dialog.pack()
+      dialog.setLocationRelativeTo(parent)
+      dialog.isVisible = true
+    }
+  }
+
+  init {
+    buildUi()
+    setContentPane(contentPane)
+    title = "Diagnostics"
+    isModal = true
+    buttonsPane.setDefaultButtonOk()
+
+    // call onCancel() when cross is clicked
+    defaultCloseOperation = DO_NOTHING_ON_CLOSE
+    addWindowListener(object : WindowAdapter() {
+      override fun windowClosing(e: WindowEvent) {
+        onCancel()
+      }
+    })
+
+    // call onCancel() on ESCAPE
+    contentPane.registerKeyboardAction(
+      { onCancel() },
+      KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0),
+      JComponent.WHEN_ANCESTOR_OF_FOCUSED_COMPONENT
+    )
+    refreshBtn.addActionListener { updateDiagnostics() }
+    updateDiagnostics()
+  }
+
+  private fun updateDiagnostics() {
+    diagnosticsText.text = getDiagnosticsText(ServiceLocator.edtWatchdog)
+    diagnosticsText.caretPosition = 0
+  }
+
+  private fun getDiagnosticsText(watchdog: EdtWatchdog?): String {
+    if (watchdog == null) {
+      return "The UI is not being watched (edtwatchdog=off)"
+    }
+
+    val text = StringBuilder()
+    text.append("UI event latency (sampled every ${watchdog.sampleIntervalMs} ms):\n")
+    text.append(watchdog.latencies.describe()).append("\n\n")
+
+    val stalls = watchdog.stalls
+    text.append("UI stalls longer than ${watchdog.stallThresholdMs} ms: ${stalls.size}\n")
+    val formatter = SimpleDateFormat("dd-MM HH:mm:ss.SSS")
+    for (stall in stalls.asReversed()) {
+      val duration = if (stall.durationMs >= 0) "${stall.durationMs} ms" else "still blocked"
+      text.append("\n${formatter.format(stall.time)} ($duration)\n")
+      text.append(EdtWatchdog.formatStackTrace(stall.stackTrace)).append('\n')
+    }
+    return text.toString()
+  }
+
+  override fun onOk() {
+    dispose()
+  }
+
+  override fun onCancel() {
+    dispose()
+  }
+
+  private fun buildUi() {
+    contentPane.layout = GridBagLayout()
+    contentPane.preferredSize = Dimension(UIScaleUtils.dip(700), UIScaleUtils.dip(450))
+    contentPane.border = BorderFactory.createEmptyBorder(
+      UIScaleUtils.dip(10),
+      UIScaleUtils.dip(10),
+      UIScaleUtils.dip(10),
+      UIScaleUtils.dip(10)
+    )
+    diagnosticsText.isEditable = false
+    diagnosticsText.font = FontBuilder(diagnosticsText).withName(Font.MONOSPACED).build()
+    contentPane.add(
+      JScrollPane(diagnosticsText),
+      GBConstraintsBuilder()
+        .withGridx(0)
+        .withGridy(0)
+        .withGridWidth(2)
+        .withWeightx(1.0)
+        .withWeighty(1.0)
+        .withFill(GridBagConstraints.BOTH)
+        .build()
+    )
+    contentPane.add(
+      refreshBtn,
+      GBConstraintsBuilder()
+        .withGridx(0)
+        .withGridy(1)
+        .build()
+    )
+    contentPane.add(
+      buttonsPane,
+      GBConstraintsBuilder()
+        .withGridx(1)
+        .withGridy(1)
+        .withWeightx(1.0)
+        .withFill(GridBagConstraints.BOTH)
+        .build()
+    )
+  }
+}
@@ -0,0 +1,194 @@
+package com.tibagni.logviewer.filter;
+
+import java.util.*;
+
+/**
+ * Aho-Corasick automaton that finds all the given literal patterns in a text with a single pass over it.
+ *
+ * When case insensitive, both patterns and text are lower cased one char at a time. This is the same as
+ * {@link String#toLowerCase()} except for a few chars (see {@link #isSafeToFold(char)}). Patterns with those chars
+ * are not accepted, and texts with those chars must be checked in another way.
+ */
+class AhoCorasick {
+  private final boolean caseInsensitive;
+
+  // Transitions of each node, sorted by char
+  private final char[][] transitionChars;
+  private final int[][] transitionTargets;
+  private final int[] failures;
+  // Ids of all patterns that end in each node (including the ones from the failure links)
+  private final int[][] outputs;
+
+  private AhoCorasick(boolean caseInsensitive, char[][] transitionChars, int[][] transitionTargets, int[] failures,
+                      int[][] outputs) {
+    this.caseInsensitive = caseInsensitive;
+    this.transitionChars = transitionChars;
+    this.transitionTargets = transitionTargets;
+    this.failures = failures;
+    this.outputs = outputs;
+  }
+
+  /**
+   * @return true if the pattern can be added to a case insensitive automaton
+   */
+  static boolean canFold(String pattern) {
+    // These languages have their own rules to lower case 'I' and 'J'
+    String language = Locale.getDefault().getLanguage();
+    if (language.equals("tr") || language.equals("az") || language.equals("lt")) return false;
+
+    for (int i = 0; i < pattern.length(); i++) {
+      if (!isSafeToFold(pattern.charAt(i))) return false;
+    }
+
+    return pattern.toLowerCase().equals(foldCase(pattern));
+  }
+
+  /**
+   * Finds all patterns in the given text. Each pattern found has its position in 'marks' set to 'stamp'
+   *
+   * @return false if the text could not be checked (only if case insensitive and the text has chars that are not
+   * safe to fold). In this case, 'marks' may have been partially updated
+   */
+  boolean findAll(CharSequence text, int[] marks, int stamp) {
+    int state = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (caseInsensitive) {
+        if (!isSafeToFold(c)) return false;
+        c = Character.toLowerCase(c);
+      }
+
+      state = next(state, c);
+      for (int id : outputs[state]) {
+        marks[id] = stamp;
+      }
+    }
+
+    return true;
+  }
+
+  private int next(int state, char c) {
+    while (true) {
+      int target = transition(state, c);
+      if (target >= 0) return target;
+      if (state == 0) return 0;
+      state = failures[state];
+    }
+  }
+
+  private int transition(int state, char c) {
+    char[] chars = transitionChars[state];
+    int index = Arrays.binarySearch(chars, c);
+    return index >= 0 ? transitionTargets[state][index] : -1;
+  }
+
+  private static String foldCase(String text) {
+    char[] chars = new char[text.length()];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = Character.toLowerCase(text.charAt(i));
+    }
+
+    return new String(chars);
+  }
+
+  /**
+   * Lower casing these chars one by one is not the same as using {@link String#toLowerCase()}: surrogates are
+   * lower cased as code points, the capital I with dot above becomes two chars and the capital sigma depends on its
+   * position in the word
+   */
+  private static boolean isSafeToFold(char c) {
+    return !Character.isSurrogate(c) && c != '\u0130' && c != '\u03A3';
+  }
+
+  static class Builder {
+    private final boolean caseInsensitive;
+    private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+    private final List<List<Integer>> outputs = new ArrayList<>();
+
+    Builder(boolean caseInsensitive) {
+      this.caseInsensitive = caseInsensitive;
+      addNode();
+    }
+
+    private int addNode() {
+      transitions.add(new HashMap<>());
+      outputs.add(new ArrayList<>());
+      return transitions.size() - 1;
+    }
+
+    Builder add(String pattern, int id) {
+      if (caseInsensitive && !canFold(pattern)) {
+        throw new IllegalArgumentException("Pattern cannot be case folded: " + pattern);
+      }
+
+      String text = caseInsensitive ? foldCase(pattern) : pattern;
+      int state = 0;
+      for (int i = 0; i < text.length(); i++) {
+        Integer target = transitions.get(state).get(text.charAt(i));
+        if (target == null) {
+          target = addNode();
+          transitions.get(state).put(text.charAt(i), target);
+        }
+        state = target;
+      }
+      outputs.get(state).add(id);
+      return this;
+    }
+
+    AhoCorasick build() {
+      int nodes = transitions.size();
+      char[][] transitionChars = new char[nodes][];
+      int[][] transitionTargets = new int[nodes][];
+      for (int node = 0; node < nodes; node++) {
+        Map<Character, Integer> nodeTransitions = new TreeMap<>(transitions.get(node));
+        transitionChars[node] = new char[nodeTransitions.size()];
+        transitionTargets[node] = new int[nodeTransitions.size()];
+        int i = 0;
+        for (Map.Entry<Character, Integer> transition : nodeTransitions.entrySet()) {
+          transitionChars[node][i] = transition.getKey();
+          transitionTargets[node][i] = transition.getValue();
+          i++;
+        }
+      }
+
+      // Failure links are calculated in breadth-first order, so the failure of a node is always ready before its
+      // children need it
+      int[] failures = new int[nodes];
+      int[][] nodeOutputs = new int[nodes][];
+      nodeOutputs[0] = toArray(outputs.get(0));
+      Deque<Integer> queue = new ArrayDeque<>();
+      for (int child : transitionTargets[0]) {
+        failures[child] = 0;
+        queue.add(child);
+      }
+
+      AhoCorasick automaton =
+          new AhoCorasick(caseInsensitive, transitionChars, transitionTargets, failures, nodeOutputs);
+      while (!queue.isEmpty()) {
+        int node = queue.poll();
+        Set<Integer> nodeOutput = new LinkedHashSet<>(outputs.get(node));
+        for (int id : nodeOutputs[failures[node]]) {
+          nodeOutput.add(id);
+        }
+        nodeOutputs[node] = toArray(nodeOutput);
+
+        for (int i = 0; i < transitionChars[node].length; i++) {
+          int child = transitionTargets[node][i];
+          failures[child] = automaton.next(failures[node], transitionChars[node][i]);
+          queue.add(child);
+        }
+      }
+
+      return automaton;
+    }
+
+    private static int[] toArray(Collection<Integer> values) {
+      int[] result = new int[values.size()];
+      int i = 0;
+      for (int value : values) {
+        result[i++] = value;
+      }
+      return result;
+    }
+  }
+}
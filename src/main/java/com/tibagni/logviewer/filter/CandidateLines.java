@@ -0,0 +1,21 @@
+package com.tibagni.logviewer.filter;
+
+import com.tibagni.logviewer.log.LogEntry;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Finds which lines may match a filter without checking them one by one (i.e. using an index).
+ * Only the candidate lines need to be checked against the filter
+ */
+public interface CandidateLines {
+  CandidateLines ALL = (filter, input) -> null;
+
+  /**
+   * @return a bitset (one bit per line, 64 lines per word) with the bits of the lines in 'input' that may match
+   * 'filter' set, or null if all of them may match
+   */
+  @Nullable
+  long[] find(Filter filter, List<LogEntry> input);
+}
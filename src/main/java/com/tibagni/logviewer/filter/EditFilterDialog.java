@@ -57,6 +57,8 @@ public class EditFilterDialog extends JDialog implements ButtonsPane.Listener {
   private JLabel colorLbl;
   private JLabel caseSensitiveLbl;
   private JCheckBox caseSensitiveCbx;
+  private JLabel queryLbl;
+  private JCheckBox queryCbx;
   private JLabel verbosityLbl;
   private JComboBox<LogLevel> verbosityCombo;
   private JButton regexEditorBtn;
@@ -98,6 +100,7 @@ public class EditFilterDialog extends JDialog implements ButtonsPane.Listener {
     buttonsPane.setDefaultButtonOk();
 
     regexEditorBtn.addActionListener(e -> onEditRegex());
+    queryCbx.addActionListener(e -> onQueryChanged());
 
     colorChooser.setColor(getInitialColor());
 
@@ -121,6 +124,8 @@ public class EditFilterDialog extends JDialog implements ButtonsPane.Listener {
       regexTxt.selectAll();
       colorChooser.setColor(filter.getColor());
       caseSensitiveCbx.setSelected(filter.isCaseSensitive());
+      queryCbx.setSelected(filter.isQueryFilter());
+      onQueryChanged();
       verbosityCombo.setSelectedItem(filter.getVerbosity());
       nameIsPattern = filter.nameIsPattern();
     }
@@ -165,13 +170,14 @@ public class EditFilterDialog extends JDialog implements ButtonsPane.Listener {
     String name = nameTxt.getText();
     String pattern = regexTxt.getText();
     boolean caseSensitive = caseSensitiveCbx.isSelected();
+    boolean isQuery = queryCbx.isSelected();
     LogLevel verbosity = (LogLevel) verbosityCombo.getSelectedItem();
 
     try {
       if (filter == null) {
-        filter = new Filter(name, pattern, selectedColor, verbosity, caseSensitive);
+        filter = new Filter(name, pattern, selectedColor, verbosity, caseSensitive, isQuery);
       } else {
-        filter.updateFilter(name, pattern, selectedColor, verbosity, caseSensitive);
+        filter.updateFilter(name, pattern, selectedColor, verbosity, caseSensitive, isQuery);
       }
     } catch (FilterException e) {
       JOptionPane.showConfirmDialog(this, e.getMessage(), "Error...",
@@ -198,6 +204,13 @@ public class EditFilterDialog extends JDialog implements ButtonsPane.Listener {
     }
   }
 
+  private void onQueryChanged() {
+    // The regex editor does not know the query language
+    boolean isQuery = queryCbx.isSelected();
+    regexLbl.setText(isQuery ? "Query:" : "Regex:");
+    regexEditorBtn.setEnabled(!isQuery);
+  }
+
   private AbstractColorChooserPanel getSwatchPanel(AbstractColorChooserPanel[] panels) {
     for (AbstractColorChooserPanel colorPanel : panels) {
       if (colorPanel.getClass().getName().contains("DefaultSwatchChooserPanel")) {
@@ -270,7 +283,8 @@ public class EditFilterDialog extends JDialog implements ButtonsPane.Listener {
     final JPanel editPane = new JPanel();
     editPane.setLayout(new FormLayout(
         "fill:d:noGrow,left:4dlu:noGrow,fill:d:grow,left:4dlu:noGrow,fill:max(d;4px):noGrow",
-        "center:d:noGrow,top:3dlu:noGrow,center:max(d;4px):noGrow,top:3dlu:noGrow,center:max(d;4px):noGrow,top:3dlu:noGrow,center:max(d;4px):noGrow,top:3dlu:noGrow,center:max(d;4px):noGrow"));
+        "center:d:noGrow,top:3dlu:noGrow,center:max(d;4px):noGrow,top:3dlu:noGrow,center:max(d;4px):noGrow,top:3dlu:noGrow,center:max(d;4px):noGrow,top:3dlu:noGrow,center:max(d;4px):noGrow," +
+            "top:3dlu:noGrow,center:max(d;4px):noGrow"));
 
     nameLbl = new JLabel();
     nameLbl.setText("Filter name:");
@@ -299,19 +313,28 @@ public class EditFilterDialog extends JDialog implements ButtonsPane.Listener {
     caseSensitiveCbx.setText("Enable case sensitive for this filter");
     editPane.add(caseSensitiveCbx, cc.xy(3, 5));
 
+    queryLbl = new JLabel();
+    queryLbl.setText("Query:");
+    queryLbl.setToolTipText("Filter by tag, pid, tid, level, stream and time, like: tag:ActivityManager level>=W " +
+        "-text:\"idle\"");
+    editPane.add(queryLbl, cc.xy(1, 7));
+    queryCbx = new JCheckBox();
+    queryCbx.setText("Use the query language instead of a regex");
+    editPane.add(queryCbx, cc.xy(3, 7));
+
     verbosityLbl = new JLabel();
     verbosityLbl.setText("Verbosity");
-    editPane.add(verbosityLbl, cc.xy(1, 7));
+    editPane.add(verbosityLbl, cc.xy(1, 9));
     verbosityCombo = new JComboBox<>();
     for (LogLevel level : LogLevel.values()) {
       verbosityCombo.addItem(level);
     }
-    editPane.add(verbosityCombo, cc.xy(3, 7));
+    editPane.add(verbosityCombo, cc.xy(3, 9));
 
     colorLbl = new JLabel();
     colorLbl.setText("Color:");
     colorLbl.setToolTipText("Choose a color to differentiate your filter");
-    editPane.add(colorLbl, cc.xy(1, 9));
+    editPane.add(colorLbl, cc.xy(1, 11));
     colorChooser = new JColorChooser();
 
     // Show a simple text field for preview
@@ -321,7 +344,7 @@ public class EditFilterDialog extends JDialog implements ButtonsPane.Listener {
             UIScaleUtils.dip(5),
             UIScaleUtils.dip(15)));
     colorChooser.setPreviewPanel(preview);
-    editPane.add(colorChooser, cc.xy(3, 9));
+    editPane.add(colorChooser, cc.xy(3, 11));
 
     return editPane;
   }
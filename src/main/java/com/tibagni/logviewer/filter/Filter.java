@@ -1,17 +1,21 @@
 package com.tibagni.logviewer.filter;
 
+import com.tibagni.logviewer.filter.query.FilterQuery;
 import com.tibagni.logviewer.log.LogEntry;
 import com.tibagni.logviewer.log.LogLevel;
 import com.tibagni.logviewer.log.LogStream;
 import com.tibagni.logviewer.util.StringUtils;
+import org.jetbrains.annotations.Nullable;
 
 import java.awt.*;
 import java.util.*;
+import java.util.List;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 public class Filter {
   public static final String FILE_EXTENSION = "filter";
+  private static final String QUERY_KIND = "QUERY";
 
   private boolean applied;
   private String name;
@@ -21,6 +25,12 @@ public class Filter {
   private int flags = Pattern.CASE_INSENSITIVE;
   private ContextInfo temporaryInfo;
   private boolean isSimpleFilter;
+  private RequiredLiterals requiredLiterals = RequiredLiterals.NONE;
+  // Only set for query filters. In this case there is no regex pattern
+  @Nullable
+  private FilterQuery query;
+  // Find the text to be highlighted in the entries this filter applies to. Compiled once, not for each painted row
+  private List<Pattern> highlightPatterns = Collections.emptyList();
 
   public boolean wasLoadedFromLegacyFile = false;
 
@@ -32,9 +42,12 @@ public class Filter {
     color = new Color(from.color.getRGB());
     flags = from.flags;
     applied = from.isApplied();
-    pattern = getPattern(from.pattern.pattern());
+    pattern = from.pattern != null ? getPattern(from.pattern.pattern()) : null;
     verbosity = from.verbosity;
     isSimpleFilter = from.isSimpleFilter;
+    requiredLiterals = from.requiredLiterals;
+    query = from.query;
+    highlightPatterns = query != null ? from.highlightPatterns : Collections.singletonList(pattern);
   }
 
   public Filter(String name, String pattern, Color color, LogLevel verbosity) throws FilterException {
@@ -43,7 +56,15 @@ public class Filter {
 
   public Filter(String name, String pattern, Color color, LogLevel verbosity, boolean caseSensitive)
       throws FilterException {
-    updateFilter(name, pattern, color, verbosity, caseSensitive);
+    this(name, pattern, color, verbosity, caseSensitive, false);
+  }
+
+  /**
+   * @param isQuery true if 'pattern' is a {@link FilterQuery} instead of a regex
+   */
+  public Filter(String name, String pattern, Color color, LogLevel verbosity, boolean caseSensitive, boolean isQuery)
+      throws FilterException {
+    updateFilter(name, pattern, color, verbosity, caseSensitive, isQuery);
   }
 
   boolean nameIsPattern() {
@@ -52,6 +73,11 @@ public class Filter {
 
   public void updateFilter(String name, String pattern, Color color, LogLevel verbosity, boolean caseSensitive)
       throws FilterException {
+    updateFilter(name, pattern, color, verbosity, caseSensitive, false);
+  }
+
+  public void updateFilter(String name, String pattern, Color color, LogLevel verbosity, boolean caseSensitive,
+                           boolean isQuery) throws FilterException {
 
     if (StringUtils.isEmpty(name) || StringUtils.isEmpty(pattern) || color == null) {
       throw new FilterException("You must provide a name, a regex pattern and a color for the filter");
@@ -63,11 +89,19 @@ public class Filter {
       flags |= Pattern.CASE_INSENSITIVE;
     }
 
+    // Parse it before changing anything, so the filter is not changed if the pattern is not valid
+    FilterQuery query = isQuery ? FilterQuery.parse(pattern, caseSensitive) : null;
+    Pattern regex = isQuery ? null : getPattern(pattern);
+    List<Pattern> highlightPatterns = isQuery ? query.getHighlightPatterns() : Collections.singletonList(regex);
+
     this.name = name;
     this.color = color;
-    this.pattern = getPattern(pattern);
+    this.pattern = regex;
+    this.query = query;
+    this.highlightPatterns = highlightPatterns;
     this.verbosity = verbosity;
-    this.isSimpleFilter = !StringUtils.isPotentialRegex(pattern);
+    this.isSimpleFilter = !isQuery && !StringUtils.isPotentialRegex(pattern);
+    this.requiredLiterals = isQuery || isSimpleFilter ? RequiredLiterals.NONE : RequiredLiterals.of(pattern, flags);
   }
 
   public static Filter createFromString(String filterString) throws FilterException {
@@ -91,8 +125,9 @@ public class Filter {
       LogLevel verbosity = isLegacy ? LogLevel.VERBOSE : LogLevel.valueOf(params[4]);
       int flags = Integer.parseInt(params[2]);
       boolean isCaseSensitive = (flags & Pattern.CASE_INSENSITIVE) == 0;
+      boolean isQuery = params.length > 5 && QUERY_KIND.equals(params[5]);
 
-      Filter filter = new Filter(name, pattern, color, verbosity, isCaseSensitive);
+      Filter filter = new Filter(name, pattern, color, verbosity, isCaseSensitive, isQuery);
       filter.wasLoadedFromLegacyFile = isLegacy;
       return filter;
     } catch (Exception e) {
@@ -121,7 +156,19 @@ public class Filter {
   }
 
   public String getPatternString() {
-    return pattern.toString();
+    return query != null ? query.getText() : pattern.toString();
+  }
+
+  public boolean isQueryFilter() {
+    return query != null;
+  }
+
+  /**
+   * @return the patterns that find the text matched by this filter in the entries it applies to. Empty if there is no
+   * text to be highlighted
+   */
+  public List<Pattern> getHighlightPatterns() {
+    return highlightPatterns;
   }
 
   public ContextInfo getTemporaryInfo() {
@@ -148,11 +195,62 @@ public class Filter {
    * @return true if this filter is applicable to the input line. False otherwise
    */
   public boolean appliesTo(LogEntry entry) {
-    String inputLine = entry.getLogText();
-    boolean foundPattern = isSimpleFilter ? simpleMatch(inputLine) : regexMatch(inputLine);
-    boolean isVerbosityAllowed = verbosity.ordinal() <= entry.logLevel.ordinal();
+    if (query != null) {
+      return isVerbosityAllowed(entry.getLogLevel()) && query.matches(entry);
+    }
+    return matches(entry.getLogText()) && isVerbosityAllowed(entry.getLogLevel());
+  }
 
-    return foundPattern && isVerbosityAllowed;
+  /**
+   * @return texts that every line matched by this filter contains. Unless the filter is case-sensitive, the texts
+   * only need to be contained ignoring case. Empty if they are not known
+   */
+  public List<String> getRequiredTexts() {
+    if (query != null) {
+      return query.getRequiredTexts();
+    }
+    return isSimpleFilter ? List.of(getPatternString()) : requiredLiterals.getLiterals();
+  }
+
+  /**
+   * @return a bitset (one bit per entry) with the bits of the entries of 'input' that may match this filter set,
+   * found with the indices of the log store. null if all entries may match
+   */
+  @Nullable
+  long[] findIndexedCandidates(List<LogEntry> input) {
+    return query != null ? query.findCandidates(input) : null;
+  }
+
+  /**
+   * Checks if all entries this filter applies to are also applied to by 'other', without checking any entry.
+   * Only simple filters are compared. For regex filters this is always false
+   *
+   * @param other The filter to compare to
+   * @return true if this filter can only apply to entries 'other' also applies to
+   */
+  public boolean isNarrowerThan(Filter other) {
+    if (!isSimpleFilter || !other.isSimpleFilter || flags != other.flags ||
+        verbosity.ordinal() < other.verbosity.ordinal()) {
+      return false;
+    }
+
+    // Any line that contains this pattern also contains the other one
+    if (isCaseSensitive()) {
+      return getPatternString().contains(other.getPatternString());
+    }
+    return getPatternString().toLowerCase().contains(other.getPatternString().toLowerCase());
+  }
+
+  boolean matches(String inputLine) {
+    return isSimpleFilter ? simpleMatch(inputLine) : regexMatch(inputLine);
+  }
+
+  boolean isVerbosityAllowed(LogLevel logLevel) {
+    return verbosity.ordinal() <= logLevel.ordinal();
+  }
+
+  boolean isSimpleFilter() {
+    return isSimpleFilter;
   }
 
   private boolean simpleMatch(String inputLine) {
@@ -163,7 +261,8 @@ public class Filter {
   }
 
   private boolean regexMatch(String inputLine) {
-    return pattern.matcher(inputLine).find();
+    // Most lines don't have the literals required by the pattern. Checking for them first is much faster
+    return requiredLiterals.mayMatch(inputLine) && pattern.matcher(inputLine).find();
   }
 
   private Pattern getPattern(String pattern) throws FilterException {
@@ -177,11 +276,11 @@ public class Filter {
   @Override
   public String toString() {
     return String.format("Filter: [Name=%s, pattern=%s, regexFlags=%d, color=%s, verbosity=%s, applied=%b]",
-        name, pattern, flags, color, verbosity, applied);
+        name, getPatternString(), flags, color, verbosity, applied);
   }
 
   public String serializeFilter() {
-    return String.format("%s,%s,%d,%d:%d:%d,%s",
+    String serialized = String.format("%s,%s,%d,%d:%d:%d,%s",
         name.replaceAll(",", " "),
         StringUtils.encodeBase64(getPatternString()),
         flags,
@@ -189,6 +288,9 @@ public class Filter {
         color.getGreen(),
         color.getBlue(),
         verbosity);
+
+    // Only query filters have the kind, so regex filters are still read by older versions exactly as before
+    return query != null ? serialized + "," + QUERY_KIND : serialized;
   }
 
   @Override
@@ -197,6 +299,7 @@ public class Filter {
     if (o == null || getClass() != o.getClass()) return false;
     Filter filter = (Filter) o;
     return flags == filter.flags &&
+        isQueryFilter() == filter.isQueryFilter() &&
         Objects.equals(name, filter.name) &&
         Objects.equals(color, filter.color) &&
         Objects.equals(getPatternString(), filter.getPatternString()) &&
@@ -240,6 +343,10 @@ public class Filter {
       linesFound.put(stream, currentCount + 1);
     }
 
+    synchronized void addLineCount(LogStream stream, int count) {
+      linesFound.merge(stream, count, Integer::sum);
+    }
+
     @Override
     public boolean equals(Object o) {
       if (this == o) return true;
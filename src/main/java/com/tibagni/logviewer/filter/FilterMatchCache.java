@@ -0,0 +1,71 @@
+package com.tibagni.logviewer.filter;
+
+import com.tibagni.logviewer.log.LogLevel;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Remembers which lines of a log set each filter matches, as one bitset per filter (one bit per line).
+ *
+ * Filters are identified by what defines their matches (pattern, case sensitivity and verbosity), so toggling,
+ * reordering or changing the color of a filter does not require the logs to be scanned again. Only filters that were
+ * added or edited need to be checked against the log text.
+ *
+ * A cache is only valid for the log set it was used with. Use a new one whenever the logs change.
+ */
+public final class FilterMatchCache {
+  // Each entry takes one bit per log line, so do not keep too many of them around
+  private static final int MAX_ENTRIES = 32;
+
+  private final Map<Key, long[]> matches = new LinkedHashMap<Key, long[]>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, long[]> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  };
+
+  synchronized long[] get(Filter filter) {
+    return matches.get(new Key(filter));
+  }
+
+  synchronized void put(Filter filter, long[] matchedLines) {
+    matches.put(new Key(filter), matchedLines);
+  }
+
+  // Test helpers
+  synchronized int sizeForTesting() {
+    return matches.size();
+  }
+
+  private static final class Key {
+    private final String pattern;
+    private final boolean caseSensitive;
+    private final boolean query;
+    private final LogLevel verbosity;
+
+    private Key(Filter filter) {
+      pattern = filter.getPatternString();
+      caseSensitive = filter.isCaseSensitive();
+      query = filter.isQueryFilter();
+      verbosity = filter.getVerbosity();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      Key key = (Key) o;
+      return caseSensitive == key.caseSensitive &&
+          query == key.query &&
+          pattern.equals(key.pattern) &&
+          verbosity == key.verbosity;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(pattern, caseSensitive, query, verbosity);
+    }
+  }
+}
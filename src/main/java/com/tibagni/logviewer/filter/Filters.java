@@ -2,74 +2,339 @@ package com.tibagni.logviewer.filter;
 
 import com.tibagni.logviewer.ProgressReporter;
 import com.tibagni.logviewer.log.LogEntry;
+import com.tibagni.logviewer.log.LogLevel;
+import com.tibagni.logviewer.log.LogStream;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Filters {
+  // Ranges are always a multiple of 64 lines, so each range has its own words of the bitsets
+  private static final int LINES_PER_RANGE = 64 * 64;
+  private static final LogStream[] LOG_STREAMS = LogStream.values();
 
   private static class Progress {
-    public final long totalLogs;
-    public final long publishThreshold;
-    public long logsRead;
-    public long logsReadOnProgressPublish;
+    private final ProgressReporter progressReporter;
+    private final long totalLogs;
+    private final long publishThreshold;
+    private final AtomicLong logsRead = new AtomicLong();
+    private final AtomicLong logsReadOnProgressPublish = new AtomicLong();
 
-    public Progress(long totalLogs) {
+    private Progress(ProgressReporter progressReporter, long totalLogs) {
+      this.progressReporter = progressReporter;
       this.totalLogs = totalLogs;
       this.publishThreshold = totalLogs / 10;
     }
+
+    private void logsRead(int count) {
+      long read = logsRead.addAndGet(count);
+      long lastPublished = logsReadOnProgressPublish.get();
+      // Only one of the threads crossing the threshold publishes the progress
+      if ((read > lastPublished + publishThreshold || read >= totalLogs) &&
+          logsReadOnProgressPublish.compareAndSet(lastPublished, read)) {
+        progressReporter.onProgress((int) (read * 100 / totalLogs), "Applying filters...");
+      }
+    }
+  }
+
+  /**
+   * Result of combining the matches of one range of lines
+   */
+  private static class RangeResult {
+    private final List<LogEntry> filtered = new ArrayList<>();
+    // One extra position for entries without a stream
+    private final int[][] linesFound;
+    // Positions in 'filtered' of the entries matched by each filter
+    private final int[][] positions;
+    private final int[] positionsCount;
+
+    private RangeResult(int filters) {
+      linesFound = new int[filters][LOG_STREAMS.length + 1];
+      positions = new int[filters][16];
+      positionsCount = new int[filters];
+    }
+
+    private void addPosition(int filter, int position) {
+      if (positionsCount[filter] == positions[filter].length) {
+        positions[filter] = Arrays.copyOf(positions[filter], positionsCount[filter] * 2);
+      }
+      positions[filter][positionsCount[filter]++] = position;
+    }
+  }
+
+  /**
+   * The entries that matched at least one of the filters, and where the entries matched by each filter are
+   */
+  public static final class Result {
+    private final List<LogEntry> filteredLogs;
+    private final int[][] filterPositions;
+
+    private Result(List<LogEntry> filteredLogs, int[][] filterPositions) {
+      this.filteredLogs = filteredLogs;
+      this.filterPositions = filterPositions;
+    }
+
+    public List<LogEntry> getFilteredLogs() {
+      return filteredLogs;
+    }
+
+    /**
+     * @return the positions in {@link #getFilteredLogs()} of the entries matched by the filter at 'filterIndex',
+     * in ascending order. This includes entries that were colored by another filter
+     */
+    public int[] getFilterPositions(int filterIndex) {
+      return filterPositions[filterIndex];
+    }
+  }
+
+  private interface RangeProcessor<T> {
+    T process(int start, int end);
   }
 
   public static List<LogEntry> applyMultipleFilters(List<LogEntry> input, Filter[] filters, ProgressReporter pr) {
+    return applyFilters(input, filters, new FilterMatchCache(), pr).getFilteredLogs();
+  }
+
+  public static Result applyFilters(List<LogEntry> input, Filter[] filters, FilterMatchCache cache,
+                                    ProgressReporter pr) {
+    return applyFilters(input, filters, cache, CandidateLines.ALL, pr);
+  }
+
+  /**
+   * Applies the filters to the input, reusing the lines already known to match each filter from 'cache'.
+   * Only the filters that are not in the cache yet are checked against the log text, and only on the lines
+   * 'candidates' finds for them. The cache is updated with them.
+   *
+   * The filtered entries are returned in the same order they have in the input.
+   *
+   * @throws CancellationException if 'pr' reports the operation as cancelled before it finishes
+   */
+  public static Result applyFilters(List<LogEntry> input, Filter[] filters, FilterMatchCache cache,
+                                    CandidateLines candidates, ProgressReporter pr) {
     initializeContextInfo(filters);
-    // This algorithm is O(n*m), but we can assume the 'filters' array will only contain a few elements
-    // So, in practice, this will be much closer to O(n) than O(nˆ2)
-    List<LogEntry> filtered = new Vector<>();
-    final Progress progress = new Progress(input.size());
-    input.stream().parallel().forEach(entry -> {
-      Filter appliedFilter = getAppliedFilter(entry, filters);
-      if (appliedFilter != null) {
-        entry.setAppliedFilter(appliedFilter);
-        filtered.add(entry);
+    int words = wordsFor(input.size());
+    long[][] matchedLines = new long[filters.length][];
+    List<Integer> missingFilters = new ArrayList<>();
+    for (int i = 0; i < filters.length; i++) {
+      matchedLines[i] = cache.get(filters[i]);
+      if (matchedLines[i] == null || matchedLines[i].length != words) {
+        missingFilters.add(i);
       }
+    }
 
-      // This is called A LOT of times, so we try to publish progress update only after a given threshold
-      // to not impact on performance. We don't care about thread synchronization either as it is not
-      // that important that the progress is completely accurate (since there will be so many iterations
-      // here it will not actually make a difference and the progress will be accurate). We only care about
-      // impacting the least possible in performance here
-      progress.logsRead++;
-      if (progress.logsRead > (progress.logsReadOnProgressPublish + progress.publishThreshold)
-              || progress.logsRead >= progress.totalLogs ) {
-        progress.logsReadOnProgressPublish = progress.logsRead;
-        pr.onProgress((int)progress.logsRead * 100 / input.size(), "Applying filters...");
+    if (!missingFilters.isEmpty()) {
+      Filter[] toMatch = missingFilters.stream().map(i -> filters[i]).toArray(Filter[]::new);
+      long[][] found = findMatchingLines(input, toMatch, candidates, pr);
+      for (int i = 0; i < toMatch.length; i++) {
+        matchedLines[missingFilters.get(i)] = found[i];
+        cache.put(toMatch[i], found[i]);
       }
-    });
-    Collections.sort(filtered);
+    }
 
+    Result result = combineMatchingLines(input, filters, matchedLines, pr);
     pr.onProgress(100, "Done!");
-    return filtered;
+    return result;
   }
 
-  private static void initializeContextInfo(Filter[] filters) {
-    for (Filter filter : filters) {
-      filter.initTemporaryInfo();
+  private static int wordsFor(int lines) {
+    return (lines + 63) >>> 6;
+  }
+
+  /**
+   * Splits [0, size) in ranges and processes all of them in the fork/join pool
+   *
+   * @return the result of each range, in order
+   */
+  private static <T> List<T> processRanges(int size, RangeProcessor<T> processor) {
+    List<ForkJoinTask<T>> tasks = new ArrayList<>();
+    for (int start = 0; start < size; start += LINES_PER_RANGE) {
+      int rangeStart = start;
+      int rangeEnd = Math.min(size, start + LINES_PER_RANGE);
+      tasks.add(ForkJoinTask.adapt(() -> processor.process(rangeStart, rangeEnd)));
     }
+    ForkJoinTask.invokeAll(tasks);
+
+    List<T> results = new ArrayList<>(tasks.size());
+    for (ForkJoinTask<T> task : tasks) {
+      results.add(task.join());
+    }
+    return results;
   }
 
-  private static Filter getAppliedFilter(LogEntry entry, Filter[] filters) {
-    Filter firstFound = null;
-    for (Filter filter : filters) {
-      if (filter.appliesTo(entry)) {
-        if (firstFound == null) {
-          firstFound = filter;
+  /**
+   * @return a bitset for each filter, with the bits of the lines that match the filter set
+   */
+  private static long[][] findMatchingLines(List<LogEntry> input, Filter[] filters, CandidateLines candidates,
+                                            ProgressReporter pr) {
+    // All simple filters are checked together in a single pass over each line. Only regex filters need to
+    // be checked one by one
+    SimpleFiltersMatcher simpleFiltersMatcher = new SimpleFiltersMatcher(filters);
+    long[][] matchedLines = new long[filters.length][wordsFor(input.size())];
+    Progress progress = new Progress(pr, input.size());
+
+    // Lines that may match each filter (null if any line may match). Lines that no filter may match are skipped
+    long[][] candidateLines = new long[filters.length][];
+    boolean needsText = false;
+    for (int i = 0; i < filters.length; i++) {
+      candidateLines[i] = intersect(candidates.find(filters[i], input), filters[i].findIndexedCandidates(input));
+      needsText |= !filters[i].isQueryFilter();
+    }
+    // Query filters read the text only if they need it, after checking the other fields of the entry
+    boolean readText = needsText;
+
+    processRanges(input.size(), (start, end) -> {
+      checkCancelled(pr);
+      for (int line = start; line < end; line++) {
+        if (!isCandidate(candidateLines, line)) {
+          continue;
+        }
+
+        LogEntry entry = input.get(line);
+        String logText = readText ? entry.getLogText() : null;
+        LogLevel logLevel = entry.getLogLevel();
+        SimpleFiltersMatcher.Result simpleMatches = readText ? simpleFiltersMatcher.match(logText) : null;
+
+        for (int i = 0; i < filters.length; i++) {
+          Filter filter = filters[i];
+          if (candidateLines[i] != null && (candidateLines[i][line >>> 6] & (1L << line)) == 0) {
+            continue;
+          }
+
+          if (filter.isQueryFilter()) {
+            if (filter.appliesTo(entry)) {
+              matchedLines[i][line >>> 6] |= 1L << line;
+            }
+            continue;
+          }
+
+          boolean matches = simpleMatches.isChecked(i) ? simpleMatches.isFound(i) : filter.matches(logText);
+          if (matches && filter.isVerbosityAllowed(logLevel)) {
+            matchedLines[i][line >>> 6] |= 1L << line;
+          }
+        }
+      }
+
+      progress.logsRead(end - start);
+      return null;
+    });
+
+    return matchedLines;
+  }
+
+  private static long[] intersect(long[] a, long[] b) {
+    if (a == null) return b;
+    if (b == null) return a;
+
+    long[] result = new long[a.length];
+    for (int i = 0; i < a.length; i++) {
+      result[i] = a[i] & b[i];
+    }
+    return result;
+  }
+
+  private static boolean isCandidate(long[][] candidateLines, int line) {
+    for (long[] lines : candidateLines) {
+      if (lines == null || (lines[line >>> 6] & (1L << line)) != 0) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Combines the lines matched by each filter. Each line is colored by the first filter that matches it
+   */
+  private static Result combineMatchingLines(List<LogEntry> input, Filter[] filters, long[][] matchedLines,
+                                             ProgressReporter pr) {
+    List<RangeResult> results = processRanges(input.size(), (start, end) -> {
+      checkCancelled(pr);
+      RangeResult result = new RangeResult(filters.length);
+      for (int word = start >>> 6; word < wordsFor(end); word++) {
+        long anyMatch = 0;
+        for (long[] lines : matchedLines) {
+          anyMatch |= lines[word];
+        }
+
+        while (anyMatch != 0) {
+          int bit = Long.numberOfTrailingZeros(anyMatch);
+          anyMatch &= anyMatch - 1;
+
+          LogEntry entry = input.get((word << 6) + bit);
+          LogStream stream = entry.getStream();
+          int streamIndex = stream != null ? stream.ordinal() : LOG_STREAMS.length;
+          Filter firstFound = null;
+          for (int i = 0; i < filters.length; i++) {
+            if ((matchedLines[i][word] & (1L << bit)) != 0) {
+              if (firstFound == null) {
+                firstFound = filters[i];
+              }
+              result.linesFound[i][streamIndex]++;
+              result.addPosition(i, result.filtered.size());
+            }
+          }
+
+          entry.setAppliedFilter(firstFound);
+          result.filtered.add(entry);
         }
+      }
+
+      return result;
+    });
 
-        // Increment the filter's 'linesFound' so we can show to the user
-        // how many times each filter has matched
-        filter.getTemporaryInfo().incrementLineCount(entry.getStream());
+    // The input is already in order, so just concatenate the ranges
+    int totalFiltered = 0;
+    int[] totalPositions = new int[filters.length];
+    for (RangeResult result : results) {
+      totalFiltered += result.filtered.size();
+      for (int i = 0; i < filters.length; i++) {
+        totalPositions[i] += result.positionsCount[i];
+      }
+    }
+    List<LogEntry> filtered = new ArrayList<>(totalFiltered);
+    int[][] linesFound = new int[filters.length][LOG_STREAMS.length + 1];
+    int[][] positions = new int[filters.length][];
+    for (int i = 0; i < filters.length; i++) {
+      positions[i] = new int[totalPositions[i]];
+      totalPositions[i] = 0;
+    }
+    for (RangeResult result : results) {
+      int offset = filtered.size();
+      filtered.addAll(result.filtered);
+      for (int i = 0; i < filters.length; i++) {
+        for (int streamIndex = 0; streamIndex < linesFound[i].length; streamIndex++) {
+          linesFound[i][streamIndex] += result.linesFound[i][streamIndex];
+        }
+        for (int j = 0; j < result.positionsCount[i]; j++) {
+          positions[i][totalPositions[i]++] = offset + result.positions[i][j];
+        }
       }
     }
 
-    return firstFound;
+    // Update the filter's 'linesFound' so we can show to the user how many times each filter has matched
+    for (int i = 0; i < filters.length; i++) {
+      for (int streamIndex = 0; streamIndex < linesFound[i].length; streamIndex++) {
+        if (linesFound[i][streamIndex] > 0) {
+          LogStream stream = streamIndex < LOG_STREAMS.length ? LOG_STREAMS[streamIndex] : null;
+          filters[i].getTemporaryInfo().addLineCount(stream, linesFound[i][streamIndex]);
+        }
+      }
+    }
+
+    return new Result(Collections.unmodifiableList(filtered), positions);
+  }
+
+  private static void checkCancelled(ProgressReporter pr) {
+    if (pr.isCancelled()) {
+      throw new CancellationException("Filtering was cancelled");
+    }
+  }
+
+  private static void initializeContextInfo(Filter[] filters) {
+    for (Filter filter : filters) {
+      filter.initTemporaryInfo();
+    }
   }
 }
@@ -0,0 +1,380 @@
+package com.tibagni.logviewer.filter;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Literal substrings that must be present in any text matched by a regex.
+ *
+ * Checking for these literals is much cheaper than running the regex, so texts that do not contain all of them can be
+ * rejected without running the regex at all. The regex is parsed conservatively: only sequences of plain chars that
+ * are not inside groups, classes or alternations are extracted. If the regex uses a construct that is not understood,
+ * no literals are extracted and every text is a candidate.
+ */
+final class RequiredLiterals {
+  static final RequiredLiterals NONE = new RequiredLiterals(new String[0], false);
+
+  // Sorted from the longest to the shortest, as longer literals are more likely to reject a text
+  private final String[] literals;
+  private final boolean caseInsensitive;
+
+  private RequiredLiterals(String[] literals, boolean caseInsensitive) {
+    this.literals = literals;
+    this.caseInsensitive = caseInsensitive;
+  }
+
+  static RequiredLiterals of(String regex, int flags) {
+    // Other flags change how the pattern is parsed or matched
+    if ((flags & ~Pattern.CASE_INSENSITIVE) != 0) return NONE;
+
+    boolean caseInsensitive = (flags & Pattern.CASE_INSENSITIVE) != 0;
+    List<String> literals = new Parser(regex, caseInsensitive).parse();
+    if (literals == null || literals.isEmpty()) return NONE;
+
+    String[] result = literals.stream()
+        .map(literal -> caseInsensitive ? foldCase(literal) : literal)
+        .distinct()
+        .sorted(Comparator.comparingInt(String::length).reversed())
+        .toArray(String[]::new);
+    return new RequiredLiterals(result, caseInsensitive);
+  }
+
+  /**
+   * @return false if the text can't possibly match the regex. True means the regex must be checked
+   */
+  boolean mayMatch(String text) {
+    for (String literal : literals) {
+      boolean found = caseInsensitive ? containsFolded(text, literal) : text.contains(literal);
+      if (!found) return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * The regex engine only folds ASCII chars by default, but the rules for the other chars changed between JDK
+   * versions. So this compares chars the same way {@link String#equalsIgnoreCase(String)} does, which accepts
+   * anything the regex engine could consider equal.
+   */
+  private static boolean containsFolded(String text, String foldedLiteral) {
+    int literalLength = foldedLiteral.length();
+    char first = foldedLiteral.charAt(0);
+    int last = text.length() - literalLength;
+    for (int i = 0; i <= last; i++) {
+      if (foldCase(text.charAt(i)) != first) continue;
+
+      int j = 1;
+      while (j < literalLength && foldCase(text.charAt(i + j)) == foldedLiteral.charAt(j)) {
+        j++;
+      }
+      if (j == literalLength) return true;
+    }
+
+    return false;
+  }
+
+  private static String foldCase(String text) {
+    char[] chars = new char[text.length()];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = foldCase(text.charAt(i));
+    }
+
+    return new String(chars);
+  }
+
+  private static char foldCase(char c) {
+    if (c < 128) {
+      return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    return Character.toLowerCase(Character.toUpperCase(c));
+  }
+
+  /**
+   * @return the literals every matching text contains. They are folded (see {@link #foldCase}) if case-insensitive
+   */
+  List<String> getLiterals() {
+    return List.of(literals);
+  }
+
+  // Test helpers
+  String[] getLiteralsForTesting() {
+    return literals.clone();
+  }
+
+  private static class Parser {
+    private final String regex;
+    private final boolean caseInsensitive;
+    private final List<String> literals = new ArrayList<>();
+    private final StringBuilder currentLiteral = new StringBuilder();
+    private int position;
+
+    // What was the last element, so we know what a quantifier applies to
+    private static final int NOTHING = 0;
+    private static final int LITERAL_CHAR = 1;
+    private static final int OTHER = 2;
+    private static final int QUANTIFIED = 3;
+    private int lastElement = NOTHING;
+
+    Parser(String regex, boolean caseInsensitive) {
+      this.regex = regex;
+      this.caseInsensitive = caseInsensitive;
+    }
+
+    /**
+     * @return the required literals, or null if the regex could not be understood
+     */
+    List<String> parse() {
+      while (position < regex.length()) {
+        char c = regex.charAt(position++);
+        boolean understood;
+        switch (c) {
+          case '|':
+            // Nothing is required in all the alternatives
+            return null;
+          case '(':
+            understood = skipGroup();
+            break;
+          case '[':
+            understood = skipClass();
+            break;
+          case '.':
+          case '^':
+          case '$':
+            other();
+            understood = true;
+            break;
+          case '\\':
+            understood = escape();
+            break;
+          case '*':
+          case '?':
+            understood = quantifier(0);
+            break;
+          case '+':
+            understood = quantifier(1);
+            break;
+          case '{':
+            understood = quantifier(parseRepetition());
+            break;
+          case ')':
+            return null;
+          default:
+            literalChar(c);
+            understood = true;
+        }
+
+        if (!understood) return null;
+      }
+
+      endLiteral();
+      return literals;
+    }
+
+    private void literalChar(char c) {
+      // Case insensitive rules for surrogates are not the same as for the other chars
+      if (caseInsensitive && Character.isSurrogate(c)) {
+        other();
+        return;
+      }
+
+      currentLiteral.append(c);
+      lastElement = LITERAL_CHAR;
+    }
+
+    private void other() {
+      endLiteral();
+      lastElement = OTHER;
+    }
+
+    private void endLiteral() {
+      if (currentLiteral.length() > 0) {
+        literals.add(currentLiteral.toString());
+        currentLiteral.setLength(0);
+      }
+    }
+
+    private boolean quantifier(int min) {
+      if (min < 0 || lastElement == QUANTIFIED) return false;
+
+      // Lazy and possessive quantifiers
+      if (position < regex.length() && (regex.charAt(position) == '?' || regex.charAt(position) == '+')) {
+        position++;
+      }
+
+      if (lastElement == LITERAL_CHAR && min == 0) {
+        // The quantifier applies to the whole code point, which may be a surrogate pair
+        int length = currentLiteral.length();
+        int charsToRemove = length > 1 && Character.isLowSurrogate(currentLiteral.charAt(length - 1)) &&
+            Character.isHighSurrogate(currentLiteral.charAt(length - 2)) ? 2 : 1;
+        currentLiteral.setLength(length - charsToRemove);
+      }
+
+      // Whatever comes next can not be part of the same literal
+      endLiteral();
+      lastElement = QUANTIFIED;
+      return true;
+    }
+
+    /**
+     * Parses '{n}', '{n,}' or '{n,m}' (the '{' was already consumed)
+     *
+     * @return the minimum repetitions, or -1 if it is not a valid repetition
+     */
+    private int parseRepetition() {
+      int end = regex.indexOf('}', position);
+      if (end < 0) return -1;
+
+      String repetition = regex.substring(position, end);
+      position = end + 1;
+      if (!repetition.matches("\\d{1,9}(,\\d{0,9})?")) return -1;
+
+      int comma = repetition.indexOf(',');
+      return Integer.parseInt(comma < 0 ? repetition : repetition.substring(0, comma));
+    }
+
+    private boolean escape() {
+      if (position >= regex.length()) return false;
+
+      char c = regex.charAt(position++);
+      if (!Character.isLetterOrDigit(c)) {
+        literalChar(c);
+        return true;
+      }
+
+      switch (c) {
+        case 't': literalChar('\t'); return true;
+        case 'n': literalChar('\n'); return true;
+        case 'r': literalChar('\r'); return true;
+        case 'f': literalChar('\f'); return true;
+        case 'a': literalChar('\u0007'); return true;
+        case 'e': literalChar('\u001B'); return true;
+        case 'Q': return quote();
+        case 'p':
+        case 'P':
+          if (position < regex.length() && regex.charAt(position) == '{') {
+            int end = regex.indexOf('}', position);
+            if (end < 0) return false;
+            position = end + 1;
+          } else {
+            position++;
+          }
+          other();
+          return true;
+        case 'd': case 'D': case 'w': case 'W': case 's': case 'S': case 'h': case 'H': case 'v': case 'V':
+        case 'b': case 'B': case 'A': case 'z': case 'Z': case 'G': case 'R': case 'X':
+          other();
+          return true;
+        default:
+          // Back references, octal, hex, unicode and control chars. Not worth the trouble
+          return false;
+      }
+    }
+
+    private boolean quote() {
+      int end = regex.indexOf("\\E", position);
+      if (end < 0) end = regex.length();
+
+      for (int i = position; i < end; i++) {
+        literalChar(regex.charAt(i));
+      }
+      position = Math.min(end + 2, regex.length());
+      return true;
+    }
+
+    /**
+     * Skips a whole group. Nothing inside groups is considered required (the '(' was already consumed)
+     */
+    private boolean skipGroup() {
+      if (isFlagsGroup()) return false;
+
+      int depth = 1;
+      while (position < regex.length()) {
+        char c = regex.charAt(position++);
+        switch (c) {
+          case '\\':
+            if (!skipEscape()) return false;
+            break;
+          case '[':
+            if (!skipClass()) return false;
+            break;
+          case '(':
+            if (isFlagsGroup()) return false;
+            depth++;
+            break;
+          case ')':
+            if (--depth == 0) {
+              other();
+              return true;
+            }
+            break;
+        }
+      }
+
+      return false;
+    }
+
+    /**
+     * Flags like '(?i)' change how the rest of the pattern is matched
+     */
+    private boolean isFlagsGroup() {
+      if (position + 1 >= regex.length() || regex.charAt(position) != '?') return false;
+      return ":=!<>".indexOf(regex.charAt(position + 1)) < 0;
+    }
+
+    /**
+     * Skips a character class, which may contain other classes (the '[' was already consumed)
+     */
+    private boolean skipClass() {
+      int depth = 1;
+      // A ']' right after the '[' or '[^' is a literal
+      if (position < regex.length() && regex.charAt(position) == '^') position++;
+      if (position < regex.length() && regex.charAt(position) == ']') position++;
+
+      while (position < regex.length()) {
+        char c = regex.charAt(position++);
+        switch (c) {
+          case '\\':
+            if (!skipEscape()) return false;
+            break;
+          case '[':
+            depth++;
+            break;
+          case ']':
+            if (--depth == 0) {
+              other();
+              return true;
+            }
+            break;
+        }
+      }
+
+      return false;
+    }
+
+    private boolean skipEscape() {
+      if (position >= regex.length()) return false;
+
+      char c = regex.charAt(position++);
+      if (c == 'Q') {
+        int end = regex.indexOf("\\E", position);
+        position = end < 0 ? regex.length() : end + 2;
+      } else if (c == 'c') {
+        // Control char. The next char can be anything
+        position++;
+      } else if ((c == 'p' || c == 'P' || c == 'x' || c == 'N') &&
+          position < regex.length() && regex.charAt(position) == '{') {
+        int end = regex.indexOf('}', position);
+        if (end < 0) return false;
+        position = end + 1;
+      } else if (c == 'k' && position < regex.length() && regex.charAt(position) == '<') {
+        int end = regex.indexOf('>', position);
+        if (end < 0) return false;
+        position = end + 1;
+      }
+
+      // Other escapes have more chars after them, but those are never special chars
+      return true;
+    }
+  }
+}
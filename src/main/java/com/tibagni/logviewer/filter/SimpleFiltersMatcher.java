@@ -0,0 +1,85 @@
+package com.tibagni.logviewer.filter;
+
+/**
+ * Checks all simple (non regex) filters against a log line at once, using one {@link AhoCorasick} automaton for the
+ * case insensitive filters and another one for the case sensitive filters.
+ *
+ * Simple filters that cannot be case folded by the automaton (and all regex filters) are not checked here and
+ * must be checked by the filter itself.
+ */
+final class SimpleFiltersMatcher {
+  private final boolean[] isCaseInsensitive;
+  private final boolean[] isHandled;
+  private final AhoCorasick caseInsensitiveFilters;
+  private final AhoCorasick caseSensitiveFilters;
+
+  // Each thread has its own results, so the same matcher can be used by the parallel filtering
+  private final ThreadLocal<Result> results;
+
+  SimpleFiltersMatcher(Filter[] filters) {
+    isCaseInsensitive = new boolean[filters.length];
+    isHandled = new boolean[filters.length];
+    AhoCorasick.Builder caseInsensitiveBuilder = null;
+    AhoCorasick.Builder caseSensitiveBuilder = null;
+
+    for (int i = 0; i < filters.length; i++) {
+      Filter filter = filters[i];
+      if (!filter.isSimpleFilter()) continue;
+
+      String pattern = filter.getPatternString();
+      if (filter.isCaseSensitive()) {
+        if (caseSensitiveBuilder == null) caseSensitiveBuilder = new AhoCorasick.Builder(false);
+        caseSensitiveBuilder.add(pattern, i);
+        isHandled[i] = true;
+      } else if (AhoCorasick.canFold(pattern)) {
+        if (caseInsensitiveBuilder == null) caseInsensitiveBuilder = new AhoCorasick.Builder(true);
+        caseInsensitiveBuilder.add(pattern, i);
+        isCaseInsensitive[i] = true;
+        isHandled[i] = true;
+      }
+    }
+
+    caseInsensitiveFilters = caseInsensitiveBuilder != null ? caseInsensitiveBuilder.build() : null;
+    caseSensitiveFilters = caseSensitiveBuilder != null ? caseSensitiveBuilder.build() : null;
+    results = ThreadLocal.withInitial(() -> new Result(filters.length));
+  }
+
+  /**
+   * Finds all the simple filters that match the given line.
+   *
+   * @return The matches found. The same object is reused for the next call in the same thread
+   */
+  Result match(String line) {
+    Result result = results.get();
+    result.stamp++;
+    result.caseInsensitiveChecked = caseInsensitiveFilters == null ||
+        caseInsensitiveFilters.findAll(line, result.marks, result.stamp);
+    if (caseSensitiveFilters != null) {
+      caseSensitiveFilters.findAll(line, result.marks, result.stamp);
+    }
+
+    return result;
+  }
+
+  final class Result {
+    private final int[] marks;
+    private int stamp;
+    private boolean caseInsensitiveChecked;
+
+    private Result(int filters) {
+      marks = new int[filters];
+    }
+
+    /**
+     * @return true if it is known whether the filter at 'index' matches the line. If not, the filter itself has to
+     * check the line
+     */
+    boolean isChecked(int index) {
+      return isHandled[index] && (caseInsensitiveChecked || !isCaseInsensitive[index]);
+    }
+
+    boolean isFound(int index) {
+      return marks[index] == stamp;
+    }
+  }
+}
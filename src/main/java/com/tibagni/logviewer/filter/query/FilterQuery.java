@@ -0,0 +1,124 @@
+package com.tibagni.logviewer.filter.query;
+
+import com.tibagni.logviewer.filter.FilterException;
+import com.tibagni.logviewer.log.LogEntry;
+import com.tibagni.logviewer.log.LogStore;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled filter query, like {@code tag:WifiService level>=W pid:1234 time:10:00-10:05 text:"disconnect"
+ * -text:"scan"}.
+ *
+ * Terms:
+ * <ul>
+ *   <li>{@code text:value} (or just {@code value}): the log text contains the value</li>
+ *   <li>{@code regex:value}: the log text has a match of the regular expression</li>
+ *   <li>{@code tag:value}, {@code pid:value}, {@code tid:value}: the header of the entry has exactly this value</li>
+ *   <li>{@code level:L} or {@code level>=L} (also &gt;, &lt;=, &lt; and =): the log level, as a letter or a name</li>
+ *   <li>{@code stream:value}: the log stream (main, system, radio, events, kernel)</li>
+ *   <li>{@code time:HH:MM[:SS[.fraction]]-HH:MM[:SS[.fraction]]}: the time of the day, ignoring the date</li>
+ * </ul>
+ *
+ * Values with spaces must be quoted. Terms are combined with AND (or just one term after the other), OR and NOT
+ * (or a '-' before the term), grouped with parentheses. Only the text terms follow the filter case sensitivity.
+ *
+ * The query is compiled into a plan that evaluates the predicates on the entry columns first. Entries that can only
+ * match if they have some tag or pid are found in the {@link LogStore} indices, without checking every entry.
+ */
+public final class FilterQuery {
+  private final String text;
+  private final QueryNode root;
+  private final List<String> requiredTexts;
+  private final List<Pattern> highlightPatterns;
+
+  private FilterQuery(String text, QueryNode root) {
+    this.text = text;
+    this.root = root;
+
+    List<String> required = new ArrayList<>();
+    root.collectRequiredTexts(required);
+    requiredTexts = Collections.unmodifiableList(required);
+
+    // One pattern per term, as the regexes of different terms can not be joined in a single pattern (their named
+    // groups may repeat and their backreferences would point to the wrong groups)
+    List<Pattern> highlights = new ArrayList<>();
+    root.collectHighlights(highlights);
+    highlightPatterns = Collections.unmodifiableList(highlights);
+  }
+
+  /**
+   * @throws FilterException if the query is not valid. The message tells what is wrong with it
+   */
+  public static FilterQuery parse(String text, boolean caseSensitive) throws FilterException {
+    return new FilterQuery(text, QueryParser.parse(text, caseSensitive));
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  public boolean matches(LogEntry entry) {
+    return root.matches(new QueryNode.Row(entry));
+  }
+
+  /**
+   * @return texts that every entry matched by this query contains
+   */
+  public List<String> getRequiredTexts() {
+    return requiredTexts;
+  }
+
+  /**
+   * @return the patterns that find the text matched by each text term of this query in the entries it matches. Empty
+   * if the query has no text terms
+   */
+  public List<Pattern> getHighlightPatterns() {
+    return highlightPatterns;
+  }
+
+  /**
+   * Finds the entries of 'input' that may match this query using the indices of the store the entries are from.
+   * This is only possible if 'input' is a {@link LogStore} or a {@link LogStore.Range}
+   *
+   * @return a bitset (one bit per entry) with the bits of the entries that may match set, or null if all of them may
+   * match
+   */
+  @Nullable
+  public long[] findCandidates(List<LogEntry> input) {
+    LogStore store;
+    int fromIndex;
+    if (input instanceof LogStore) {
+      store = (LogStore) input;
+      fromIndex = 0;
+    } else if (input instanceof LogStore.Range) {
+      store = ((LogStore.Range) input).getStore();
+      fromIndex = ((LogStore.Range) input).getFromIndex();
+    } else {
+      return null;
+    }
+
+    int[] indices = root.findIndices(store);
+    if (indices == null) {
+      return null;
+    }
+
+    long[] candidates = new long[(input.size() + 63) >>> 6];
+    for (int index : indices) {
+      int line = index - fromIndex;
+      if (line >= 0 && line < input.size()) {
+        candidates[line >>> 6] |= 1L << line;
+      }
+    }
+    return candidates;
+  }
+
+  @Override
+  public String toString() {
+    return text;
+  }
+}
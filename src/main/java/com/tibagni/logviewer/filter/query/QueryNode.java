@@ -0,0 +1,424 @@
+package com.tibagni.logviewer.filter.query;
+
+import com.tibagni.logviewer.log.LogEntry;
+import com.tibagni.logviewer.log.LogStore;
+import com.tibagni.logviewer.log.LogStream;
+import com.tibagni.logviewer.log.LogTimestamp;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A node of a compiled {@link FilterQuery}.
+ *
+ * Each node knows how expensive it is to evaluate. The children of AND and OR nodes are evaluated from the cheapest
+ * to the most expensive one, so predicates on the entry columns (level, stream, pid, tag, time...) usually decide
+ * the result before the log text is read.
+ */
+abstract class QueryNode {
+  // Relative costs of evaluating each kind of predicate
+  static final int COLUMN_COST = 1;
+  static final int TAG_COST = 2;
+  static final int TEXT_COST = 10;
+  static final int REGEX_COST = 20;
+
+  abstract boolean matches(Row row);
+
+  abstract int getCost();
+
+  /**
+   * @return the indices of the store entries that may match this node, in ascending order, or null if they can not
+   * be found without checking each entry
+   */
+  @Nullable
+  int[] findIndices(LogStore store) {
+    return null;
+  }
+
+  /**
+   * Adds the texts every entry matched by this node contains
+   */
+  void collectRequiredTexts(List<String> texts) {
+  }
+
+  /**
+   * Adds the regular expressions of the text this node matches, to be highlighted in the matched entries
+   */
+  void collectHighlights(List<Pattern> patterns) {
+  }
+
+  /**
+   * An entry being evaluated. Its text is only read if a node needs it, and only once
+   */
+  static final class Row {
+    private final LogEntry entry;
+    private String text;
+
+    Row(LogEntry entry) {
+      this.entry = entry;
+    }
+
+    LogEntry getEntry() {
+      return entry;
+    }
+
+    String getText() {
+      if (text == null) {
+        text = entry.getLogText();
+      }
+      return text;
+    }
+  }
+
+  static final class And extends QueryNode {
+    private final QueryNode[] children;
+    private final int cost;
+
+    And(List<QueryNode> children) {
+      this.children = sortByCost(children);
+      this.cost = Arrays.stream(this.children).mapToInt(QueryNode::getCost).sum();
+    }
+
+    @Override
+    boolean matches(Row row) {
+      for (QueryNode child : children) {
+        if (!child.matches(row)) return false;
+      }
+      return true;
+    }
+
+    @Override
+    int getCost() {
+      return cost;
+    }
+
+    @Nullable
+    @Override
+    int[] findIndices(LogStore store) {
+      int[] indices = null;
+      for (QueryNode child : children) {
+        int[] found = child.findIndices(store);
+        if (found != null) {
+          indices = indices == null ? found : intersect(indices, found);
+        }
+      }
+      return indices;
+    }
+
+    @Override
+    void collectRequiredTexts(List<String> texts) {
+      for (QueryNode child : children) {
+        child.collectRequiredTexts(texts);
+      }
+    }
+
+    @Override
+    void collectHighlights(List<Pattern> patterns) {
+      for (QueryNode child : children) {
+        child.collectHighlights(patterns);
+      }
+    }
+  }
+
+  static final class Or extends QueryNode {
+    private final QueryNode[] children;
+    private final int cost;
+
+    Or(List<QueryNode> children) {
+      this.children = sortByCost(children);
+      this.cost = Arrays.stream(this.children).mapToInt(QueryNode::getCost).sum();
+    }
+
+    @Override
+    boolean matches(Row row) {
+      for (QueryNode child : children) {
+        if (child.matches(row)) return true;
+      }
+      return false;
+    }
+
+    @Override
+    int getCost() {
+      return cost;
+    }
+
+    @Nullable
+    @Override
+    int[] findIndices(LogStore store) {
+      int[] indices = new int[0];
+      for (QueryNode child : children) {
+        int[] found = child.findIndices(store);
+        if (found == null) {
+          // Any entry may match this child
+          return null;
+        }
+        indices = union(indices, found);
+      }
+      return indices;
+    }
+
+    @Override
+    void collectHighlights(List<Pattern> patterns) {
+      for (QueryNode child : children) {
+        child.collectHighlights(patterns);
+      }
+    }
+  }
+
+  static final class Not extends QueryNode {
+    private final QueryNode child;
+
+    Not(QueryNode child) {
+      this.child = child;
+    }
+
+    @Override
+    boolean matches(Row row) {
+      return !child.matches(row);
+    }
+
+    @Override
+    int getCost() {
+      return child.getCost();
+    }
+  }
+
+  static final class Text extends QueryNode {
+    private final String text;
+    private final boolean caseSensitive;
+
+    Text(String text, boolean caseSensitive) {
+      this.text = text;
+      this.caseSensitive = caseSensitive;
+    }
+
+    @Override
+    boolean matches(Row row) {
+      String logText = row.getText();
+      if (caseSensitive) {
+        return logText.contains(text);
+      }
+
+      for (int i = 0, last = logText.length() - text.length(); i <= last; i++) {
+        if (logText.regionMatches(true, i, text, 0, text.length())) return true;
+      }
+      return false;
+    }
+
+    @Override
+    int getCost() {
+      return TEXT_COST;
+    }
+
+    @Override
+    void collectRequiredTexts(List<String> texts) {
+      texts.add(text);
+    }
+
+    @Override
+    void collectHighlights(List<Pattern> patterns) {
+      patterns.add(Pattern.compile(Pattern.quote(text), caseSensitive ? 0 : Pattern.CASE_INSENSITIVE));
+    }
+  }
+
+  static final class Regex extends QueryNode {
+    private final Pattern pattern;
+
+    Regex(Pattern pattern) {
+      this.pattern = pattern;
+    }
+
+    @Override
+    boolean matches(Row row) {
+      return pattern.matcher(row.getText()).find();
+    }
+
+    @Override
+    int getCost() {
+      return REGEX_COST;
+    }
+
+    @Override
+    void collectHighlights(List<Pattern> patterns) {
+      patterns.add(pattern);
+    }
+  }
+
+  static final class Tag extends QueryNode {
+    private final String tag;
+
+    Tag(String tag) {
+      this.tag = tag;
+    }
+
+    @Override
+    boolean matches(Row row) {
+      return tag.equals(row.getEntry().getTag());
+    }
+
+    @Override
+    int getCost() {
+      return TAG_COST;
+    }
+
+    @Override
+    int[] findIndices(LogStore store) {
+      return store.getIndicesWithTag(tag);
+    }
+  }
+
+  static final class Pid extends QueryNode {
+    private final int pid;
+
+    Pid(int pid) {
+      this.pid = pid;
+    }
+
+    @Override
+    boolean matches(Row row) {
+      return row.getEntry().getPid() == pid;
+    }
+
+    @Override
+    int getCost() {
+      return COLUMN_COST;
+    }
+
+    @Override
+    int[] findIndices(LogStore store) {
+      return store.getIndicesWithPid(pid);
+    }
+  }
+
+  static final class Tid extends QueryNode {
+    private final int tid;
+
+    Tid(int tid) {
+      this.tid = tid;
+    }
+
+    @Override
+    boolean matches(Row row) {
+      return row.getEntry().getTid() == tid;
+    }
+
+    @Override
+    int getCost() {
+      return COLUMN_COST;
+    }
+  }
+
+  /**
+   * Matches the levels with ordinal in [min, max]
+   */
+  static final class Level extends QueryNode {
+    private final int min;
+    private final int max;
+
+    Level(int min, int max) {
+      this.min = min;
+      this.max = max;
+    }
+
+    @Override
+    boolean matches(Row row) {
+      int level = row.getEntry().getLogLevel().ordinal();
+      return level >= min && level <= max;
+    }
+
+    @Override
+    int getCost() {
+      return COLUMN_COST;
+    }
+  }
+
+  static final class Stream extends QueryNode {
+    private final LogStream stream;
+
+    Stream(LogStream stream) {
+      this.stream = stream;
+    }
+
+    @Override
+    boolean matches(Row row) {
+      return row.getEntry().getLogStream() == stream;
+    }
+
+    @Override
+    int getCost() {
+      return COLUMN_COST;
+    }
+  }
+
+  /**
+   * Matches the times of the day in [from, to], ignoring the date. Entries without timestamp never match
+   */
+  static final class Time extends QueryNode {
+    private final long from;
+    private final long to;
+
+    Time(long from, long to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    boolean matches(Row row) {
+      long timestamp = row.getEntry().getPackedTimestamp();
+      if (timestamp == LogStore.NO_TIMESTAMP) return false;
+
+      long timeOfDay = LogTimestamp.timeOfDay(timestamp);
+      return timeOfDay >= from && timeOfDay <= to;
+    }
+
+    @Override
+    int getCost() {
+      return COLUMN_COST;
+    }
+  }
+
+  private static QueryNode[] sortByCost(List<QueryNode> nodes) {
+    QueryNode[] sorted = nodes.toArray(new QueryNode[0]);
+    // Stable, so nodes with the same cost are evaluated in the order they were written
+    Arrays.sort(sorted, Comparator.comparingInt(QueryNode::getCost));
+    return sorted;
+  }
+
+  private static int[] intersect(int[] a, int[] b) {
+    int[] result = new int[Math.min(a.length, b.length)];
+    int count = 0;
+    for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+      if (a[i] < b[j]) {
+        i++;
+      } else if (a[i] > b[j]) {
+        j++;
+      } else {
+        result[count++] = a[i];
+        i++;
+        j++;
+      }
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  private static int[] union(int[] a, int[] b) {
+    int[] result = new int[a.length + b.length];
+    int count = 0;
+    int i = 0;
+    int j = 0;
+    while (i < a.length || j < b.length) {
+      if (j == b.length || (i < a.length && a[i] < b[j])) {
+        result[count++] = a[i++];
+      } else if (i == a.length || b[j] < a[i]) {
+        result[count++] = b[j++];
+      } else {
+        result[count++] = a[i++];
+        j++;
+      }
+    }
+    return Arrays.copyOf(result, count);
+  }
+}
@@ -0,0 +1,318 @@
+package com.tibagni.logviewer.filter.query;
+
+import com.tibagni.logviewer.filter.FilterException;
+import com.tibagni.logviewer.log.LogLevel;
+import com.tibagni.logviewer.log.LogStream;
+import com.tibagni.logviewer.log.LogTimestamp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Recursive descent parser of the {@link FilterQuery} language:
+ *
+ * <pre>
+ *   query   := and (("OR" | "|") and)*
+ *   and     := unary (["AND" | "&amp;"] unary)*
+ *   unary   := ("NOT" | "-" | "!") unary | "(" query ")" | term
+ *   term    := field ":" value | "level" ("&gt;=" | "&gt;" | "&lt;=" | "&lt;" | "=") value | value
+ *   value   := word | '"' quoted text '"'
+ * </pre>
+ */
+final class QueryParser {
+  private static final Pattern TIME_PATTERN =
+      Pattern.compile("(\\d{1,2}):(\\d{1,2})(?::(\\d{1,2})(?:\\.(\\d{1,9}))?)?");
+  private static final LogLevel[] LOG_LEVELS = LogLevel.values();
+  // Milliseconds of one unit of the last digit of a fraction of the second, by its number of digits
+  private static final int[] MILLIS_PRECISION = {1000, 100, 10, 1};
+
+  private final String query;
+  private final boolean caseSensitive;
+  private int position;
+
+  private QueryParser(String query, boolean caseSensitive) {
+    this.query = query;
+    this.caseSensitive = caseSensitive;
+  }
+
+  static QueryNode parse(String query, boolean caseSensitive) throws FilterException {
+    QueryParser parser = new QueryParser(query, caseSensitive);
+    QueryNode node = parser.parseOr();
+    parser.skipSpaces();
+    if (!parser.isAtEnd()) {
+      throw parser.error("Unexpected '" + parser.peek() + "'");
+    }
+
+    return node;
+  }
+
+  private QueryNode parseOr() throws FilterException {
+    List<QueryNode> nodes = new ArrayList<>();
+    nodes.add(parseAnd());
+    while (skipKeyword("OR") || skipSymbol('|')) {
+      nodes.add(parseAnd());
+    }
+
+    return nodes.size() == 1 ? nodes.get(0) : new QueryNode.Or(nodes);
+  }
+
+  private QueryNode parseAnd() throws FilterException {
+    List<QueryNode> nodes = new ArrayList<>();
+    nodes.add(parseUnary());
+    while (true) {
+      skipSpaces();
+      if (isAtEnd() || peek() == ')' || peek() == '|' || isKeyword("OR")) break;
+
+      // AND is optional, terms next to each other must all match
+      if (!skipKeyword("AND")) {
+        skipSymbol('&');
+      }
+      nodes.add(parseUnary());
+    }
+
+    return nodes.size() == 1 ? nodes.get(0) : new QueryNode.And(nodes);
+  }
+
+  private QueryNode parseUnary() throws FilterException {
+    skipSpaces();
+    if (isAtEnd()) {
+      throw error("Expected a term");
+    }
+
+    if (skipKeyword("NOT") || skipSymbol('-') || skipSymbol('!')) {
+      return new QueryNode.Not(parseUnary());
+    }
+
+    if (skipSymbol('(')) {
+      QueryNode node = parseOr();
+      skipSpaces();
+      if (!skipSymbol(')')) {
+        throw error("Missing ')'");
+      }
+      return node;
+    }
+
+    return parseTerm();
+  }
+
+  private QueryNode parseTerm() throws FilterException {
+    int start = position;
+    while (!isAtEnd() && Character.isLetter(peek())) {
+      position++;
+    }
+
+    String field = query.substring(start, position).toLowerCase();
+    if (!isAtEnd() && peek() == ':') {
+      position++;
+      switch (field) {
+        case "text":
+          return new QueryNode.Text(readValue(), caseSensitive);
+        case "regex":
+          return createRegex(readValue());
+        case "tag":
+          return new QueryNode.Tag(readValue());
+        case "pid":
+          return new QueryNode.Pid(parseNumber(readValue()));
+        case "tid":
+          return new QueryNode.Tid(parseNumber(readValue()));
+        case "level":
+          return createLevel(">=", readValue());
+        case "stream":
+          return createStream(readValue());
+        case "time":
+          return createTime(readValue());
+      }
+    } else if (field.equals("level") && !isAtEnd() && (peek() == '<' || peek() == '>' || peek() == '=')) {
+      int operatorStart = position;
+      position++;
+      skipSymbol('=');
+      return createLevel(query.substring(operatorStart, position), readValue());
+    }
+
+    // Not a known field. Anything else is just a text to be found (i.e. "ActivityManager:")
+    position = start;
+    return new QueryNode.Text(readValue(), caseSensitive);
+  }
+
+  private String readValue() throws FilterException {
+    if (isAtEnd() || Character.isWhitespace(peek())) {
+      throw error("Expected a value");
+    }
+
+    StringBuilder value = new StringBuilder();
+    if (skipSymbol('"')) {
+      while (!isAtEnd() && peek() != '"') {
+        char c = query.charAt(position++);
+        if (c == '\\' && !isAtEnd()) {
+          c = query.charAt(position++);
+        }
+        value.append(c);
+      }
+      if (!skipSymbol('"')) {
+        throw error("Missing '\"'");
+      }
+      if (value.length() == 0) {
+        throw error("Empty text");
+      }
+    } else {
+      while (!isAtEnd() && !Character.isWhitespace(peek()) && peek() != ')') {
+        value.append(query.charAt(position++));
+      }
+      if (value.length() == 0) {
+        throw error("Expected a value");
+      }
+    }
+
+    return value.toString();
+  }
+
+  private QueryNode createRegex(String regex) throws FilterException {
+    try {
+      return new QueryNode.Regex(Pattern.compile(regex, caseSensitive ? 0 : Pattern.CASE_INSENSITIVE));
+    } catch (PatternSyntaxException e) {
+      throw new FilterException("Invalid regex in query: " + regex, e);
+    }
+  }
+
+  private QueryNode createLevel(String operator, String value) throws FilterException {
+    int level = parseLevel(value).ordinal();
+    int max = LOG_LEVELS.length - 1;
+    switch (operator) {
+      case ">=":
+        return new QueryNode.Level(level, max);
+      case ">":
+        return new QueryNode.Level(level + 1, max);
+      case "<=":
+        return new QueryNode.Level(0, level);
+      case "<":
+        return new QueryNode.Level(0, level - 1);
+      case "=":
+        return new QueryNode.Level(level, level);
+      default:
+        throw error("Invalid level comparison: " + operator);
+    }
+  }
+
+  private LogLevel parseLevel(String value) throws FilterException {
+    for (LogLevel level : LOG_LEVELS) {
+      if (level.name().equalsIgnoreCase(value) || level.name().substring(0, 1).equalsIgnoreCase(value)) {
+        return level;
+      }
+    }
+
+    throw error("Invalid level: " + value);
+  }
+
+  private QueryNode createStream(String value) throws FilterException {
+    try {
+      return new QueryNode.Stream(LogStream.valueOf(value.toUpperCase()));
+    } catch (IllegalArgumentException e) {
+      throw error("Invalid stream: " + value);
+    }
+  }
+
+  /**
+   * Creates a time range ("HH:MM[:SS[.fraction]]-HH:MM[:SS[.fraction]]"). The end of the range includes everything
+   * up to the precision it was written with (i.e. "10:05" ends at 10:05:59.999...)
+   */
+  private QueryNode createTime(String value) throws FilterException {
+    String[] bounds = value.split("-");
+    if (bounds.length != 2) {
+      throw error("Time must be a range (e.g. time:10:00-10:05): " + value);
+    }
+
+    long from = parseTime(bounds[0], false);
+    long to = parseTime(bounds[1], true);
+    if (from > to) {
+      throw error("Time range ends before it starts: " + value);
+    }
+
+    return new QueryNode.Time(from, to);
+  }
+
+  private long parseTime(String time, boolean isRangeEnd) throws FilterException {
+    Matcher matcher = TIME_PATTERN.matcher(time);
+    if (!matcher.matches()) {
+      throw error("Invalid time: " + time);
+    }
+
+    int hour = Integer.parseInt(matcher.group(1));
+    int minutes = Integer.parseInt(matcher.group(2));
+    int seconds = matcher.group(3) != null ? Integer.parseInt(matcher.group(3)) : 0;
+    if (hour > 23 || minutes > 59 || seconds > 59) {
+      throw error("Invalid time: " + time);
+    }
+
+    if (matcher.group(3) == null) {
+      // Fields do not overflow to the next one when packed, so this is the last instant of the minute
+      return isRangeEnd ? LogTimestamp.pack(0, 0, hour, minutes + 1, 0, 0) - 1 :
+          LogTimestamp.pack(0, 0, hour, minutes, 0, 0);
+    }
+
+    if (matcher.group(4) == null) {
+      return isRangeEnd ? LogTimestamp.pack(0, 0, hour, minutes, seconds + 1, 0) - 1 :
+          LogTimestamp.pack(0, 0, hour, minutes, seconds, 0);
+    }
+
+    // The fraction of the log timestamps is in milliseconds (i.e. ".5" is 500ms). Digits after them are ignored
+    String fraction = matcher.group(4);
+    int digits = Math.min(fraction.length(), 3);
+    int precision = MILLIS_PRECISION[digits];
+    int millis = Integer.parseInt(fraction.substring(0, digits)) * precision;
+    return LogTimestamp.pack(0, 0, hour, minutes, seconds, isRangeEnd ? millis + precision - 1 : millis);
+  }
+
+  private int parseNumber(String value) throws FilterException {
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw error("Invalid number: " + value);
+    }
+  }
+
+  private boolean isKeyword(String keyword) {
+    int end = position + keyword.length();
+    return query.startsWith(keyword, position) &&
+        (end == query.length() || Character.isWhitespace(query.charAt(end)) || query.charAt(end) == '(');
+  }
+
+  private boolean skipKeyword(String keyword) {
+    skipSpaces();
+    if (isKeyword(keyword)) {
+      position += keyword.length();
+      return true;
+    }
+
+    return false;
+  }
+
+  private boolean skipSymbol(char symbol) {
+    if (!isAtEnd() && peek() == symbol) {
+      position++;
+      return true;
+    }
+
+    return false;
+  }
+
+  private void skipSpaces() {
+    while (!isAtEnd() && Character.isWhitespace(peek())) {
+      position++;
+    }
+  }
+
+  private boolean isAtEnd() {
+    return position >= query.length();
+  }
+
+  private char peek() {
+    return query.charAt(position);
+  }
+
+  private FilterException error(String message) {
+    return new FilterException("Invalid query at position " + (position + 1) + ": " + message);
+  }
+}
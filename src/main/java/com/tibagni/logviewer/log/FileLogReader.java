@@ -64,7 +64,7 @@ public class FileLogReader implements LogReader {
   }
 
   @Override
-  public String get(String logName) {
+  public CharSequence get(String logName) {
     return logStrings.get(logName);
   }
 
@@ -0,0 +1,142 @@
+package com.tibagni.logviewer.log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Remembers where a pattern matches the text of the log entries painted recently, so repainting a row (when it is
+ * selected, scrolled or the window gets focus) does not run the pattern again.
+ *
+ * The spans are packed as {start, end, start, end...}. Entries are identified by their position in the store they
+ * are from, so the flyweight entries of a store share the spans. Filters get a new pattern whenever they change, so
+ * the spans of an old pattern are never used for the new one.
+ */
+final class HighlightSpanCache {
+  static final int[] NO_SPANS = new int[0];
+
+  // A few screens of rows, each with the spans of the applied filter and of the search
+  private static final int MAX_ENTRIES = 4096;
+
+  private final Map<Key, int[]> spans = new LinkedHashMap<Key, int[]>(256, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, int[]> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  };
+
+  int[] getSpans(LogEntry entry, Pattern pattern) {
+    Key key = new Key(entry, pattern);
+    int[] found = spans.get(key);
+    if (found == null) {
+      found = findSpans(entry.getLogText(), pattern);
+      spans.put(key, found);
+    }
+
+    return found;
+  }
+
+  /**
+   * Same as {@link #getSpans(LogEntry, Pattern)}, but with the spans of all patterns merged
+   */
+  int[] getSpans(LogEntry entry, List<Pattern> patterns) {
+    if (patterns.size() == 1) {
+      return getSpans(entry, patterns.get(0));
+    }
+
+    // Filters get a new list with their patterns whenever they change, so it identifies the spans as a pattern does
+    Key key = new Key(entry, patterns);
+    int[] found = spans.get(key);
+    if (found == null) {
+      found = findSpans(entry.getLogText(), patterns);
+      spans.put(key, found);
+    }
+
+    return found;
+  }
+
+  static int[] findSpans(String text, List<Pattern> patterns) {
+    List<int[]> found = new ArrayList<>();
+    for (Pattern pattern : patterns) {
+      int[] patternSpans = findSpans(text, pattern);
+      for (int i = 0; i < patternSpans.length; i += 2) {
+        found.add(new int[]{patternSpans[i], patternSpans[i + 1]});
+      }
+    }
+
+    if (found.isEmpty()) {
+      return NO_SPANS;
+    }
+
+    // The spans of different patterns may overlap, so they are merged into spans that do not
+    found.sort(Comparator.comparingInt(span -> span[0]));
+    int count = 0;
+    int[] merged = new int[found.size() * 2];
+    for (int[] span : found) {
+      if (count > 0 && span[0] <= merged[count - 1]) {
+        merged[count - 1] = Math.max(merged[count - 1], span[1]);
+      } else {
+        merged[count++] = span[0];
+        merged[count++] = span[1];
+      }
+    }
+
+    return count == merged.length ? merged : Arrays.copyOf(merged, count);
+  }
+
+  static int[] findSpans(String text, Pattern pattern) {
+    int count = 0;
+    int[] found = NO_SPANS;
+    Matcher matcher = pattern.matcher(text);
+    while (matcher.find()) {
+      // Nothing to highlight in empty matches
+      if (matcher.start() == matcher.end()) continue;
+
+      if (count == found.length) {
+        found = Arrays.copyOf(found, Math.max(4, count * 2));
+      }
+      found[count++] = matcher.start();
+      found[count++] = matcher.end();
+    }
+
+    return count == found.length ? found : Arrays.copyOf(found, count);
+  }
+
+  // Test helpers
+  int sizeForTesting() {
+    return spans.size();
+  }
+
+  private static final class Key {
+    // The store of the entry, or the entry itself if it is not stored
+    private final Object owner;
+    private final int index;
+    // The pattern or the list of patterns the spans were found with
+    private final Object pattern;
+
+    private Key(LogEntry entry, Object pattern) {
+      LogStore store = entry.getStore();
+      this.owner = store != null ? store : entry;
+      this.index = store != null ? entry.getIndex() : 0;
+      this.pattern = pattern;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      Key key = (Key) o;
+      return owner == key.owner && index == key.index && pattern == key.pattern;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * System.identityHashCode(owner) + index) + System.identityHashCode(pattern);
+    }
+  }
+}
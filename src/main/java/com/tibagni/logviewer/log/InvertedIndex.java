@@ -0,0 +1,78 @@
+package com.tibagni.logviewer.log;
+
+import java.util.Arrays;
+
+/**
+ * Maps each value of an int column of a {@link LogStore} to the rows that have it.
+ *
+ * All rows are kept in a single array, grouped by value and in ascending order inside each group, so the rows of a
+ * value are read without scanning the column.
+ */
+final class InvertedIndex {
+  static final InvertedIndex EMPTY = new InvertedIndex(new int[0], new int[1], new int[0]);
+
+  // In ascending order. The rows of keys[i] are rows[offsets[i]] until rows[offsets[i + 1]] (exclusive)
+  private final int[] keys;
+  private final int[] offsets;
+  private final int[] rows;
+
+  private InvertedIndex(int[] keys, int[] offsets, int[] rows) {
+    this.keys = keys;
+    this.offsets = offsets;
+    this.rows = rows;
+  }
+
+  /**
+   * Creates the index of the first 'size' values of 'column'. Negative values (no value) are not indexed
+   */
+  static InvertedIndex create(int[] column, int size) {
+    int count = 0;
+    long[] sorted = new long[size];
+    for (int row = 0; row < size; row++) {
+      if (column[row] >= 0) {
+        sorted[count++] = ((long) column[row] << 32) | row;
+      }
+    }
+    if (count == 0) {
+      return EMPTY;
+    }
+
+    // Sorting by value and then by row groups the rows of each value in ascending order
+    Arrays.sort(sorted, 0, count);
+
+    int keyCount = 0;
+    int[] keys = new int[16];
+    int[] offsets = new int[17];
+    int[] rows = new int[count];
+    for (int i = 0; i < count; i++) {
+      int key = (int) (sorted[i] >>> 32);
+      if (keyCount == 0 || keys[keyCount - 1] != key) {
+        if (keyCount == keys.length) {
+          keys = Arrays.copyOf(keys, keyCount * 2);
+          offsets = Arrays.copyOf(offsets, keyCount * 2 + 1);
+        }
+        keys[keyCount] = key;
+        offsets[keyCount++] = i;
+      }
+      rows[i] = (int) sorted[i];
+    }
+    offsets[keyCount] = count;
+
+    return new InvertedIndex(Arrays.copyOf(keys, keyCount), Arrays.copyOf(offsets, keyCount + 1), rows);
+  }
+
+  /**
+   * @return the rows with 'key', in ascending order
+   */
+  int[] getRows(int key) {
+    int position = Arrays.binarySearch(keys, key);
+    return position >= 0 ? Arrays.copyOfRange(rows, offsets[position], offsets[position + 1]) : new int[0];
+  }
+
+  /**
+   * @return all keys in the index, in ascending order
+   */
+  int[] getKeys() {
+    return keys.clone();
+  }
+}
@@ -0,0 +1,98 @@
+package com.tibagni.logviewer.log;
+
+import java.util.Arrays;
+
+/**
+ * Finds where the text of a log entry is broken into lines when it is wrapped to a width of a fixed number of chars,
+ * as it is when drawn with a monospace font.
+ *
+ * Lines are broken after whitespace when possible, as a text area wrapping words does. Whitespace at the end of a
+ * line does not take room.
+ */
+public final class LineBreaks {
+  private static final int[] SINGLE_LINE = new int[]{0};
+
+  private LineBreaks() {
+  }
+
+  /**
+   * @return the offset of the first char of each line, in ascending order. The first one is always 0. A line ends
+   * where the next one starts (or at the end of the text), including the '\n' that ended it, if any
+   */
+  public static int[] find(String text, int columns) {
+    int count = 1;
+    int[] lineStarts = SINGLE_LINE;
+    int lineStart = 0;
+    // Where the line can be broken (the char after the last whitespace), or -1
+    int lastBreak = -1;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      int nextLineStart = -1;
+      if (c == '\n') {
+        nextLineStart = i + 1;
+      } else if (!Character.isWhitespace(c) && i - lineStart >= columns) {
+        // This char does not fit in the current line. Move the last word to the next line if possible
+        nextLineStart = lastBreak > lineStart ? lastBreak : i;
+      }
+
+      if (nextLineStart != -1) {
+        if (count == lineStarts.length) {
+          lineStarts = Arrays.copyOf(lineStarts, count * 2);
+        }
+        lineStarts[count++] = nextLineStart;
+        lineStart = nextLineStart;
+        lastBreak = -1;
+      } else if (Character.isWhitespace(c)) {
+        lastBreak = i + 1;
+      }
+    }
+
+    return count == lineStarts.length ? lineStarts : Arrays.copyOf(lineStarts, count);
+  }
+
+  /**
+   * @return 'text' with each tab replaced by the spaces up to the next tab stop (every 'tabSize' chars of a line), as
+   * a text area shows it. 'text' itself if it has no tabs
+   */
+  public static String expandTabs(String text, int tabSize) {
+    if (text.indexOf('\t') == -1) {
+      return text;
+    }
+
+    StringBuilder expanded = new StringBuilder(text.length() + tabSize);
+    int column = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '\t') {
+        int spaces = tabSize - column % tabSize;
+        for (int j = 0; j < spaces; j++) {
+          expanded.append(' ');
+        }
+        column += spaces;
+      } else {
+        expanded.append(c);
+        column = c == '\n' ? 0 : column + 1;
+      }
+    }
+    return expanded.toString();
+  }
+
+  /**
+   * @return where each char of 'text' is after {@link #expandTabs(String, int)}, followed by the length of the
+   * expanded text
+   */
+  public static int[] expandedOffsets(String text, int tabSize) {
+    int[] offsets = new int[text.length() + 1];
+    int column = 0;
+    int offset = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      offsets[i] = offset;
+      int width = c == '\t' ? tabSize - column % tabSize : 1;
+      offset += width;
+      column = c == '\n' ? 0 : column + width;
+    }
+    offsets[text.length()] = offset;
+    return offsets;
+  }
+}
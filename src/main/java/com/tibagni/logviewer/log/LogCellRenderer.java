@@ -2,87 +2,101 @@ package com.tibagni.logviewer.log;
 
 import com.tibagni.logviewer.ServiceLocator;
 import com.tibagni.logviewer.filter.Filter;
-import com.tibagni.logviewer.logger.Logger;
 import com.tibagni.logviewer.theme.LogViewerThemeManager;
-import com.tibagni.logviewer.util.StringUtils;
 import com.tibagni.logviewer.util.scaling.UIScaleUtils;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
-import javax.swing.border.EmptyBorder;
-import javax.swing.table.TableCellRenderer;
-import javax.swing.text.DefaultHighlighter;
-import javax.swing.text.Highlighter;
 import java.awt.*;
 import java.awt.font.FontRenderContext;
 import java.awt.geom.AffineTransform;
-import java.util.regex.Matcher;
+import java.util.Collections;
+import java.util.List;
 import java.util.regex.Pattern;
 
-public class LogCellRenderer extends JPanel implements TableCellRenderer {
-  private final JLabel lineNumLabel;
-  protected final JTextArea textView;
-  private final JPanel colorIndicator;
-  private final JLabel streamIndicator;
+/**
+ * Draws the rows of a log viewport directly with {@link Graphics2D}: a strip with the color of the log level, the
+ * line number, the log text wrapped to the width of the row and, optionally, the stream of the log.
+ *
+ * The text is drawn with a monospace font, so it is wrapped by counting chars (see {@link LineBreaks}) instead of
+ * being laid out. Only the rows being painted are measured.
+ */
+public class LogCellRenderer {
+  private static final Color DARK_SELECTED_HIGHLIGHT = new Color(111, 43, 0);
+  private static final Color DARK_SEARCH_HIGHLIGHT = new Color(75, 110, 175);
+  private static final Color DARK_FILTER_HIGHLIGHT = new Color(83, 87, 10);
+  private static final Color LIGHT_SELECTED_HIGHLIGHT = new Color(234, 115, 0);
+  private static final Color LIGHT_SEARCH_HIGHLIGHT = new Color(38, 117, 191);
+  private static final Color LIGHT_FILTER_HIGHLIGHT = new Color(250, 255, 162);
+
+  private static final Color VERBOSE_COLOR = new Color(185, 189, 186);
+  private static final Color DEBUG_COLOR = new Color(90, 153, 196);
+  private static final Color INFO_COLOR = new Color(2, 142, 2);
+  private static final Color WARNING_COLOR = new Color(214, 188, 76);
+  private static final Color ERROR_COLOR = new Color(156, 31, 2);
+
+  // Same as the default of a text area
+  private static final int TAB_SIZE = 8;
+
   private final LogViewerThemeManager themeManager;
-  private int mHighlightLine = -1;
+  private final HighlightSpanCache highlightSpans = new HighlightSpanCache();
   private final FontRenderContext fontRenderContext = new FontRenderContext(new AffineTransform(), true, true);
 
+  private final Font textFont;
+  private final Font lineNumberFont;
+  private final Font streamFont;
+  private final int colorIndicatorWidth = 10;
+  private final int textHorizontalMargin = UIScaleUtils.dip(10);
+  private final int textVerticalMargin = UIScaleUtils.dip(5);
+  private final int lineNumberMargin = UIScaleUtils.dip(10);
+  private final int streamMargin = UIScaleUtils.dip(5);
+  private final int minRowHeight = UIScaleUtils.dip(20);
+
+  private boolean showLineNumbers = true;
+  private boolean showStreams;
+  private int lineNumberWidth = UIScaleUtils.dip(70);
+  private int mHighlightLine = -1;
+
+  /**
+   * The text of a row as it is drawn (with its tabs expanded), where it is broken into lines and how tall the row is
+   */
+  public static final class RowLayout {
+    private final String text;
+    private final int[] lineStarts;
+    private final int height;
+
+    private RowLayout(String text, int[] lineStarts, int height) {
+      this.text = text;
+      this.lineStarts = lineStarts;
+      this.height = height;
+    }
+
+    public int getLineCount() {
+      return lineStarts.length;
+    }
+
+    public int getHeight() {
+      return height;
+    }
+  }
+
   public LogCellRenderer() {
     themeManager = ServiceLocator.INSTANCE.getThemeManager();
-    setLayout(new BorderLayout());
-
-    JPanel leftPane = new JPanel(new BorderLayout());
-    add(leftPane, BorderLayout.LINE_START);
-
-    colorIndicator = new JPanel();
-    leftPane.add(colorIndicator, BorderLayout.LINE_START);
-
-    lineNumLabel = new JLabel();
-    lineNumLabel.setHorizontalAlignment(SwingConstants.RIGHT);
-    lineNumLabel.setPreferredSize(new Dimension(UIScaleUtils.dip(70),
-        UIScaleUtils.dip(20)));
-    lineNumLabel.setBorder(new EmptyBorder(0,0,0,
-        UIScaleUtils.dip(10)));
-    leftPane.add(lineNumLabel);
-
-    textView = new JTextArea();
-    textView.setLineWrap(true);
-    textView.setWrapStyleWord(true);
-    textView.setMargin(new Insets(UIScaleUtils.dip(5),
-            UIScaleUtils.dip(10),
-            UIScaleUtils.dip(5),
-            UIScaleUtils.dip(10)));
-    int fontSize = textView.getFont().getSize();
-    textView.setFont(new Font(Font.MONOSPACED, Font.PLAIN, fontSize));
-    add(textView);
-
-    // Create the stream indicator component but do not show initially
-    // Wait until we know it is necessary to show (see showStreams(boolean))
-    streamIndicator = new JLabel();
-    streamIndicator.setBorder(new EmptyBorder(UIScaleUtils.dip(5),
-            UIScaleUtils.dip(5),
-            UIScaleUtils.dip(5),
-            UIScaleUtils.dip(5)));
-    fontSize = textView.getFont().getSize();
-    streamIndicator.setFont(new Font(Font.MONOSPACED, Font.ITALIC, fontSize));
+
+    Font defaultTextFont = UIManager.getFont("TextArea.font");
+    int fontSize = defaultTextFont != null ? defaultTextFont.getSize() : UIScaleUtils.dip(12);
+    textFont = new Font(Font.MONOSPACED, Font.PLAIN, fontSize);
+    streamFont = new Font(Font.MONOSPACED, Font.ITALIC, fontSize);
+    Font labelFont = UIManager.getFont("Label.font");
+    lineNumberFont = labelFont != null ? labelFont : textFont;
   }
 
   public void showLineNumbers(boolean showLineNumbers) {
-    lineNumLabel.setVisible(showLineNumbers);
+    this.showLineNumbers = showLineNumbers;
   }
 
   public void showStreams(boolean showStreams) {
-    if (showStreams) {
-      // Add the component if not already added
-      if (streamIndicator.getParent() == null) {
-        add(streamIndicator, BorderLayout.LINE_END);
-      }
-    } else {
-      // Remove if the component is added
-      if (streamIndicator.getParent() != null) {
-        remove(streamIndicator);
-      }
-    }
+    this.showStreams = showStreams;
   }
 
   public void highlightLine(int rowIndex) {
@@ -90,131 +104,184 @@ public class LogCellRenderer extends JPanel implements TableCellRenderer {
   }
 
   public void recalculateLineNumberPreferredSize(int maxLineNumber) {
-    if (!lineNumLabel.isVisible()) {
-      return;
-    }
-
     String line = String.valueOf(maxLineNumber + 1);
-    int width = (int) getFont().getStringBounds(line, fontRenderContext).getWidth();
+    int width = (int) lineNumberFont.getStringBounds(line, fontRenderContext).getWidth();
 
     // size = string width + border size
-    lineNumLabel.setPreferredSize(new Dimension(width + UIScaleUtils.dip(15),
-        lineNumLabel.getPreferredSize().height));
-  }
-
-  @Override
-  public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
-                                                 boolean hasFocus, int row, int column) {
-    LogEntry logEntry = (LogEntry) value;
-    if (logEntry == null) {
-      Logger.debug("getTableCellRenderedComponent passed a null value at position (" + row + ", " + column + ")");
-      logEntry = (LogEntry) table.getModel().getValueAt(row, column);
-      if (logEntry == null) {
-        Logger.error("TableModel has a null value at position (" + row + ", " + column + ")");
-        return null;
-      }
-    }
+    lineNumberWidth = width + UIScaleUtils.dip(15);
+  }
+
+  /**
+   * @return the height of each line of text. Rows are scrolled by this amount
+   */
+  public int getLineHeight(JComponent component) {
+    return component.getFontMetrics(textFont).getHeight();
+  }
+
+  /**
+   * Breaks the text of an entry into the lines it takes in a row with the given width
+   */
+  public RowLayout layoutRow(JComponent component, LogEntry entry, int width) {
+    FontMetrics metrics = component.getFontMetrics(textFont);
+    int textWidth = width - getTextX() - textHorizontalMargin - getStreamWidth(component);
+    int columns = Math.max(1, textWidth / Math.max(1, metrics.charWidth('m')));
+
+    String text = LineBreaks.expandTabs(entry.getLogText(), TAB_SIZE);
+    int[] lineStarts = LineBreaks.find(text, columns);
+    int height = Math.max(minRowHeight, lineStarts.length * metrics.getHeight() + 2 * textVerticalMargin);
+    return new RowLayout(text, lineStarts, height);
+  }
+
+  /**
+   * Draws a row with its top at 'y'
+   *
+   * @param searchFilter The filter of the search the entry matches, to have its text highlighted, or null
+   */
+  public void paintRow(Graphics2D g, JComponent component, LogEntry entry, int row, RowLayout layout, int y, int width,
+                       boolean isSelected, @Nullable Filter searchFilter) {
     // make the highlight line ui same as the select ui
     isSelected = isSelected || row == mHighlightLine;
+    int height = layout.height;
 
-    lineNumLabel.setText(String.valueOf(logEntry.getIndex() + 1));
+    g.setColor(UIManager.getColor("Panel.background"));
+    g.fillRect(0, y, width, height);
+    g.setColor(getColorForLogLevel(entry.getLogLevel()));
+    g.fillRect(0, y, colorIndicatorWidth, height);
 
-    textView.setText(logEntry.getLogText());
-    textView.setWrapStyleWord(true);
-    textView.setLineWrap(true);
+    int textX = getTextX();
+    int streamWidth = getStreamWidth(component);
+    g.setColor(getRowBackground(row, isSelected));
+    g.fillRect(textX, y, width - textX - streamWidth, height);
 
-    Highlighter highlighter = textView.getHighlighter();
-    highlighter.removeAllHighlights();
+    FontMetrics metrics = component.getFontMetrics(textFont);
+    int baseline = y + textVerticalMargin + metrics.getAscent();
 
-    colorIndicator.setBackground(getColorForLogLevel(logEntry.getLogLevel()));
-    streamIndicator.setText(logEntry.getStream().getSymbol());
+    if (showLineNumbers) {
+      String lineNumber = String.valueOf(entry.getIndex() + 1);
+      FontMetrics lineNumberMetrics = component.getFontMetrics(lineNumberFont);
+      g.setFont(lineNumberFont);
+      g.setColor(UIManager.getColor("Label.foreground"));
+      g.drawString(lineNumber, textX - lineNumberMargin - lineNumberMetrics.stringWidth(lineNumber), baseline);
+    }
+
+    if (showStreams) {
+      g.setFont(streamFont);
+      g.setColor(UIManager.getColor("Label.foreground"));
+      g.drawString(entry.getStream().getSymbol(), width - streamWidth + streamMargin, baseline);
+    }
 
-    setSize(table.getColumnModel().getColumn(column).getWidth(), getPreferredSize().height);
-    if (table.getRowHeight(row) != getPreferredSize().height) {
-      table.setRowHeight(row, getPreferredSize().height);
+    Filter appliedFilter = entry.getAppliedFilter();
+    // Line breaks are not drawn by drawChars, so draw them as spaces to keep the offsets of the text
+    char[] chars = layout.text.replace('\n', ' ').replace('\r', ' ').toCharArray();
+    int[] filterSpans = getHighlightSpans(appliedFilter, entry);
+    int[] searchSpans = getHighlightSpans(searchFilter, entry);
+    if (layout.text != entry.getLogText() && (filterSpans.length > 0 || searchSpans.length > 0)) {
+      // The spans were found in the text before its tabs were expanded
+      int[] offsets = LineBreaks.expandedOffsets(entry.getLogText(), TAB_SIZE);
+      filterSpans = toExpandedSpans(filterSpans, offsets);
+      searchSpans = toExpandedSpans(searchSpans, offsets);
     }
+    Color foreground = getTextForeground(appliedFilter, isSelected);
 
+    g.setFont(textFont);
+    int x = textX + textHorizontalMargin;
+    int[] lineStarts = layout.lineStarts;
+    for (int line = 0; line < lineStarts.length; line++) {
+      int start = lineStarts[line];
+      int end = line + 1 < lineStarts.length ? lineStarts[line + 1] : chars.length;
+      int lineTop = baseline - metrics.getAscent() + line * metrics.getHeight();
+
+      paintHighlights(g, metrics, chars, filterSpans, start, end, x, lineTop,
+          getHighlightColor(isSelected, false));
+      paintHighlights(g, metrics, chars, searchSpans, start, end, x, lineTop,
+          getHighlightColor(isSelected, true));
+
+      g.setColor(foreground);
+      g.drawChars(chars, start, end - start, x, lineTop + metrics.getAscent());
+    }
+  }
+
+  private void paintHighlights(Graphics2D g, FontMetrics metrics, char[] chars, int[] spans, int lineStart,
+                               int lineEnd, int x, int y, Color color) {
+    g.setColor(color);
+    for (int i = 0; i < spans.length; i += 2) {
+      int start = Math.max(spans[i], lineStart);
+      int end = Math.min(spans[i + 1], lineEnd);
+      if (start >= end) continue;
+
+      int spanX = x + metrics.charsWidth(chars, lineStart, start - lineStart);
+      g.fillRect(spanX, y, metrics.charsWidth(chars, start, end - start), metrics.getHeight());
+    }
+  }
+
+  private static int[] toExpandedSpans(int[] spans, int[] expandedOffsets) {
+    int[] expanded = new int[spans.length];
+    for (int i = 0; i < spans.length; i++) {
+      expanded[i] = expandedOffsets[spans[i]];
+    }
+    return expanded;
+  }
+
+  private int[] getHighlightSpans(@Nullable Filter filter, LogEntry entry) {
+    List<Pattern> patterns = filter != null ? filter.getHighlightPatterns() : Collections.emptyList();
+    // The matches are only found the first time the entry is painted with these patterns
+    return patterns.isEmpty() ? HighlightSpanCache.NO_SPANS : highlightSpans.getSpans(entry, patterns);
+  }
+
+  private int getTextX() {
+    return colorIndicatorWidth + (showLineNumbers ? lineNumberWidth : 0);
+  }
+
+  private int getStreamWidth(JComponent component) {
+    if (!showStreams) {
+      return 0;
+    }
+
+    return component.getFontMetrics(streamFont).charWidth('m') + 2 * streamMargin;
+  }
+
+  private Color getRowBackground(int row, boolean isSelected) {
     if (isSelected) {
-      textView.setForeground(new Color(table.getSelectionForeground().getRGB()));
-      textView.setBackground(new Color(table.getSelectionBackground().getRGB()));
-    } else {
-      Color background = table.getBackground();
-      if (background == null || background instanceof javax.swing.plaf.UIResource) {
-        Color alternateColor = UIManager.getColor("Table.alternateRowColor");
-        if (alternateColor != null && row % 2 != 0) {
-          background = alternateColor;
-        }
-      }
-
-      textView.setForeground(table.getForeground());
-      textView.setBackground(background);
+      return UIManager.getColor("Table.selectionBackground");
     }
 
-    Filter appliedFilter = logEntry.getAppliedFilter();
-    Color filteredColor = appliedFilter != null ? appliedFilter.getColor() : null;
-    if (!isSelected && filteredColor != null) {
-      textView.setForeground(filteredColor);
+    Color alternateColor = UIManager.getColor("Table.alternateRowColor");
+    if (alternateColor != null && row % 2 != 0) {
+      return alternateColor;
     }
-    // Apply highlighting if needed
-    highlightMatchedText(highlighter, logEntry, isSelected);
-
-    return this;
-  }
-
-  private void highlightMatchedText(Highlighter highlighter, LogEntry logEntry, boolean isSelected) {
-    highlightMatchedText(logEntry.getAppliedFilter(), highlighter, logEntry, isSelected, false);
-    highlightMatchedText(logEntry.getSearchFilter(), highlighter, logEntry, isSelected, true);
-  }
-
-  private void highlightMatchedText(Filter filter, Highlighter highlighter, LogEntry logEntry, boolean isSelected, boolean isForSearch) {
-    String hlText = filter != null ? filter.getPatternString() : null;
-    if (!StringUtils.isEmpty(hlText)) {
-      try {
-        int flags = filter.isCaseSensitive() ? 0 : Pattern.CASE_INSENSITIVE;
-        Pattern pattern = Pattern.compile(hlText, flags);
-        Matcher matcher = pattern.matcher(logEntry.getLogText());
-        while (matcher.find()) {
-          int start = matcher.start();
-          int end = matcher.end();
-          highlighter.addHighlight(start, end, new DefaultHighlighter.DefaultHighlightPainter(
-              getColorForHighlightedText(isSelected, isForSearch)));
-        }
-      } catch (Exception e) {
-        // Should not happen
-        Logger.error("Failed to highlight log entry", e);
-        highlighter.removeAllHighlights();
-      }
+    return UIManager.getColor("Table.background");
+  }
+
+  private Color getTextForeground(@Nullable Filter appliedFilter, boolean isSelected) {
+    if (isSelected) {
+      return UIManager.getColor("Table.selectionForeground");
     }
+
+    return appliedFilter != null ? appliedFilter.getColor() : UIManager.getColor("Table.foreground");
   }
 
-  private Color getColorForHighlightedText(boolean isSelected, boolean isForSearch) {
+  private Color getHighlightColor(boolean isSelected, boolean isForSearch) {
     if (themeManager.isDark()) {
-      return isSelected ? new Color(111, 43, 0) : isForSearch ? new Color(75,110,175) : new Color(83, 87, 10);
+      return isSelected ? DARK_SELECTED_HIGHLIGHT : isForSearch ? DARK_SEARCH_HIGHLIGHT : DARK_FILTER_HIGHLIGHT;
     } else {
-      return isSelected ? new Color(234, 115, 0) : isForSearch ? new Color(38,117,191) : new Color(250, 255, 162);
+      return isSelected ? LIGHT_SELECTED_HIGHLIGHT : isForSearch ? LIGHT_SEARCH_HIGHLIGHT : LIGHT_FILTER_HIGHLIGHT;
     }
   }
 
   private Color getColorForLogLevel(LogLevel level) {
-    Color logColor = Color.LIGHT_GRAY;
     switch (level) {
       case VERBOSE:
-        logColor = new Color(185, 189, 186);
-        break;
+        return VERBOSE_COLOR;
       case DEBUG:
-        logColor = new Color(90, 153, 196);
-        break;
+        return DEBUG_COLOR;
       case INFO:
-        logColor = new Color(2, 142, 2);
-        break;
+        return INFO_COLOR;
       case WARNING:
-        logColor = new Color(214, 188, 76);
-        break;
+        return WARNING_COLOR;
       case ERROR:
-        logColor = new Color(156, 31, 2);
-        break;
+        return ERROR_COLOR;
     }
 
-    return logColor;
+    return Color.LIGHT_GRAY;
   }
 }
@@ -8,41 +8,103 @@ import java.util.Objects;
 
 public class LogEntry implements Comparable<LogEntry> {
 
+  // Set when this entry is only a view of an entry of a LogStore. In this case, all attributes are read from the store
+  @Nullable
+  private final LogStore store;
+
   private int index;
-  public final LogTimestamp timestamp;
-  public final String logText;
-  public final LogLevel logLevel;
-  public final LogStream logStream;
+  private final LogTimestamp timestamp;
+  private final String logText;
+  private final LogLevel logLevel;
+  private final LogStream logStream;
 
   private Filter appliedFilter;
-  @Nullable
-  private Filter searchFilter;
 
   public LogEntry(String logText, LogLevel logLevel, LogTimestamp timestamp) {
     this(logText, logLevel, timestamp, "");
   }
 
   public LogEntry(String logText, LogLevel logLevel, LogTimestamp timestamp, String logName) {
+    this.store = null;
     this.logText = logText;
     this.logLevel = logLevel;
     this.timestamp = timestamp;
     this.logStream = LogStream.inferLogStreamFromName(logName);
   }
 
+  LogEntry(@NotNull LogStore store, int index) {
+    this.store = store;
+    this.index = index;
+    this.logText = null;
+    this.logLevel = null;
+    this.timestamp = null;
+    this.logStream = null;
+  }
+
+  boolean isFrom(LogStore store) {
+    return this.store == store;
+  }
+
+  @Nullable
+  LogStore getStore() {
+    return store;
+  }
+
   public String getLogText() {
-    return logText;
+    return store != null ? store.getText(index) : logText;
   }
 
   public LogLevel getLogLevel() {
-    return logLevel;
+    return store != null ? store.getLogLevel(index) : logLevel;
+  }
+
+  public LogTimestamp getTimestamp() {
+    return store != null ? store.getTimestamp(index) : timestamp;
+  }
+
+  /**
+   * @return The timestamp packed in a long or {@link LogStore#NO_TIMESTAMP} if this entry has no timestamp
+   */
+  public long getPackedTimestamp() {
+    return store != null ? store.getPackedTimestamp(index) : LogStore.packTimestamp(timestamp);
+  }
+
+  public LogStream getLogStream() {
+    return store != null ? store.getLogStream(index) : logStream;
+  }
+
+  /**
+   * @return The pid found in the header of this entry or -1 if it has none. Only stored entries have a pid
+   */
+  public int getPid() {
+    return store != null ? store.getPid(index) : -1;
+  }
+
+  /**
+   * @return The tid found in the header of this entry or -1 if it has none. Only stored entries have a tid
+   */
+  public int getTid() {
+    return store != null ? store.getTid(index) : -1;
+  }
+
+  /**
+   * @return The tag found in the header of this entry or null if it has none. Only stored entries have a tag
+   */
+  @Nullable
+  public String getTag() {
+    return store != null ? store.getTag(index) : null;
   }
 
   public Filter getAppliedFilter() {
-    return appliedFilter;
+    return store != null ? store.getAppliedFilter(index) : appliedFilter;
   }
 
   public void setAppliedFilter(Filter appliedFilter) {
-    this.appliedFilter = appliedFilter;
+    if (store != null) {
+      store.setAppliedFilter(index, appliedFilter);
+    } else {
+      this.appliedFilter = appliedFilter;
+    }
   }
 
   public int getIndex() {
@@ -50,25 +112,18 @@ public class LogEntry implements Comparable<LogEntry> {
   }
 
   public void setIndex(int index) {
+    if (store != null) {
+      throw new UnsupportedOperationException("The index of a stored log entry cannot be changed");
+    }
     this.index = index;
   }
 
   public LogStream getStream() {
-    return logStream;
+    return getLogStream();
   }
 
   public int getLength() {
-    return logText.length();
-  }
-
-  @Nullable
-  public Filter getSearchFilter() {
-    return searchFilter;
-  }
-
-  public LogEntry setSearchFilter(@Nullable Filter searchFilter) {
-    this.searchFilter = searchFilter;
-    return this;
+    return store != null ? store.getTextLength(index) : logText.length();
   }
 
   @Override
@@ -78,11 +133,12 @@ public class LogEntry implements Comparable<LogEntry> {
 
   @Override
   public int compareTo(@NotNull LogEntry o) {
-    if (timestamp == null && o.timestamp == null) return 0;
-    if (timestamp == null) return -1;
-    if (o.timestamp == null) return 1;
+    long timestamp = getPackedTimestamp();
+    long otherTimestamp = o.getPackedTimestamp();
+    // Entries without timestamp come first
+    if (timestamp == LogStore.NO_TIMESTAMP && otherTimestamp == LogStore.NO_TIMESTAMP) return 0;
 
-    int time = timestamp.compareTo(o.timestamp);
+    int time = Long.compare(timestamp, otherTimestamp);
     // compare index if same time
     return time == 0 ? Integer.compare(index, o.index) : time;
   }
@@ -92,15 +148,20 @@ public class LogEntry implements Comparable<LogEntry> {
     if (this == o) return true;
     if (o == null || getClass() != o.getClass()) return false;
     LogEntry logEntry = (LogEntry) o;
+    if (store != null && store == logEntry.store) {
+      // Everything else is the same for the same index
+      return index == logEntry.index;
+    }
+
     return index == logEntry.index &&
-        Objects.equals(timestamp, logEntry.timestamp) &&
-        Objects.equals(logText, logEntry.logText) &&
-        logLevel == logEntry.logLevel &&
-        logStream == logEntry.logStream;
+        getPackedTimestamp() == logEntry.getPackedTimestamp() &&
+        Objects.equals(getLogText(), logEntry.getLogText()) &&
+        getLogLevel() == logEntry.getLogLevel() &&
+        getLogStream() == logEntry.getLogStream();
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(index, timestamp, logText, logLevel, logStream);
+    return Objects.hash(index, getPackedTimestamp(), getLogText(), getLogLevel(), getLogStream());
   }
 }
@@ -3,12 +3,18 @@ package com.tibagni.logviewer.log;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.table.AbstractTableModel;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+/**
+ * Shows a list of log entries without copying it. The lists given to {@link #setLogs(List)} are snapshots that are
+ * never changed after that (e.g. the logs of a {@link LogStore} or the result of applying the filters), so they are
+ * shown as they are and replaced as a whole.
+ */
 public class LogListTableModel extends AbstractTableModel {
-  protected final List<LogEntry> entries = new ArrayList<>();
+  private List<LogEntry> entries = Collections.emptyList();
   protected final String title;
+  private SearchResult searchResult = SearchResult.EMPTY;
 
   public LogListTableModel(String title) {
     this.title = title;
@@ -40,6 +46,13 @@ public class LogListTableModel extends AbstractTableModel {
     return entries.get(rowIndex);
   }
 
+  /**
+   * @return the logs being shown. They are not copied, so it is the same list given to {@link #setLogs(List)}
+   */
+  public List<LogEntry> getLogs() {
+    return entries;
+  }
+
   public @Nullable LogEntry getLastEntry() {
     if (entries.isEmpty()) {
       return null;
@@ -48,17 +61,44 @@ public class LogListTableModel extends AbstractTableModel {
     return entries.get(entries.size() - 1);
   }
 
+  /**
+   * @return the result of the last search on this table. It is reset whenever the logs change
+   */
+  public SearchResult getSearchResult() {
+    return searchResult;
+  }
+
+  public void setSearchResult(SearchResult searchResult) {
+    this.searchResult = searchResult;
+  }
+
+  /**
+   * Shows 'entries' instead of the current logs. 'entries' must not be changed after this, as it is not copied
+   */
   public void setLogs(List<LogEntry> entries) {
-    this.entries.clear();
-    this.entries.addAll(entries);
-    fireTableRowsInserted(0, this.entries.size() - 1);
+    List<LogEntry> previous = this.entries;
+    if (entries == previous) {
+      // Same logs. Only what is shown for them (e.g. the applied filters) may have changed
+      if (!entries.isEmpty()) {
+        fireTableRowsUpdated(0, entries.size() - 1);
+      }
+      return;
+    }
+
+    searchResult = SearchResult.EMPTY;
+    this.entries = entries;
+    if (previous.isEmpty()) {
+      if (!entries.isEmpty()) {
+        fireTableRowsInserted(0, entries.size() - 1);
+      }
+    } else if (entries.isEmpty()) {
+      fireTableRowsDeleted(0, previous.size() - 1);
+    } else {
+      fireTableDataChanged();
+    }
   }
 
   public void clear() {
-    if (entries.isEmpty()) return;
-
-    int index = entries.size() - 1;
-    entries.clear();
-    fireTableRowsDeleted(0, index);
+    setLogs(Collections.emptyList());
   }
 }
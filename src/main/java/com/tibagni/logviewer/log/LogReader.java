@@ -8,7 +8,7 @@ public interface LogReader {
 
   int size();
 
-  String get(String logName);
+  CharSequence get(String logName);
 
   Set<String> getAvailableLogPaths();
 
@@ -0,0 +1,489 @@
+package com.tibagni.logviewer.log;
+
+import com.tibagni.logviewer.filter.Filter;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Columnar storage for all the entries of the opened logs.
+ *
+ * Instead of keeping one {@link LogEntry} (plus its timestamp and text objects) per line, each attribute is kept in
+ * its own primitive array, indexed by the log index. The text of all entries is kept in shared byte segments, using
+ * one byte per char when possible (Latin-1) and two otherwise (UTF-16).
+ *
+ * The pid, tid and tag found in the header of each entry are kept as columns too (tags are interned and stored as
+ * ids). The rows of each tag and pid are indexed when the store is built, so they can be found without a scan.
+ *
+ * This is exposed as an immutable list of {@link LogEntry}. The entries are flyweights created on demand, backed by
+ * the store, so it is fine to have many instances for the same index.
+ */
+public final class LogStore extends AbstractList<LogEntry> implements RandomAccess {
+  public static final LogStore EMPTY = new Builder(0).build();
+
+  /** Packed value used for entries without a timestamp. It is smaller than any packed {@link LogTimestamp} */
+  public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+  private static final int UTF16_FLAG = 0x80000000;
+  private static final LogLevel[] LOG_LEVELS = LogLevel.values();
+  private static final LogStream[] LOG_STREAMS = LogStream.values();
+
+  private final int size;
+  private final long[] timestamps;
+  private final byte[] levels;
+  private final byte[] streams;
+  private final int[] textSegments;
+  private final int[] textOffsets;
+  // Length in chars. The highest bit indicates the text is stored as UTF-16
+  private final int[] textLengths;
+  private final byte[][] segments;
+  private final int[] pids;
+  private final int[] tids;
+  private final int[] tagIds;
+  private final String[] tags;
+  private final Map<String, Integer> tagIdsByName;
+  private final InvertedIndex rowsByTag;
+  private final InvertedIndex rowsByPid;
+
+  // Only allocated if it is ever used
+  private Filter[] appliedFilters;
+
+  private LogStore(Builder builder) {
+    size = builder.size;
+    timestamps = builder.timestamps;
+    levels = builder.levels;
+    streams = builder.streams;
+    textSegments = builder.textSegments;
+    textOffsets = builder.textOffsets;
+    textLengths = builder.textLengths;
+    segments = builder.segments.toArray(new byte[0][]);
+    pids = builder.pids;
+    tids = builder.tids;
+    tagIds = builder.tagIds;
+    tags = builder.tags.toArray(new String[0]);
+    tagIdsByName = builder.tagIdsByName;
+    rowsByTag = InvertedIndex.create(tagIds, size);
+    rowsByPid = InvertedIndex.create(pids, size);
+  }
+
+  @Override
+  public LogEntry get(int index) {
+    checkIndex(index);
+    return new LogEntry(this, index);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Range subList(int fromIndex, int toIndex) {
+    checkRange(fromIndex, toIndex, size);
+    return new Range(this, fromIndex, toIndex);
+  }
+
+  private static void checkRange(int fromIndex, int toIndex, int size) {
+    if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+      throw new IndexOutOfBoundsException("From: " + fromIndex + ", To: " + toIndex + ", Size: " + size);
+    }
+  }
+
+  public String getText(int index) {
+    checkIndex(index);
+    byte[] segment = segments[textSegments[index]];
+    int offset = textOffsets[index];
+    int length = textLengths[index];
+
+    if ((length & UTF16_FLAG) == 0) {
+      return new String(segment, offset, length, StandardCharsets.ISO_8859_1);
+    }
+
+    length &= ~UTF16_FLAG;
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      int pos = offset + 2 * i;
+      chars[i] = (char) ((segment[pos] & 0xFF) | ((segment[pos + 1] & 0xFF) << 8));
+    }
+    return new String(chars);
+  }
+
+  public int getTextLength(int index) {
+    checkIndex(index);
+    return textLengths[index] & ~UTF16_FLAG;
+  }
+
+  public long getPackedTimestamp(int index) {
+    checkIndex(index);
+    return timestamps[index];
+  }
+
+  @Nullable
+  public LogTimestamp getTimestamp(int index) {
+    return unpackTimestamp(getPackedTimestamp(index));
+  }
+
+  public LogLevel getLogLevel(int index) {
+    checkIndex(index);
+    return LOG_LEVELS[levels[index]];
+  }
+
+  public LogStream getLogStream(int index) {
+    checkIndex(index);
+    return LOG_STREAMS[streams[index]];
+  }
+
+  /**
+   * @return the pid of the entry or -1 if it has none
+   */
+  public int getPid(int index) {
+    checkIndex(index);
+    return pids[index];
+  }
+
+  /**
+   * @return the tid of the entry or -1 if it has none
+   */
+  public int getTid(int index) {
+    checkIndex(index);
+    return tids[index];
+  }
+
+  @Nullable
+  public String getTag(int index) {
+    checkIndex(index);
+    int tagId = tagIds[index];
+    return tagId >= 0 ? tags[tagId] : null;
+  }
+
+  /**
+   * @return all tags found in the entries, in the order they were first found
+   */
+  public List<String> getTags() {
+    return List.of(tags);
+  }
+
+  /**
+   * @return the indices of the entries with 'tag', in ascending order
+   */
+  public int[] getIndicesWithTag(String tag) {
+    Integer tagId = tagIdsByName.get(tag);
+    return tagId != null ? rowsByTag.getRows(tagId) : new int[0];
+  }
+
+  /**
+   * @return all pids found in the entries, in ascending order
+   */
+  public int[] getPids() {
+    return rowsByPid.getKeys();
+  }
+
+  /**
+   * @return the indices of the entries with 'pid', in ascending order
+   */
+  public int[] getIndicesWithPid(int pid) {
+    return rowsByPid.getRows(pid);
+  }
+
+  @Nullable
+  public Filter getAppliedFilter(int index) {
+    checkIndex(index);
+    Filter[] filters = appliedFilters;
+    return filters != null ? filters[index] : null;
+  }
+
+  public void setAppliedFilter(int index, @Nullable Filter filter) {
+    checkIndex(index);
+    if (appliedFilters == null) {
+      if (filter == null) return;
+      allocateAppliedFilters();
+    }
+    appliedFilters[index] = filter;
+  }
+
+  // Filters can be applied from multiple threads at the same time, so make sure only one array is created
+  private synchronized void allocateAppliedFilters() {
+    if (appliedFilters == null) {
+      appliedFilters = new Filter[size];
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  public static long packTimestamp(@Nullable LogTimestamp timestamp) {
+    return timestamp != null ? timestamp.getPacked() : NO_TIMESTAMP;
+  }
+
+  @Nullable
+  public static LogTimestamp unpackTimestamp(long packed) {
+    return packed != NO_TIMESTAMP ? LogTimestamp.fromPacked(packed) : null;
+  }
+
+  /**
+   * A view of consecutive entries of a store. Unlike a generic sub list, it is possible to know which entries of
+   * the store it has without checking them
+   */
+  public static final class Range extends AbstractList<LogEntry> implements RandomAccess {
+    private final LogStore store;
+    private final int fromIndex;
+    private final int toIndex;
+
+    private Range(LogStore store, int fromIndex, int toIndex) {
+      this.store = store;
+      this.fromIndex = fromIndex;
+      this.toIndex = toIndex;
+    }
+
+    public LogStore getStore() {
+      return store;
+    }
+
+    /**
+     * @return the index in the store of the first entry of this range
+     */
+    public int getFromIndex() {
+      return fromIndex;
+    }
+
+    @Override
+    public LogEntry get(int index) {
+      if (index < 0 || index >= size()) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+      }
+      return store.get(fromIndex + index);
+    }
+
+    @Override
+    public int size() {
+      return toIndex - fromIndex;
+    }
+
+    @Override
+    public Range subList(int fromIndex, int toIndex) {
+      checkRange(fromIndex, toIndex, size());
+      return new Range(store, this.fromIndex + fromIndex, this.fromIndex + toIndex);
+    }
+  }
+
+  /**
+   * Entries of one part of a log file, in the order they were parsed.
+   * Each parsing task fills its own chunk. All chunks are then combined in the final store by a {@link Builder}
+   */
+  public static final class Chunk {
+    private static final int SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    private final byte stream;
+    private int size;
+    private long[] timestamps = new long[1024];
+    private byte[] levels = new byte[1024];
+    private int[] textOffsets = new int[1024];
+    private int[] textLengths = new int[1024];
+    private int[] textSegments = new int[1024];
+    private int[] pids = new int[1024];
+    private int[] tids = new int[1024];
+    private int[] tagIds = new int[1024];
+
+    // Ids local to this chunk. They are mapped to the ids of the store when the chunk is added to it
+    private final List<String> tags = new ArrayList<>();
+    private final Map<String, Integer> tagIdsByName = new HashMap<>();
+
+    private final List<byte[]> segments = new ArrayList<>();
+    private byte[] currentSegment;
+    private int currentSegmentSize;
+
+    // Where the segments of this chunk start in the store being built
+    private Builder builder;
+    private int builderSegmentOffset;
+    private int[] builderTagIds;
+
+    public Chunk(LogStream stream) {
+      this.stream = (byte) stream.ordinal();
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public long getPackedTimestamp(int index) {
+      return timestamps[index];
+    }
+
+    public void add(CharSequence text, LogLevel level, long packedTimestamp) {
+      add(text, level, packedTimestamp, -1, -1, null);
+    }
+
+    /**
+     * @param pid the pid of the entry or -1 if it has none
+     * @param tid the tid of the entry or -1 if it has none
+     * @param tag the tag of the entry or null if it has none
+     */
+    public void add(CharSequence text, LogLevel level, long packedTimestamp, int pid, int tid, @Nullable String tag) {
+      if (size == timestamps.length) {
+        int newCapacity = size + (size >> 1);
+        timestamps = Arrays.copyOf(timestamps, newCapacity);
+        levels = Arrays.copyOf(levels, newCapacity);
+        textOffsets = Arrays.copyOf(textOffsets, newCapacity);
+        textLengths = Arrays.copyOf(textLengths, newCapacity);
+        textSegments = Arrays.copyOf(textSegments, newCapacity);
+        pids = Arrays.copyOf(pids, newCapacity);
+        tids = Arrays.copyOf(tids, newCapacity);
+        tagIds = Arrays.copyOf(tagIds, newCapacity);
+      }
+
+      int length = text.length();
+      boolean isLatin1 = true;
+      for (int i = 0; i < length && isLatin1; i++) {
+        isLatin1 = text.charAt(i) <= 0xFF;
+      }
+
+      int bytes = isLatin1 ? length : length * 2;
+      ensureSegmentSpace(bytes);
+      int offset = currentSegmentSize;
+      if (isLatin1) {
+        for (int i = 0; i < length; i++) {
+          currentSegment[offset + i] = (byte) text.charAt(i);
+        }
+      } else {
+        for (int i = 0; i < length; i++) {
+          char c = text.charAt(i);
+          currentSegment[offset + 2 * i] = (byte) c;
+          currentSegment[offset + 2 * i + 1] = (byte) (c >>> 8);
+        }
+      }
+      currentSegmentSize += bytes;
+
+      timestamps[size] = packedTimestamp;
+      levels[size] = (byte) level.ordinal();
+      textOffsets[size] = offset;
+      textLengths[size] = isLatin1 ? length : length | UTF16_FLAG;
+      textSegments[size] = segments.size() - 1;
+      pids[size] = pid;
+      tids[size] = tid;
+      tagIds[size] = tag != null ? tagIdsByName.computeIfAbsent(tag, this::addTag) : -1;
+      size++;
+    }
+
+    private int addTag(String tag) {
+      tags.add(tag);
+      return tags.size() - 1;
+    }
+
+    private void ensureSegmentSpace(int bytes) {
+      if (currentSegment != null && currentSegment.length - currentSegmentSize >= bytes) return;
+
+      trimCurrentSegment();
+      currentSegment = new byte[Math.max(SEGMENT_SIZE, bytes)];
+      currentSegmentSize = 0;
+      segments.add(currentSegment);
+    }
+
+    private void trimCurrentSegment() {
+      if (currentSegment != null && currentSegmentSize < currentSegment.length) {
+        currentSegment = Arrays.copyOf(currentSegment, currentSegmentSize);
+        segments.set(segments.size() - 1, currentSegment);
+      }
+    }
+  }
+
+  /**
+   * Combines the entries of multiple {@link Chunk}s in a new {@link LogStore}, in the order they are added
+   */
+  public static final class Builder {
+    private final List<byte[]> segments = new ArrayList<>();
+
+    private int size;
+    private final long[] timestamps;
+    private final byte[] levels;
+    private final byte[] streams;
+    private final int[] textSegments;
+    private final int[] textOffsets;
+    private final int[] textLengths;
+    private final int[] pids;
+    private final int[] tids;
+    private final int[] tagIds;
+    private final List<String> tags = new ArrayList<>();
+    private final Map<String, Integer> tagIdsByName = new HashMap<>();
+
+    public Builder(int capacity) {
+      timestamps = new long[capacity];
+      levels = new byte[capacity];
+      streams = new byte[capacity];
+      textSegments = new int[capacity];
+      textOffsets = new int[capacity];
+      textLengths = new int[capacity];
+      pids = new int[capacity];
+      tids = new int[capacity];
+      tagIds = new int[capacity];
+    }
+
+    /**
+     * Adds the entry at 'index' of the given chunk as the next entry of the store
+     */
+    public void add(Chunk chunk, int index) {
+      int segmentOffset = register(chunk);
+
+      timestamps[size] = chunk.timestamps[index];
+      levels[size] = chunk.levels[index];
+      streams[size] = chunk.stream;
+      textSegments[size] = segmentOffset + chunk.textSegments[index];
+      textOffsets[size] = chunk.textOffsets[index];
+      textLengths[size] = chunk.textLengths[index];
+      pids[size] = chunk.pids[index];
+      tids[size] = chunk.tids[index];
+      int chunkTagId = chunk.tagIds[index];
+      tagIds[size] = chunkTagId >= 0 ? chunk.builderTagIds[chunkTagId] : -1;
+      size++;
+    }
+
+    public void addAll(Chunk chunk) {
+      for (int i = 0; i < chunk.size; i++) {
+        add(chunk, i);
+      }
+    }
+
+    /**
+     * Adds the segments and tags of the chunk to the store the first time one of its entries is added
+     *
+     * @return where the segments of the chunk start in the store
+     */
+    private int register(Chunk chunk) {
+      if (chunk.builder != this) {
+        chunk.trimCurrentSegment();
+        chunk.builder = this;
+        chunk.builderSegmentOffset = segments.size();
+        segments.addAll(chunk.segments);
+
+        chunk.builderTagIds = new int[chunk.tags.size()];
+        for (int i = 0; i < chunk.tags.size(); i++) {
+          chunk.builderTagIds[i] = tagIdsByName.computeIfAbsent(chunk.tags.get(i), this::addTag);
+        }
+      }
+
+      return chunk.builderSegmentOffset;
+    }
+
+    private int addTag(String tag) {
+      tags.add(tag);
+      return tags.size() - 1;
+    }
+
+    public LogStore build() {
+      if (size != timestamps.length) {
+        throw new IllegalStateException("Expected " + timestamps.length + " entries but got " + size);
+      }
+
+      return new LogStore(this);
+    }
+  }
+}
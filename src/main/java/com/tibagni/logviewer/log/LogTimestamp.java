@@ -1,64 +1,110 @@
 package com.tibagni.logviewer.log;
 
+/**
+ * A log timestamp packed in a single long, so timestamps can be compared with a single {@link Long#compare}.
+ *
+ * The fields are stored from the most to the least significant: month (4 bits), day (5 bits), hour (5 bits),
+ * minutes (6 bits), seconds (6 bits) and the fraction of the second (37 bits). Values that do not fit their field
+ * (only possible for invalid timestamps) are saturated.
+ */
 public class LogTimestamp implements Comparable<LogTimestamp> {
-  public final int month;
-  public final int day;
+  private static final long FRACTION_MASK = (1L << 37) - 1;
+  private static final long TIME_OF_DAY_MASK = (1L << 54) - 1;
 
-  public final int hour;
-  public final int minutes;
-  public final int seconds;
-  public final int hundredth;
+  private final long packed;
 
   public LogTimestamp(int month, int day, int hour, int minutes, int seconds, int hundredth) {
-    this.month = month;
-    this.day = day;
-    this.hour = hour;
-    this.minutes = minutes;
-    this.seconds = seconds;
-    this.hundredth = hundredth;
+    this(pack(month, day, hour, minutes, seconds, hundredth));
   }
 
   public LogTimestamp(String month, String day, String hour, String minutes, String seconds, String hundredth) {
-    this.month = Integer.parseInt(month);
-    this.day = Integer.parseInt(day);
-    this.hour = Integer.parseInt(hour);
-    this.minutes = Integer.parseInt(minutes);
-    this.seconds = Integer.parseInt(seconds);
-    this.hundredth = Integer.parseInt(hundredth);
+    this(Integer.parseInt(month),
+        Integer.parseInt(day),
+        Integer.parseInt(hour),
+        Integer.parseInt(minutes),
+        Integer.parseInt(seconds),
+        Integer.parseInt(hundredth));
   }
 
-  @Override
-  public int compareTo(LogTimestamp o) {
-    if (month > o.month) return 1;
-    if (month < o.month) return -1;
+  private LogTimestamp(long packed) {
+    this.packed = packed;
+  }
 
-    if (day > o.day) return 1;
-    if (day < o.day) return -1;
+  public static LogTimestamp fromPacked(long packed) {
+    return new LogTimestamp(packed);
+  }
 
-    if (hour > o.hour) return 1;
-    if (hour < o.hour) return -1;
+  public static long pack(int month, int day, int hour, int minutes, int seconds, int hundredth) {
+    return (saturate(month, 4) << 59) |
+        (saturate(day, 5) << 54) |
+        (saturate(hour, 5) << 49) |
+        (saturate(minutes, 6) << 43) |
+        (saturate(seconds, 6) << 37) |
+        saturate(hundredth, 37);
+  }
 
-    if (minutes > o.minutes) return 1;
-    if (minutes < o.minutes) return -1;
+  /**
+   * @return the given packed timestamp without the fraction of the second
+   */
+  static long truncateToSecond(long packed) {
+    return packed & ~FRACTION_MASK;
+  }
 
-    if (seconds > o.seconds) return 1;
-    if (seconds < o.seconds) return -1;
+  /**
+   * @return the time of the day of the given packed timestamp (hour, minutes, seconds and fraction of the second),
+   * packed the same way. It can be compared to other times of the day, ignoring the date
+   */
+  public static long timeOfDay(long packed) {
+    return packed & TIME_OF_DAY_MASK;
+  }
 
-    if (hundredth > o.hundredth) return 1;
-    if (hundredth < o.hundredth) return -1;
+  private static long saturate(int value, int bits) {
+    long max = (1L << bits) - 1;
+    return Math.max(0, Math.min(value, max));
+  }
+
+  public long getPacked() {
+    return packed;
+  }
 
-    return 0;
+  public int getMonth() {
+    return (int) (packed >>> 59) & 0xF;
+  }
+
+  public int getDay() {
+    return (int) (packed >>> 54) & 0x1F;
+  }
+
+  public int getHour() {
+    return (int) (packed >>> 49) & 0x1F;
+  }
+
+  public int getMinutes() {
+    return (int) (packed >>> 43) & 0x3F;
+  }
+
+  public int getSeconds() {
+    return (int) (packed >>> 37) & 0x3F;
+  }
+
+  public int getHundredth() {
+    return (int) (packed & FRACTION_MASK);
+  }
+
+  @Override
+  public int compareTo(LogTimestamp o) {
+    return Long.compare(packed, o.packed);
   }
 
   @Override
   public String toString() {
     return "LogTimestamp{" +
-        "month=" + month +
-        ", day=" + day +
-        ", hour=" + hour +
-        ", minutes=" + minutes +
-        ", seconds=" + seconds +
-        ", hundredth=" + hundredth +
+        "month=" + getMonth() +
+        ", day=" + getDay() +
+        ", hour=" + getHour() +
+        ", minutes=" + getMinutes() +
+        ", seconds=" + getSeconds() +
+        ", hundredth=" + getHundredth() +
         '}';
   }
 
@@ -68,23 +114,11 @@ public class LogTimestamp implements Comparable<LogTimestamp> {
     if (o == null || getClass() != o.getClass()) return false;
 
     LogTimestamp that = (LogTimestamp) o;
-
-    if (day != that.day) return false;
-    if (month != that.month) return false;
-    if (hour != that.hour) return false;
-    if (minutes != that.minutes) return false;
-    if (seconds != that.seconds) return false;
-    return hundredth == that.hundredth;
+    return packed == that.packed;
   }
 
   @Override
   public int hashCode() {
-    int result = day;
-    result = 31 * result + month;
-    result = 31 * result + hour;
-    result = 31 * result + minutes;
-    result = 31 * result + seconds;
-    result = 31 * result + hundredth;
-    return result;
+    return Long.hashCode(packed);
   }
 }
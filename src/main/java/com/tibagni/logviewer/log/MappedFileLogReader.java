@@ -0,0 +1,95 @@
+package com.tibagni.logviewer.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link LogReader} backed by memory mapped files.
+ *
+ * The files are not copied into the heap. Each one is exposed as a {@link CharSequence} view over the mapped bytes,
+ * so the parser can walk the line boundaries in place and only decode the lines it keeps.
+ * Charsets that are not ASCII compatible (UTF-16, for example) are decoded from the mapped buffer instead.
+ */
+public class MappedFileLogReader implements LogReader {
+  private File[] logFiles;
+  private Map<String, CharSequence> logTexts;
+
+  private boolean isClosed;
+
+  public MappedFileLogReader(File[] logFiles) {
+    this.logFiles = logFiles;
+    this.logTexts = new LinkedHashMap<>();
+  }
+
+  @Override
+  public void readLogs(Charset charset) throws LogReaderException {
+    if (isClosed) {
+      throw new IllegalStateException("Reader already closed");
+    }
+
+    if (logFiles == null || logFiles.length == 0) {
+      throw new LogReaderException("There are no logs to read!");
+    }
+
+    File currentFile = null;
+    try {
+      for (File logFile : logFiles) {
+        currentFile = logFile;
+        logTexts.put(currentFile.getPath(), mapFile(currentFile, charset));
+      }
+
+    } catch (IOException e) {
+      throw new LogReaderException("Error reading: " + currentFile, e);
+    }
+  }
+
+  private CharSequence mapFile(File file, Charset charset) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("File is too big: " + size + " bytes");
+      }
+
+      // The mapping stays valid after the channel is closed
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      if (MappedLogText.isSupportedCharset(charset)) {
+        return new MappedLogText(buffer, charset);
+      }
+
+      return charset.decode(buffer);
+    }
+  }
+
+  @Override
+  public int size() {
+    return logTexts.size();
+  }
+
+  @Override
+  public CharSequence get(String logName) {
+    return logTexts.get(logName);
+  }
+
+  @Override
+  public Set<String> getAvailableLogPaths() {
+    return logTexts.keySet();
+  }
+
+  @Override
+  public void close() {
+    isClosed = true;
+
+    // There is no explicit unmap. The mapped buffers are released once they are no longer referenced
+    logTexts.clear();
+    logTexts = null;
+
+    logFiles = null;
+  }
+}
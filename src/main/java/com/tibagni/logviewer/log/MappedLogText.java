@@ -0,0 +1,103 @@
+package com.tibagni.logviewer.log;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link CharSequence} view over the raw bytes of a (memory mapped) log file.
+ *
+ * Each char index corresponds to a byte offset in the file. ASCII bytes are returned as they are, so line
+ * separators, digits and log levels can be found in place without decoding the file. Any other byte is reported
+ * as {@link #NON_ASCII_CHAR}. The real text is only decoded when {@link #toString()} is called, which is expected
+ * to happen once per line.
+ *
+ * This is only valid for ASCII compatible charsets (see {@link #isSupportedCharset(Charset)}), where ASCII bytes
+ * are never part of a multi-byte character.
+ */
+final class MappedLogText implements CharSequence {
+  static final char NON_ASCII_CHAR = '\uFFFD';
+
+  private final ByteBuffer bytes;
+  private final int offset;
+  private final int length;
+  private final Charset charset;
+
+  MappedLogText(ByteBuffer bytes, Charset charset) {
+    this(bytes, 0, bytes.limit(), charset);
+  }
+
+  private MappedLogText(ByteBuffer bytes, int offset, int length, Charset charset) {
+    this.bytes = bytes;
+    this.offset = offset;
+    this.length = length;
+    this.charset = charset;
+  }
+
+  static boolean isSupportedCharset(Charset charset) {
+    if (StandardCharsets.UTF_8.equals(charset) ||
+        StandardCharsets.US_ASCII.equals(charset) ||
+        StandardCharsets.ISO_8859_1.equals(charset)) {
+      return true;
+    }
+
+    // Any other single byte charset is fine as long as it encodes ASCII the same way ASCII does
+    if (!charset.canEncode()) {
+      return false;
+    }
+
+    CharsetEncoder encoder = charset.newEncoder();
+    if (encoder.maxBytesPerChar() != 1.0f) {
+      return false;
+    }
+
+    try {
+      String probe = "\n\r\t 0123456789:-.VDIWEabcxyzABCXYZ";
+      ByteBuffer encoded = encoder.encode(CharBuffer.wrap(probe));
+      return encoded.equals(StandardCharsets.US_ASCII.encode(probe));
+    } catch (CharacterCodingException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+    }
+
+    byte b = bytes.get(offset + index);
+    return b >= 0 ? (char) b : NON_ASCII_CHAR;
+  }
+
+  @NotNull
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    if (start < 0 || end > length || start > end) {
+      throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+    }
+
+    return new MappedLogText(bytes, offset + start, end - start, charset);
+  }
+
+  @NotNull
+  @Override
+  public String toString() {
+    byte[] content = new byte[length];
+    ByteBuffer view = bytes.duplicate();
+    view.position(offset);
+    view.get(content);
+
+    return new String(content, charset);
+  }
+}
@@ -0,0 +1,183 @@
+package com.tibagni.logviewer.log;
+
+import com.tibagni.logviewer.filter.CandidateLines;
+import com.tibagni.logviewer.filter.Filter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+/**
+ * The rows of a log list that match a search.
+ *
+ * Each table keeps its own result, so searching in one table does not highlight the entries shown by another one
+ */
+public final class SearchResult {
+  public static final SearchResult EMPTY = new SearchResult(Collections.emptyList(), null, new int[0]);
+
+  private static final int ROWS_PER_CHUNK = 16 * 1024;
+
+  // The entries that were searched. 'rows' are only valid for them
+  private final List<LogEntry> entries;
+  @Nullable
+  private final Filter filter;
+  // In ascending order
+  private final int[] rows;
+
+  private SearchResult(List<LogEntry> entries, @Nullable Filter filter, int[] rows) {
+    this.entries = entries;
+    this.filter = filter;
+    this.rows = rows;
+  }
+
+  public static SearchResult search(List<LogEntry> entries, Filter filter, SearchResult previous,
+                                    BooleanSupplier isCancelled, IntConsumer onFirstMatch) {
+    return search(entries, filter, previous, CandidateLines.ALL, isCancelled, onFirstMatch);
+  }
+
+  /**
+   * Searches the entries in chunks in the fork/join pool.
+   *
+   * If 'previous' is the result of a search on the same entries (the same list) and 'filter' is narrower than its
+   * filter (i.e. the user typed more characters of the same text), only the entries it matched are checked again.
+   * Otherwise, only the entries found by 'candidateLines' are checked.
+   *
+   * @param onFirstMatch called with the first matching row as soon as it is known, before the other chunks finish
+   * @throws CancellationException if 'isCancelled' returns true before the search finishes
+   */
+  public static SearchResult search(List<LogEntry> entries, Filter filter, SearchResult previous,
+                                    CandidateLines candidateLines, BooleanSupplier isCancelled,
+                                    IntConsumer onFirstMatch) {
+    // null to check all rows
+    boolean canRefine = previous.entries == entries && previous.filter != null &&
+        filter.isNarrowerThan(previous.filter);
+    int[] candidates = canRefine ? previous.rows : rowsOf(candidateLines.find(filter, entries));
+    int candidateCount = candidates != null ? candidates.length : entries.size();
+
+    List<ForkJoinTask<int[]>> tasks = new ArrayList<>();
+    for (int start = 0; start < candidateCount; start += ROWS_PER_CHUNK) {
+      int chunkStart = start;
+      int chunkEnd = Math.min(candidateCount, start + ROWS_PER_CHUNK);
+      tasks.add(ForkJoinTask.adapt(() ->
+          searchChunk(entries, candidates, filter, chunkStart, chunkEnd, isCancelled)).fork());
+    }
+
+    // Join the chunks in order so the first match is known as soon as the chunks before it are done
+    List<int[]> chunkRows = new ArrayList<>(tasks.size());
+    int totalRows = 0;
+    try {
+      for (ForkJoinTask<int[]> task : tasks) {
+        int[] found = task.join();
+        if (totalRows == 0 && found.length > 0) {
+          onFirstMatch.accept(found[0]);
+        }
+        chunkRows.add(found);
+        totalRows += found.length;
+      }
+    } finally {
+      tasks.forEach(task -> task.cancel(false));
+    }
+
+    int[] rows = new int[totalRows];
+    int position = 0;
+    for (int[] found : chunkRows) {
+      System.arraycopy(found, 0, rows, position, found.length);
+      position += found.length;
+    }
+    return new SearchResult(entries, filter, rows);
+  }
+
+  @Nullable
+  private static int[] rowsOf(@Nullable long[] lines) {
+    if (lines == null) {
+      return null;
+    }
+
+    int[] rows = new int[Arrays.stream(lines).mapToInt(Long::bitCount).sum()];
+    int count = 0;
+    for (int word = 0; word < lines.length; word++) {
+      for (long bits = lines[word]; bits != 0; bits &= bits - 1) {
+        rows[count++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Checks the candidates in [start, end). If there are no candidates, the rows in [start, end) are checked
+   */
+  private static int[] searchChunk(List<LogEntry> entries, @Nullable int[] candidates, Filter filter, int start,
+                                   int end, BooleanSupplier isCancelled) {
+    if (isCancelled.getAsBoolean()) {
+      throw new CancellationException("Search was cancelled");
+    }
+
+    int[] found = new int[16];
+    int count = 0;
+    for (int i = start; i < end; i++) {
+      int row = candidates != null ? candidates[i] : i;
+      if (filter.appliesTo(entries.get(row))) {
+        if (count == found.length) {
+          found = Arrays.copyOf(found, count * 2);
+        }
+        found[count++] = row;
+      }
+    }
+
+    return Arrays.copyOf(found, count);
+  }
+
+  /**
+   * @return the entries that were searched
+   */
+  public List<LogEntry> getEntries() {
+    return entries;
+  }
+
+  @Nullable
+  public Filter getFilter() {
+    return filter;
+  }
+
+  public int size() {
+    return rows.length;
+  }
+
+  public boolean isEmpty() {
+    return rows.length == 0;
+  }
+
+  /**
+   * @return the row of the match at 'position' in this result
+   */
+  public int getRow(int position) {
+    return rows[position];
+  }
+
+  public boolean isMatch(int row) {
+    return Arrays.binarySearch(rows, row) >= 0;
+  }
+
+  /**
+   * @return the position in this result of the first match after 'row', or -1 if there is none
+   */
+  public int findFirstAfter(int row) {
+    int position = Arrays.binarySearch(rows, row);
+    position = position >= 0 ? position + 1 : -position - 1;
+    return position < rows.length ? position : -1;
+  }
+
+  /**
+   * @return the position in this result of the last match before 'row', or -1 if there is none
+   */
+  public int findLastBefore(int row) {
+    int position = Arrays.binarySearch(rows, row);
+    return (position >= 0 ? position : -position - 1) - 1;
+  }
+}
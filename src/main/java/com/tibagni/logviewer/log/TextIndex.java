@@ -0,0 +1,286 @@
+package com.tibagni.logviewer.log;
+
+import com.tibagni.logviewer.filter.CandidateLines;
+import com.tibagni.logviewer.filter.Filter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Trigram index of the text of a {@link LogStore}, used to find which lines may match a filter or a search without
+ * reading their text.
+ *
+ * Lines are indexed in blocks of {@link #LINES_PER_BLOCK}. For each trigram, the index keeps the blocks where it was
+ * found, delta-encoded as varints. Trigrams are hashed into a fixed number of buckets to keep the memory bounded
+ * (collisions only add candidates). A line can only contain a text if its block has all trigrams of the text.
+ *
+ * Only ASCII trigrams are indexed, with the letters folded to lower case (plus the few non-ASCII chars that fold
+ * into ASCII letters), so the same index works for case-sensitive and case-insensitive texts.
+ *
+ * The index is built in batches by {@link #build(BooleanSupplier)} and can be used while it is built. Blocks that were
+ * not indexed yet are always candidates.
+ */
+public final class TextIndex implements CandidateLines {
+  public static final int LINES_PER_BLOCK = 64;
+
+  private static final int BUCKET_BITS = 18;
+  private static final int BLOCKS_PER_BATCH = 1024;
+  private static final int ARRAY_HEADER_BYTES = 16;
+
+  private final LogStore store;
+  private final int blockCount;
+
+  // Guarded by 'this'
+  private final byte[][] postings = new byte[1 << BUCKET_BITS][];
+  private final int[] postingsLength = new int[1 << BUCKET_BITS];
+  // Last block added to each bucket, plus one (0 if none)
+  private final int[] lastBlock = new int[1 << BUCKET_BITS];
+  private int indexedBlocks;
+  private long postingsBytes;
+
+  public TextIndex(LogStore store) {
+    this.store = store;
+    this.blockCount = (store.size() + LINES_PER_BLOCK - 1) / LINES_PER_BLOCK;
+  }
+
+  /**
+   * Indexes all lines of the store. This can take a while for big logs, so it should run in the background
+   *
+   * @throws CancellationException if 'isCancelled' returns true before all lines are indexed
+   */
+  public void build(BooleanSupplier isCancelled) {
+    // Reused by every block to add each bucket only once per block
+    int[] bucketsSeen = new int[1 << BUCKET_BITS];
+    int[] blockBuckets = new int[1024];
+    int[][] batchBuckets = new int[BLOCKS_PER_BATCH][];
+
+    for (int batchStart = 0; batchStart < blockCount; batchStart += BLOCKS_PER_BATCH) {
+      if (isCancelled.getAsBoolean()) {
+        throw new CancellationException("Text indexing was cancelled");
+      }
+
+      // Read the text outside the lock, so the index can still be used meanwhile
+      int batchEnd = Math.min(blockCount, batchStart + BLOCKS_PER_BATCH);
+      for (int block = batchStart; block < batchEnd; block++) {
+        int count = 0;
+        int lineEnd = Math.min(store.size(), (block + 1) * LINES_PER_BLOCK);
+        for (int line = block * LINES_PER_BLOCK; line < lineEnd; line++) {
+          String text = store.getText(line);
+          int trigram = 0;
+          int run = 0;
+          for (int i = 0; i < text.length(); i++) {
+            int c = fold(text.charAt(i));
+            if (c < 0) {
+              run = 0;
+              continue;
+            }
+
+            trigram = ((trigram << 7) | c) & 0x1FFFFF;
+            if (++run >= 3) {
+              int bucket = bucketOf(trigram);
+              if (bucketsSeen[bucket] != block + 1) {
+                bucketsSeen[bucket] = block + 1;
+                if (count == blockBuckets.length) {
+                  blockBuckets = Arrays.copyOf(blockBuckets, count * 2);
+                }
+                blockBuckets[count++] = bucket;
+              }
+            }
+          }
+        }
+        batchBuckets[block - batchStart] = Arrays.copyOf(blockBuckets, count);
+      }
+
+      synchronized (this) {
+        for (int block = batchStart; block < batchEnd; block++) {
+          for (int bucket : batchBuckets[block - batchStart]) {
+            addPosting(bucket, block);
+          }
+        }
+        indexedBlocks = batchEnd;
+      }
+    }
+  }
+
+  private void addPosting(int bucket, int block) {
+    int delta = block + 1 - lastBlock[bucket];
+    lastBlock[bucket] = block + 1;
+
+    byte[] bytes = postings[bucket];
+    int length = postingsLength[bucket];
+    if (bytes == null) {
+      bytes = new byte[8];
+      postingsBytes += ARRAY_HEADER_BYTES + bytes.length;
+      postings[bucket] = bytes;
+    } else if (length + 5 > bytes.length) {
+      bytes = Arrays.copyOf(bytes, Math.max(length + 5, bytes.length * 3 / 2));
+      postingsBytes += bytes.length - postings[bucket].length;
+      postings[bucket] = bytes;
+    }
+
+    while ((delta & ~0x7F) != 0) {
+      bytes[length++] = (byte) ((delta & 0x7F) | 0x80);
+      delta >>>= 7;
+    }
+    bytes[length++] = (byte) delta;
+    postingsLength[bucket] = length;
+  }
+
+  @Override
+  @Nullable
+  public long[] find(Filter filter, List<LogEntry> input) {
+    long[] blocks = findCandidateBlocks(filter);
+    if (blocks == null) {
+      return null;
+    }
+
+    long[] lines = new long[(input.size() + 63) >>> 6];
+    if (input instanceof LogStore.Range && ((LogStore.Range) input).getStore() == store) {
+      int fromIndex = ((LogStore.Range) input).getFromIndex();
+      for (int line = 0; line < input.size(); line++) {
+        int block = (fromIndex + line) / LINES_PER_BLOCK;
+        if ((blocks[block >>> 6] & (1L << block)) != 0) {
+          lines[line >>> 6] |= 1L << line;
+        }
+      }
+    } else {
+      for (int line = 0; line < input.size(); line++) {
+        LogEntry entry = input.get(line);
+        int block = entry.getIndex() / LINES_PER_BLOCK;
+        // Entries from other logs were not indexed
+        if (!entry.isFrom(store) || (blocks[block >>> 6] & (1L << block)) != 0) {
+          lines[line >>> 6] |= 1L << line;
+        }
+      }
+    }
+
+    return lines;
+  }
+
+  /**
+   * @return a bitset (one bit per block) with the bits of the blocks that may have lines matching 'filter' set, or
+   * null if the index does not help to find them
+   */
+  @Nullable
+  long[] findCandidateBlocks(Filter filter) {
+    int[] buckets = filter.getRequiredTexts().stream()
+        .flatMapToInt(text -> Arrays.stream(bucketsOf(text)))
+        .distinct()
+        .toArray();
+    if (buckets.length == 0) {
+      return null;
+    }
+
+    long[] candidates = null;
+    synchronized (this) {
+      if (indexedBlocks == 0) {
+        return null;
+      }
+
+      // Start from the smallest posting lists, as they are the most likely to reject blocks
+      Integer[] sortedBuckets = Arrays.stream(buckets).boxed().toArray(Integer[]::new);
+      Arrays.sort(sortedBuckets, (a, b) -> Integer.compare(postingsLength[a], postingsLength[b]));
+      for (int bucket : sortedBuckets) {
+        long[] blocks = decodePostings(bucket);
+        if (candidates == null) {
+          candidates = blocks;
+        } else {
+          for (int i = 0; i < candidates.length; i++) {
+            candidates[i] &= blocks[i];
+          }
+        }
+      }
+
+      // Blocks that were not indexed yet may have anything
+      for (int block = indexedBlocks; block < blockCount; block++) {
+        candidates[block >>> 6] |= 1L << block;
+      }
+    }
+
+    return candidates;
+  }
+
+  private long[] decodePostings(int bucket) {
+    long[] blocks = new long[(blockCount + 63) >>> 6];
+    byte[] bytes = postings[bucket];
+    int length = postingsLength[bucket];
+    int block = 0;
+    for (int position = 0; position < length; ) {
+      int delta = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = bytes[position++];
+        delta |= (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+
+      block += delta;
+      blocks[(block - 1) >>> 6] |= 1L << (block - 1);
+    }
+
+    return blocks;
+  }
+
+  /**
+   * @return the buckets of all trigrams of 'text'. Only ASCII texts are used, as other chars may match more than one
+   * char when ignoring case
+   */
+  private static int[] bucketsOf(String text) {
+    if (text.length() < 3 || !text.chars().allMatch(c -> c < 0x80)) {
+      return new int[0];
+    }
+
+    int[] buckets = new int[text.length() - 2];
+    int trigram = 0;
+    for (int i = 0; i < text.length(); i++) {
+      trigram = ((trigram << 7) | fold(text.charAt(i))) & 0x1FFFFF;
+      if (i >= 2) {
+        buckets[i - 2] = bucketOf(trigram);
+      }
+    }
+    return buckets;
+  }
+
+  private static int bucketOf(int trigram) {
+    return (trigram * 0x9E3779B1) >>> (32 - BUCKET_BITS);
+  }
+
+  /**
+   * @return the folded ASCII value of the char or -1 if it is not indexed. Besides ASCII letters, the non-ASCII chars
+   * that are equal to ASCII letters when ignoring case are folded too
+   */
+  private static int fold(char c) {
+    if (c < 0x80) {
+      return (c >= 'A' && c <= 'Z') ? c + ('a' - 'A') : c;
+    }
+
+    switch (c) {
+      case '\u0130': // Latin capital letter I with dot above
+      case '\u0131': // Latin small letter dotless i
+        return 'i';
+      case '\u017F': // Latin small letter long s
+        return 's';
+      case '\u212A': // Kelvin sign
+        return 'k';
+      default:
+        return -1;
+    }
+  }
+
+  /**
+   * @return an estimate of the memory used by the index, in bytes
+   */
+  public synchronized long getMemoryUsage() {
+    long arrays = (long) postings.length * (Integer.BYTES + 2L * Integer.BYTES);
+    return arrays + postingsBytes;
+  }
+
+  // Test helpers
+  synchronized int getIndexedBlocksForTesting() {
+    return indexedBlocks;
+  }
+}
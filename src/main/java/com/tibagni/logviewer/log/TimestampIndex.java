@@ -0,0 +1,132 @@
+package com.tibagni.logviewer.log;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds log entries by timestamp in a list of entries.
+ *
+ * Logs are usually sorted by timestamp, so lookups are binary searches. The index also keeps where each second starts
+ * in the list, so lookups first find the second (in a much smaller array) and then only search the entries of that
+ * second. Lists that are not sorted (i.e. a single log file that was not merged with others) are searched linearly.
+ */
+public final class TimestampIndex {
+  private final List<LogEntry> entries;
+  private final boolean isSorted;
+  // Each second found in the entries and the position of its first entry. Only used if the entries are sorted
+  private final long[] seconds;
+  private final int[] firstPositions;
+
+  private TimestampIndex(List<LogEntry> entries, boolean isSorted, long[] seconds, int[] firstPositions) {
+    this.entries = entries;
+    this.isSorted = isSorted;
+    this.seconds = seconds;
+    this.firstPositions = firstPositions;
+  }
+
+  /**
+   * Indexes the given entries. The list must not change while the index is used
+   */
+  public static TimestampIndex create(List<LogEntry> entries) {
+    long[] seconds = new long[16];
+    int[] firstPositions = new int[16];
+    int count = 0;
+    long previousTimestamp = Long.MIN_VALUE;
+    for (int i = 0; i < entries.size(); i++) {
+      long timestamp = entries.get(i).getPackedTimestamp();
+      if (timestamp < previousTimestamp) {
+        return new TimestampIndex(entries, false, null, null);
+      }
+      previousTimestamp = timestamp;
+
+      long second = LogTimestamp.truncateToSecond(timestamp);
+      if (count == 0 || seconds[count - 1] != second) {
+        if (count == seconds.length) {
+          seconds = Arrays.copyOf(seconds, count * 2);
+          firstPositions = Arrays.copyOf(firstPositions, count * 2);
+        }
+        seconds[count] = second;
+        firstPositions[count] = i;
+        count++;
+      }
+    }
+
+    return new TimestampIndex(entries, true, Arrays.copyOf(seconds, count), Arrays.copyOf(firstPositions, count));
+  }
+
+  /**
+   * @return the position of the first entry with the given timestamp. If there is none, the position of the entry
+   * before the first one after the timestamp (or the first entry if all are after it), or the last entry if none is
+   * after it. -1 if there are no entries
+   */
+  public int findClosestIndex(long packedTimestamp) {
+    if (entries.isEmpty()) {
+      return -1;
+    }
+
+    if (!isSorted) {
+      return findClosestIndexLinearly(packedTimestamp);
+    }
+
+    // Only the entries of the same second need to be searched
+    int second = Arrays.binarySearch(seconds, LogTimestamp.truncateToSecond(packedTimestamp));
+    if (second < 0) {
+      int next = -second - 1;
+      return closestIndex(next < firstPositions.length ? firstPositions[next] : entries.size(), false);
+    }
+
+    int from = firstPositions[second];
+    int to = second + 1 < firstPositions.length ? firstPositions[second + 1] : entries.size();
+    int firstNotBefore = lowerBound(from, to, packedTimestamp);
+    boolean isExact = firstNotBefore < to && entries.get(firstNotBefore).getPackedTimestamp() == packedTimestamp;
+    return closestIndex(firstNotBefore, isExact);
+  }
+
+  private int closestIndex(int firstNotBefore, boolean isExact) {
+    if (isExact) return firstNotBefore;
+    if (firstNotBefore >= entries.size()) return entries.size() - 1;
+
+    // We want the log line before
+    return Math.max(firstNotBefore - 1, 0);
+  }
+
+  /**
+   * @return the first position in [from, to) with a timestamp that is not before the given one, or 'to' if none
+   */
+  private int lowerBound(int from, int to, long packedTimestamp) {
+    int low = from;
+    int high = to;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (entries.get(middle).getPackedTimestamp() < packedTimestamp) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+
+    return low;
+  }
+
+  private int findClosestIndexLinearly(long packedTimestamp) {
+    int index = -1;
+    for (LogEntry entry : entries) {
+      index++;
+      int comparison = Long.compare(packedTimestamp, entry.getPackedTimestamp());
+      if (comparison == 0) {
+        break;
+      } else if (comparison < 0) {
+        // We want the log line before
+        if (index > 0) index--;
+        break;
+      }
+    }
+
+    return index;
+  }
+
+  // Test helpers
+  boolean isSortedForTesting() {
+    return isSorted;
+  }
+}
@@ -0,0 +1,295 @@
+package com.tibagni.logviewer.log.parser;
+
+import com.tibagni.logviewer.log.LogLevel;
+import com.tibagni.logviewer.log.LogStore;
+import com.tibagni.logviewer.log.LogTimestamp;
+
+/**
+ * Hand written scanner for the logcat line prefix ("MM-DD HH:MM:SS.mmm").
+ *
+ * A single call to {@link #scan(CharSequence)} tells if the text starts a new log line, finds its log level and
+ * decodes its timestamp, without using regular expressions and without allocating anything. It produces the same
+ * results as the patterns previously used by {@link LogParser}:
+ *
+ * <ul>
+ *   <li>Log line: {@code ^\d{2}-\d{2} \d{2}:\d{2}:\d{2}.*}</li>
+ *   <li>Log level: {@code ^\d{2}-\d{2}\s\d{2}:\d{2}:\d{2}.*?([VDIWE])}</li>
+ *   <li>Timestamp: {@code ^(\d{1,2})-(\d{1,2})\s(\d{1,2}):(\d{1,2}):(\d{1,2}).(\d{3,})}</li>
+ * </ul>
+ *
+ * The only difference is that a line containing a unicode line separator (U+0085, U+2028 or U+2029) after the
+ * prefix is still considered a log line.
+ *
+ * The header after the timestamp is scanned too, to find the pid, tid and tag of the line. Both the "threadtime"
+ * format ({@code "MM-DD HH:MM:SS.mmm  PID  TID L TAG     : message"}) and the Android Studio format
+ * ({@code "MM-DD HH:MM:SS.mmm PID-TID/package L/TAG: message"}) are supported.
+ *
+ * Instances are not thread safe. Each parsing task should use its own scanner.
+ */
+final class LogLineScanner {
+  private static final int PREFIX_LENGTH = 14; // "MM-DD HH:MM:SS"
+
+  private boolean isLogLine;
+  private LogLevel logLevel;
+
+  private boolean hasTimestamp;
+  private int month;
+  private int day;
+  private int hour;
+  private int minutes;
+  private int seconds;
+  private int hundredth;
+
+  // Header after the timestamp
+  private CharSequence text;
+  private int headerStart;
+  private int pid;
+  private int tid;
+  private int tagStart;
+  private int tagEnd;
+
+  /**
+   * Scans the given text and keeps the results until the next call
+   *
+   * @return true if the text starts a new log line
+   */
+  boolean scan(CharSequence text) {
+    int length = text.length();
+    boolean hasPrefix = length >= PREFIX_LENGTH &&
+        isDigit(text.charAt(0)) && isDigit(text.charAt(1)) && text.charAt(2) == '-' &&
+        isDigit(text.charAt(3)) && isDigit(text.charAt(4)) && isWhitespace(text.charAt(5)) &&
+        isDigit(text.charAt(6)) && isDigit(text.charAt(7)) && text.charAt(8) == ':' &&
+        isDigit(text.charAt(9)) && isDigit(text.charAt(10)) && text.charAt(11) == ':' &&
+        isDigit(text.charAt(12)) && isDigit(text.charAt(13));
+
+    isLogLine = hasPrefix && text.charAt(5) == ' ';
+    logLevel = hasPrefix ? findLogLevel(text, PREFIX_LENGTH) : LogLevel.DEBUG;
+    hasTimestamp = scanTimestamp(text);
+
+    this.text = text;
+    if (!isLogLine || !hasTimestamp || !scanHeader(text, headerStart)) {
+      pid = -1;
+      tid = -1;
+      tagStart = -1;
+      tagEnd = -1;
+    }
+
+    return isLogLine;
+  }
+
+  boolean isLogLine() {
+    return isLogLine;
+  }
+
+  LogLevel getLogLevel() {
+    return logLevel;
+  }
+
+  boolean hasTimestamp() {
+    return hasTimestamp;
+  }
+
+  /**
+   * @return The timestamp found by the last scan or null if there is none
+   */
+  LogTimestamp createTimestamp() {
+    return hasTimestamp ? new LogTimestamp(month, day, hour, minutes, seconds, hundredth) : null;
+  }
+
+  /**
+   * @return The packed timestamp found by the last scan or {@link LogStore#NO_TIMESTAMP} if there is none
+   */
+  long getPackedTimestamp() {
+    return hasTimestamp ? LogTimestamp.pack(month, day, hour, minutes, seconds, hundredth) : LogStore.NO_TIMESTAMP;
+  }
+
+  /**
+   * @return The pid found by the last scan or -1 if there is none
+   */
+  int getPid() {
+    return pid;
+  }
+
+  /**
+   * @return The tid found by the last scan or -1 if there is none
+   */
+  int getTid() {
+    return tid;
+  }
+
+  /**
+   * @return The tag found by the last scan or null if there is none
+   */
+  String getTag() {
+    return tagStart >= 0 ? text.subSequence(tagStart, tagEnd).toString() : null;
+  }
+
+  private static LogLevel findLogLevel(CharSequence text, int from) {
+    // Same as a lazy '.*?', the level can not be after the end of the first line
+    for (int i = from; i < text.length(); i++) {
+      char c = text.charAt(i);
+      switch (c) {
+        case 'V':
+          return LogLevel.VERBOSE;
+        case 'D':
+          return LogLevel.DEBUG;
+        case 'I':
+          return LogLevel.INFO;
+        case 'W':
+          return LogLevel.WARNING;
+        case 'E':
+          return LogLevel.ERROR;
+      }
+
+      if (isLineTerminator(c)) break;
+    }
+
+    return LogLevel.DEBUG;
+  }
+
+  private boolean scanTimestamp(CharSequence text) {
+    int length = text.length();
+
+    int i = 0;
+    int end = digitsEnd(text, i, 2);
+    if (end == i || end >= length || text.charAt(end) != '-') return false;
+    month = decode(text, i, end);
+
+    i = end + 1;
+    end = digitsEnd(text, i, 2);
+    if (end == i || end >= length || !isWhitespace(text.charAt(end))) return false;
+    day = decode(text, i, end);
+
+    i = end + 1;
+    end = digitsEnd(text, i, 2);
+    if (end == i || end >= length || text.charAt(end) != ':') return false;
+    hour = decode(text, i, end);
+
+    i = end + 1;
+    end = digitsEnd(text, i, 2);
+    if (end == i || end >= length || text.charAt(end) != ':') return false;
+    minutes = decode(text, i, end);
+
+    // The seconds are followed by any char (usually '.') and at least 3 digits. When the seconds have 2 digits
+    // but that does not work, the regex would backtrack and try again with only 1 digit
+    i = end + 1;
+    end = digitsEnd(text, i, 2);
+    for (int secondsEnd = end; secondsEnd > i; secondsEnd--) {
+      int fractionStart = secondsEnd + 1;
+      if (fractionStart >= length || isLineTerminator(text.charAt(secondsEnd))) continue;
+
+      int fractionEnd = digitsEnd(text, fractionStart, Integer.MAX_VALUE);
+      if (fractionEnd - fractionStart < 3) continue;
+
+      long fraction = 0;
+      for (int j = fractionStart; j < fractionEnd; j++) {
+        fraction = fraction * 10 + (text.charAt(j) - '0');
+        if (fraction > Integer.MAX_VALUE) {
+          // Too big to be a valid timestamp. Don't add a timestamp in this case
+          return false;
+        }
+      }
+
+      seconds = decode(text, i, secondsEnd);
+      hundredth = (int) fraction;
+      headerStart = fractionEnd;
+      return true;
+    }
+
+    return false;
+  }
+
+  private boolean scanHeader(CharSequence text, int from) {
+    int length = text.length();
+
+    int i = skipSpaces(text, from);
+    int end = digitsEnd(text, i, 9);
+    if (i == from || end == i || end >= length) return false;
+    pid = decode(text, i, end);
+
+    boolean isStudioFormat = text.charAt(end) == '-';
+    i = isStudioFormat ? end + 1 : skipSpaces(text, end);
+    end = digitsEnd(text, i, 9);
+    if (i == end || end >= length) return false;
+    tid = decode(text, i, end);
+
+    if (isStudioFormat) {
+      // The package name comes before the level
+      if (text.charAt(end) != '/') return false;
+      end = findSpace(text, end);
+    }
+
+    i = skipSpaces(text, end);
+    if (i == end || i + 1 >= length || !isLevel(text.charAt(i))) return false;
+    char levelSeparator = text.charAt(i + 1);
+    if (isStudioFormat ? levelSeparator != '/' : levelSeparator != ' ') return false;
+
+    tagStart = i + 2;
+    tagEnd = tagStart;
+    while (tagEnd < length && text.charAt(tagEnd) != ':' && !isLineTerminator(text.charAt(tagEnd))) {
+      tagEnd++;
+    }
+    if (tagEnd >= length || text.charAt(tagEnd) != ':') return false;
+
+    // Tags are padded with spaces in the threadtime format
+    while (tagEnd > tagStart && text.charAt(tagEnd - 1) == ' ') {
+      tagEnd--;
+    }
+    return true;
+  }
+
+  private static int skipSpaces(CharSequence text, int from) {
+    int i = from;
+    while (i < text.length() && text.charAt(i) == ' ') {
+      i++;
+    }
+
+    return i;
+  }
+
+  private static int findSpace(CharSequence text, int from) {
+    int i = from;
+    while (i < text.length() && text.charAt(i) != ' ' && !isLineTerminator(text.charAt(i))) {
+      i++;
+    }
+
+    return i;
+  }
+
+  private static boolean isLevel(char c) {
+    return c == 'V' || c == 'D' || c == 'I' || c == 'W' || c == 'E' || c == 'F' || c == 'A';
+  }
+
+  private static int digitsEnd(CharSequence text, int from, int maxDigits) {
+    int end = from;
+    int limit = (int) Math.min((long) from + maxDigits, text.length());
+    while (end < limit && isDigit(text.charAt(end))) {
+      end++;
+    }
+
+    return end;
+  }
+
+  private static int decode(CharSequence text, int from, int to) {
+    int value = 0;
+    for (int i = from; i < to; i++) {
+      value = value * 10 + (text.charAt(i) - '0');
+    }
+
+    return value;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  // Same as '\s' in a regex
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+  // Chars not matched by '.' in a regex
+  private static boolean isLineTerminator(char c) {
+    return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+}
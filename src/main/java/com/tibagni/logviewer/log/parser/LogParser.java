@@ -9,8 +9,8 @@ import org.jetbrains.annotations.NotNull;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class LogParser {
   // This is the maximum size of a payload log from Android
@@ -21,65 +21,132 @@ public class LogParser {
   // of size restriction, set our maximum to twice the Android's payload size.
   public static final int MAX_LOG_LINE_ALLOWED = LOGGER_ENTRY_MAX_PAYLOAD * 2;
 
-  private static final Pattern LOG_LEVEL_PATTERN =
-      Pattern.compile("^\\d{2}-\\d{2}\\s\\d{2}:\\d{2}:\\d{2}.*?([VDIWE])");
-  private static final String LOG_START_PATTERN = "^\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}.*";
-  private static final Pattern LOG_TIMESTAMP_PATTERN =
-      Pattern.compile("^(\\d{1,2})-(\\d{1,2})\\s(\\d{1,2}):(\\d{1,2}):(\\d{1,2}).(\\d{3,})");
+  // Files smaller than twice this size are parsed by a single task
+  private static final int DEFAULT_MIN_CHUNK_LENGTH = 8 * 1024 * 1024;
+  private static final int CANCELLATION_CHECK_INTERVAL = 16 * 1024;
+  private static final String BUGREPORT_MARKER = "Bugreport format version:";
 
   private LogReader logReader;
-  private List<LogEntry> logEntries;
   private ProgressReporter progressReporter;
+  private final int parallelism;
   private final List<String> logsSkipped;
   private final Map<String, String> potentialBugReports;
+  private int minChunkLength = DEFAULT_MIN_CHUNK_LENGTH;
 
   public LogParser(LogReader logReader, ProgressReporter progressReporter) {
+    this(logReader, progressReporter, Runtime.getRuntime().availableProcessors());
+  }
+
+  public LogParser(LogReader logReader, ProgressReporter progressReporter, int parallelism) {
     this.logReader = logReader;
     this.progressReporter = progressReporter;
-    this.logEntries = new ArrayList<>();
+    this.parallelism = Math.max(1, parallelism);
     this.logsSkipped = new ArrayList<>();
-    this.potentialBugReports = new HashMap<>();
+    // Written by the parsing tasks, possibly at the same time
+    this.potentialBugReports = new ConcurrentHashMap<>();
   }
 
-  public LogEntry[] parseLogs(Charset charset) throws LogReaderException {
+  public LogStore parseLogs(Charset charset) throws LogReaderException {
     ensureState();
 
     logReader.readLogs(charset);
     Set<String> availableLogs = logReader.getAvailableLogPaths();
 
-    int logsRead = 0;
+    // Big files are split in chunks that start at a log line, so each chunk can be parsed on its own.
+    // All chunks share the same pool, and the results are collected in the same order of 'availableLogs'
+    // (and chunk order inside each file), so the final result does not depend on which task finishes first
+    Map<String, CharSequence> logTexts = new LinkedHashMap<>();
+    Map<String, int[]> logChunks = new HashMap<>();
+    Map<String, List<Future<LogStore.Chunk>>> parsingTasks = new LinkedHashMap<>();
+    int totalChunks = 0;
     for (String log : availableLogs) {
       try {
-        int progress = logsRead++ * 90 / availableLogs.size();
-        progressReporter.onProgress(progress, "Reading " + log + "...");
-        String logText = logReader.get(log);
-        List<LogEntry> logEntriesFromFile = getLogEntries(logText, log);
-
-        if (!logEntriesFromFile.isEmpty()) {
-          logEntries.addAll(logEntriesFromFile);
-        } else {
-          Logger.warning("Skipping " + log + " because it was empty");
+        CharSequence logText = logReader.get(log);
+        int[] chunkBounds = splitInChunks(logText);
+        logTexts.put(log, logText);
+        logChunks.put(log, chunkBounds);
+        totalChunks += chunkBounds.length - 1;
+      } catch (RuntimeException e) {
+        CompletableFuture<LogStore.Chunk> failedTask = new CompletableFuture<>();
+        failedTask.completeExceptionally(e);
+        parsingTasks.put(log, Collections.singletonList(failedTask));
+      }
+    }
+
+    ExecutorService executor = createParsingExecutor(Math.min(parallelism, totalChunks));
+    AtomicInteger logsRead = new AtomicInteger();
+    List<LogStore.Chunk> parsedChunks = new ArrayList<>();
+    int totalEntries = 0;
+    try {
+      for (String log : availableLogs) {
+        CharSequence logText = logTexts.get(log);
+        if (logText == null) continue;
+
+        int[] chunkBounds = logChunks.get(log);
+        List<Future<LogStore.Chunk>> chunkTasks = new ArrayList<>();
+        for (int i = 0; i < chunkBounds.length - 1; i++) {
+          boolean isFirstChunk = i == 0;
+          int chunkStart = chunkBounds[i];
+          int chunkEnd = chunkBounds[i + 1];
+          chunkTasks.add(executor.submit(() -> {
+            checkCancelled();
+            if (isFirstChunk) {
+              int progress = logsRead.getAndIncrement() * 90 / availableLogs.size();
+              progressReporter.onProgress(progress, "Reading " + log + "...");
+            }
+            return parseChunk(logText, chunkStart, chunkEnd, log);
+          }));
+        }
+        parsingTasks.put(log, chunkTasks);
+      }
+
+      for (String log : availableLogs) {
+        try {
+          List<LogStore.Chunk> chunksFromFile = new ArrayList<>();
+          int entriesFromFile = 0;
+          for (Future<LogStore.Chunk> chunkTask : parsingTasks.get(log)) {
+            LogStore.Chunk chunk = chunkTask.get();
+            chunksFromFile.add(chunk);
+            entriesFromFile += chunk.size();
+          }
+
+          if (entriesFromFile > 0) {
+            parsedChunks.addAll(chunksFromFile);
+            totalEntries += entriesFromFile;
+          } else {
+            Logger.warning("Skipping " + log + " because it was empty");
+            logsSkipped.add(log);
+          }
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof CancellationException) {
+            throw (CancellationException) e.getCause();
+          }
+          Logger.warning("Skipping " + log + " because it failed to parse", e.getCause());
           logsSkipped.add(log);
         }
-      } catch(Exception e) {
-        Logger.warning("Skipping " + log + " because it failed to parse", e);
-        logsSkipped.add(log);
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new LogReaderException("Interrupted while parsing logs", e);
+    } finally {
+      executor.shutdownNow();
     }
 
+    checkCancelled();
+    LogStore.Builder storeBuilder = new LogStore.Builder(totalEntries);
     if (availableLogs.size() > 1) {
       progressReporter.onProgress(91, "Sorting...");
-      Collections.sort(logEntries);
+      mergeSortedChunks(parsedChunks, storeBuilder);
+    } else {
+      parsedChunks.forEach(storeBuilder::addAll);
     }
 
+    // The index of each entry is its position in the store
     progressReporter.onProgress(95, "Setting index...");
-    int index = 0;
-    for (LogEntry entry : logEntries) {
-      entry.setIndex(index++);
-    }
+    LogStore logStore = storeBuilder.build();
 
     progressReporter.onProgress(100, "Completed");
-    return logEntries.toArray(new LogEntry[0]);
+    return logStore;
   }
 
   @NotNull
@@ -105,42 +172,248 @@ public class LogParser {
     return availableStreams;
   }
 
+  // Test helpers
+  void setMinChunkLengthForTesting(int minChunkLength) {
+    this.minChunkLength = minChunkLength;
+  }
+
+  private static ExecutorService createParsingExecutor(int threads) {
+    AtomicInteger threadCount = new AtomicInteger();
+    return Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+      Thread thread = new Thread(runnable, "LogParser-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
   private void ensureState() {
-    if (logReader == null || logEntries == null || progressReporter == null) {
+    if (logReader == null || progressReporter == null) {
       throw new IllegalStateException("LogParser was already released. Cannot use it...");
     }
   }
 
   public void release() {
-    logEntries.clear();
-    logEntries = null;
-
     progressReporter = null;
 
     logReader.close();
     logReader = null;
   }
 
-  private List<LogEntry> getLogEntries(String logText, String logPath) {
-    String[] lines = logText.split(StringUtils.LINE_SEPARATOR);
-    List<LogEntry> logLines = new ArrayList<>(lines.length);
+  /**
+   * Splits the log text in chunks that can be parsed independently.
+   * Each chunk (but the first one) starts at a log line, so continuation lines always stay in the same chunk as
+   * the log line they belong to.
+   *
+   * @return The chunk boundaries. Chunk 'i' goes from bounds[i] (inclusive) to bounds[i + 1] (exclusive)
+   */
+  private int[] splitInChunks(CharSequence logText) {
+    // Just like String.split, trailing empty lines are not considered
+    int textEnd = logText.length();
+    while (textEnd > 0 && isLineBreak(logText.charAt(textEnd - 1))) {
+      textEnd--;
+    }
 
-    StringBuilder currentLogLine = null;
-    for (String line : lines) {
-      // Sometimes a line can contain a lot of NULL chars at the end, making it fail when trying to open the log
-      // (as these NULL chars will make the line length too long). So check here if the line has NULL chars
-      // and remove them to avoid failing to open valid log files
-      if (!line.isEmpty() && line.charAt(line.length() - 1) == '\u0000') {
-        line = line.replaceAll("\\u0000", "");
+    int chunks = Math.min(parallelism, textEnd / minChunkLength);
+    List<Integer> bounds = new ArrayList<>();
+    bounds.add(0);
+    for (int i = 1; i < chunks; i++) {
+      int from = Math.max((int) ((long) textEnd * i / chunks), bounds.get(bounds.size() - 1));
+      int chunkStart = findNextLogLineStart(logText, from, textEnd);
+      if (chunkStart >= textEnd) {
+        // No log lines left to start a new chunk
+        break;
       }
+      bounds.add(chunkStart);
+    }
+    bounds.add(textEnd);
+
+    int[] result = new int[bounds.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = bounds.get(i);
+    }
+    return result;
+  }
 
-      if (isLogLine(line)) {
-        if (currentLogLine != null) {
-          logLines.add(createLogEntry(currentLogLine.toString(), logPath));
+  /**
+   * Merges the entries of all chunks in timestamp order.
+   * The entries of each chunk are usually already sorted, so they are only sorted when they are not. After that, all
+   * chunks are merged using a heap. Entries with the same timestamp are kept in the same order of 'chunks', so
+   * the result is exactly the same as a stable sort of all entries
+   */
+  private static void mergeSortedChunks(List<LogStore.Chunk> chunks, LogStore.Builder result) {
+    int chunkCount = chunks.size();
+    // The order in which the entries of each chunk are merged. null if the chunk is already sorted
+    int[][] orders = new int[chunkCount][];
+    for (int i = 0; i < chunkCount; i++) {
+      if (!isSorted(chunks.get(i))) {
+        orders[i] = sortByTimestamp(chunks.get(i));
+      }
+    }
+
+    // Binary min-heap of chunk indices, ordered by the next entry of each chunk
+    int[] heap = new int[chunkCount];
+    int[] positions = new int[chunkCount];
+    long[] nextTimestamps = new long[chunkCount];
+    int heapSize = 0;
+    for (int i = 0; i < chunkCount; i++) {
+      if (chunks.get(i).size() > 0) {
+        nextTimestamps[i] = chunks.get(i).getPackedTimestamp(orders[i] != null ? orders[i][0] : 0);
+        heap[heapSize++] = i;
+      }
+    }
+    for (int i = heapSize / 2 - 1; i >= 0; i--) {
+      siftDown(heap, i, heapSize, nextTimestamps);
+    }
+
+    while (heapSize > 0) {
+      int chunkIndex = heap[0];
+      LogStore.Chunk chunk = chunks.get(chunkIndex);
+      int[] order = orders[chunkIndex];
+      int position = positions[chunkIndex]++;
+      result.add(chunk, order != null ? order[position] : position);
+
+      position++;
+      if (position == chunk.size()) {
+        heap[0] = heap[--heapSize];
+      } else {
+        nextTimestamps[chunkIndex] = chunk.getPackedTimestamp(order != null ? order[position] : position);
+      }
+      siftDown(heap, 0, heapSize, nextTimestamps);
+    }
+  }
+
+  private static boolean isSorted(LogStore.Chunk chunk) {
+    for (int i = 1; i < chunk.size(); i++) {
+      if (chunk.getPackedTimestamp(i - 1) > chunk.getPackedTimestamp(i)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Stable sort (merge sort) of the chunk entries by timestamp
+   *
+   * @return the entry indices in timestamp order
+   */
+  private static int[] sortByTimestamp(LogStore.Chunk chunk) {
+    int size = chunk.size();
+    int[] order = new int[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+
+    int[] buffer = new int[size];
+    for (int width = 1; width < size; width *= 2) {
+      for (int start = 0; start < size; start += 2 * width) {
+        int middle = Math.min(start + width, size);
+        int end = Math.min(start + 2 * width, size);
+        int left = start, right = middle, out = start;
+        while (left < middle && right < end) {
+          // Take from the left on ties to keep the sort stable
+          if (chunk.getPackedTimestamp(order[right]) < chunk.getPackedTimestamp(order[left])) {
+            buffer[out++] = order[right++];
+          } else {
+            buffer[out++] = order[left++];
+          }
         }
+        while (left < middle) buffer[out++] = order[left++];
+        while (right < end) buffer[out++] = order[right++];
+      }
+
+      int[] sorted = buffer;
+      buffer = order;
+      order = sorted;
+    }
+
+    return order;
+  }
 
-        currentLogLine = new StringBuilder(line);
-      } else if (!shouldIgnoreLine(line) && currentLogLine != null) {
+  private static void siftDown(int[] heap, int i, int heapSize, long[] nextTimestamps) {
+    int chunk = heap[i];
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= heapSize) break;
+
+      if (child + 1 < heapSize && compareNext(heap[child + 1], heap[child], nextTimestamps) < 0) {
+        child++;
+      }
+      if (compareNext(heap[child], chunk, nextTimestamps) >= 0) break;
+
+      heap[i] = heap[child];
+      i = child;
+    }
+    heap[i] = chunk;
+  }
+
+  private static int compareNext(int chunk1, int chunk2, long[] nextTimestamps) {
+    int result = Long.compare(nextTimestamps[chunk1], nextTimestamps[chunk2]);
+
+    // Ties are resolved by the chunk order to keep the merge stable
+    return result != 0 ? result : Integer.compare(chunk1, chunk2);
+  }
+
+  private static int findNextLogLineStart(CharSequence logText, int from, int end) {
+    LogLineScanner scanner = new LogLineScanner();
+
+    // 'from' can be in the middle of a line, so always start from the next one
+    int lineStart = skipLineBreak(logText, findLineEnd(logText, from, end), end);
+    while (lineStart < end) {
+      int lineEnd = findLineEnd(logText, lineStart, end);
+      if (scanner.scan(readLine(logText, lineStart, lineEnd))) {
+        return lineStart;
+      }
+      lineStart = skipLineBreak(logText, lineEnd, end);
+    }
+
+    return end;
+  }
+
+  private void checkCancelled() {
+    ProgressReporter reporter = progressReporter;
+    if (reporter != null && reporter.isCancelled()) {
+      throw new CancellationException("Parsing was cancelled");
+    }
+  }
+
+  private LogStore.Chunk parseChunk(CharSequence logText, int start, int end, String logPath) {
+    LogStore.Chunk chunk = new LogStore.Chunk(LogStream.inferLogStreamFromName(logPath));
+    int linesRead = 0;
+
+    // Walk the line boundaries in place instead of splitting the whole text
+    // The level, timestamp and header of an entry are always in its first line, so they are taken from the same
+    // scan that found the line. Only truncated entries need to be scanned again
+    LogLineScanner scanner = new LogLineScanner();
+    StringBuilder currentLogLine = new StringBuilder();
+    boolean hasCurrentLogLine = false;
+    LogLevel currentLogLevel = null;
+    long currentTimestamp = LogStore.NO_TIMESTAMP;
+    int currentPid = -1;
+    int currentTid = -1;
+    String currentTag = null;
+    for (int lineStart = start, lineEnd; lineStart < end; lineStart = skipLineBreak(logText, lineEnd, end)) {
+      if (++linesRead % CANCELLATION_CHECK_INTERVAL == 0) {
+        checkCancelled();
+      }
+
+      lineEnd = findLineEnd(logText, lineStart, end);
+      String line = readLine(logText, lineStart, lineEnd);
+
+      if (scanner.scan(line)) {
+        if (hasCurrentLogLine) {
+          chunk.add(currentLogLine, currentLogLevel, currentTimestamp, currentPid, currentTid, currentTag);
+        }
+
+        currentLogLine.setLength(0);
+        currentLogLine.append(line);
+        hasCurrentLogLine = true;
+        currentLogLevel = scanner.getLogLevel();
+        currentTimestamp = scanner.getPackedTimestamp();
+        currentPid = scanner.getPid();
+        currentTid = scanner.getTid();
+        currentTag = scanner.getTag();
+      } else if (!shouldIgnoreLine(line) && hasCurrentLogLine) {
         // This is probably a continuation of a already started log line. Append to it
         if (currentLogLine.length() >= MAX_LOG_LINE_ALLOWED) {
           currentLogLine.delete(MAX_LOG_LINE_ALLOWED, currentLogLine.length());
@@ -154,20 +427,24 @@ public class LogParser {
                     "\"" + incorrectLinePreview + "\"\n\n" +
                     "Maximum logcat line should be " + LOGGER_ENTRY_MAX_PAYLOAD + " bytes");
 
-            // This could be a bugreport. If this is the case, keep track of it
+            // This could be a bugreport. If this is the case, keep track of it. Other chunks of the same file may
+            // get here at the same time, so make sure only one of them copies the whole text
             if (isPotentialBugReport(logText)) {
-              Logger.info("Found a potential bugreport: " + logPath);
+              potentialBugReports.computeIfAbsent(logPath, path -> {
+                Logger.info("Found a potential bugreport: " + path);
 
-              // Make sure to remove all '\r' so it does not get in the way of the parsers
-              String bugReportText = logText.replaceAll("\r", "");
-              potentialBugReports.put(logPath, bugReportText);
+                // Make sure to remove all '\r' so it does not get in the way of the parsers
+                return logText.toString().replace("\r", "");
+              });
             }
           }
 
-          // We are done with this line, add it to the list and clear currentLogLine to avoid
+          // We are done with this line, add it to the chunk and clear currentLogLine to avoid
           // executing this same code over and over for invalid lines
-          logLines.add(createLogEntry(currentLogLine.toString(), logPath));
-          currentLogLine = null;
+          scanner.scan(currentLogLine);
+          chunk.add(currentLogLine, scanner.getLogLevel(), scanner.getPackedTimestamp(), scanner.getPid(),
+              scanner.getTid(), scanner.getTag());
+          hasCurrentLogLine = false;
 
           // This could simply be a malformed line, just continue parsing other lines
           continue;
@@ -177,59 +454,84 @@ public class LogParser {
     }
 
     // Make sure to add the last log line as well
-    if (currentLogLine != null) {
-      logLines.add(createLogEntry(currentLogLine.toString(), logPath));
+    if (hasCurrentLogLine) {
+      chunk.add(currentLogLine, currentLogLevel, currentTimestamp, currentPid, currentTid, currentTag);
     }
 
-    return logLines;
+    return chunk;
   }
 
-  private LogEntry createLogEntry(String logLine, String logName) {
-    return new LogEntry(logLine, findLogLevel(logLine), findTimestamp(logLine), logName);
+  private static String readLine(CharSequence logText, int lineStart, int lineEnd) {
+    String line = logText.subSequence(lineStart, lineEnd).toString();
+
+    // Sometimes a line can contain a lot of NULL chars at the end, making it fail when trying to open the log
+    // (as these NULL chars will make the line length too long). So check here if the line has NULL chars
+    // and remove them to avoid failing to open valid log files
+    if (!line.isEmpty() && line.charAt(line.length() - 1) == '\u0000') {
+      line = line.replaceAll("\\u0000", "");
+    }
+
+    return line;
   }
 
   LogLevel findLogLevel(String logLine) {
-    LogLevel logLevel = LogLevel.DEBUG;
+    LogLineScanner scanner = new LogLineScanner();
+    scanner.scan(logLine);
+    return scanner.getLogLevel();
+  }
 
-    Matcher matcher = LOG_LEVEL_PATTERN.matcher(logLine);
-    if (matcher.find()) {
-      logLevel = LogLevel.createFromStringLevel(matcher.group(1));
-    }
+  LogTimestamp findTimestamp(String logLine) {
+    LogLineScanner scanner = new LogLineScanner();
+    scanner.scan(logLine);
+    return scanner.createTimestamp();
+  }
 
-    return logLevel;
+  private boolean shouldIgnoreLine(String line) {
+    return line.startsWith("--------- beginning of");
   }
 
-  LogTimestamp findTimestamp(String logLine) {
-    LogTimestamp timestamp = null;
+  private boolean isPotentialBugReport(CharSequence logText) {
+    return indexOf(logText, BUGREPORT_MARKER) >= 0;
+  }
 
-    try {
-      Matcher matcher = LOG_TIMESTAMP_PATTERN.matcher(logLine);
-      if (matcher.find()) {
-        timestamp = new LogTimestamp(matcher.group(1),
-            matcher.group(2),
-            matcher.group(3),
-            matcher.group(4),
-            matcher.group(5),
-            matcher.group(6));
-      }
-    } catch (Exception e) {
-      // Don't add a timestamp if we couldn't parse it
-      // This should never happen anyway
-      Logger.error("Failed to parse timestamp for: " + logLine, e);
+  private static boolean isLineBreak(char c) {
+    return c == '\n' || c == '\r';
+  }
+
+  private static int findLineEnd(CharSequence text, int from, int end) {
+    int i = from;
+    while (i < end && !isLineBreak(text.charAt(i))) {
+      i++;
     }
 
-    return timestamp;
+    return i;
   }
 
-  private boolean isLogLine(String line) {
-    return line.matches(LOG_START_PATTERN);
-  }
+  // Line breaks can be "\n", "\r" or "\r\n", the same as BufferedReader#readLine
+  private static int skipLineBreak(CharSequence text, int lineEnd, int end) {
+    if (lineEnd < end && text.charAt(lineEnd) == '\r' && lineEnd + 1 < end && text.charAt(lineEnd + 1) == '\n') {
+      return lineEnd + 2;
+    }
 
-  private boolean shouldIgnoreLine(String line) {
-    return line.startsWith("--------- beginning of");
+    return lineEnd + 1;
   }
 
-  private boolean isPotentialBugReport(String logText) {
-    return logText.contains("Bugreport format version:");
+  private static int indexOf(CharSequence text, String target) {
+    int last = text.length() - target.length();
+    char first = target.charAt(0);
+    for (int i = 0; i <= last; i++) {
+      if (text.charAt(i) != first) continue;
+
+      int j = 1;
+      while (j < target.length() && text.charAt(i + j) == target.charAt(j)) {
+        j++;
+      }
+
+      if (j == target.length()) {
+        return i;
+      }
+    }
+
+    return -1;
   }
 }
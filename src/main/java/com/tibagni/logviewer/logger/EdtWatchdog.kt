@@ -0,0 +1,131 @@
+package com.tibagni.logviewer.logger
+
+import java.util.*
+import java.util.concurrent.atomic.AtomicReference
+import javax.swing.SwingUtilities
+
+/**
+ * Watches how long the Event Dispatch Thread (EDT) takes to run the events posted to it.
+ *
+ * A watchdog thread posts a probe with 'invokeLater' every [sampleIntervalMs] and records how long it waits in the
+ * queue in [latencies]. If a probe waits more than 'stallThresholdMs', the EDT is considered stalled: the stack of
+ * the EDT is captured (showing what is blocking it) and logged, and kept in [stalls].
+ *
+ * @param dispatcher posts a runnable to the thread being watched. Visible for testing
+ * @param clock current time in ms, only used to measure intervals. Visible for testing
+ */
+class EdtWatchdog(
+  val stallThresholdMs: Long,
+  private val dispatcher: (Runnable) -> Unit = { SwingUtilities.invokeLater(it) },
+  private val clock: () -> Long = { System.nanoTime() / 1_000_000 }
+) {
+  companion object {
+    private const val MAX_STALLS = 20
+    // Handed to a probe when it runs, so a stall is never published to a probe that already ran
+    private val PROBE_RAN = Stall(Date(0), emptyArray())
+
+    fun formatStackTrace(stackTrace: Array<StackTraceElement>) = stackTrace.joinToString("\n") { "\tat $it" }
+  }
+
+  /**
+   * An EDT stall. 'durationMs' is how long the EDT was blocked, which is only known once it runs the probe again
+   */
+  class Stall(val time: Date, val stackTrace: Array<StackTraceElement>) {
+    @Volatile
+    var durationMs = -1L
+      internal set
+  }
+
+  private inner class Probe(val postedAt: Long) : Runnable {
+    // The stall found by the watchdog while this probe waits, or PROBE_RAN once it runs. Whichever is set first wins
+    val stall = AtomicReference<Stall?>()
+    val isDone: Boolean
+      get() = stall.get() === PROBE_RAN
+
+    override fun run() {
+      edtThread = Thread.currentThread()
+      val latency = clock() - postedAt
+      latencies.record(latency)
+      stall.getAndSet(PROBE_RAN)?.let {
+        it.durationMs = latency
+        Logger.warning("EDT was blocked for $latency ms")
+      }
+    }
+  }
+
+  val latencies = LatencyHistogram()
+  private val recentStalls = ArrayDeque<Stall>()
+  val sampleIntervalMs = (stallThresholdMs / 4).coerceIn(10, 100)
+
+  @Volatile
+  private var edtThread: Thread? = null
+  @Volatile
+  private var pendingProbe: Probe? = null
+  private var watchdogThread: Thread? = null
+
+  /**
+   * The most recent stalls, the oldest first
+   */
+  val stalls: List<Stall>
+    get() = synchronized(recentStalls) { recentStalls.toList() }
+
+  @Synchronized
+  fun start() {
+    if (watchdogThread != null) return
+
+    Logger.info("Watching the EDT for stalls longer than $stallThresholdMs ms")
+    watchdogThread = Thread({
+      try {
+        while (!Thread.currentThread().isInterrupted) {
+          check()
+          Thread.sleep(sampleIntervalMs)
+        }
+      } catch (e: InterruptedException) {
+        // Stopped
+      }
+    }, "EdtWatchdog").apply {
+      isDaemon = true
+      start()
+    }
+  }
+
+  @Synchronized
+  fun stop() {
+    watchdogThread?.interrupt()
+    watchdogThread = null
+  }
+
+  /**
+   * Posts a new probe if the last one already ran, or checks if it is waiting for too long otherwise
+   */
+  internal fun check() {
+    val probe = pendingProbe
+    if (probe == null || probe.isDone) {
+      val newProbe = Probe(clock())
+      pendingProbe = newProbe
+      dispatcher(newProbe)
+      return
+    }
+
+    // The EDT is only known after running a probe
+    val edt = edtThread ?: return
+    if (probe.stall.get() == null && clock() - probe.postedAt >= stallThresholdMs) {
+      val stall = Stall(Date(), edt.stackTrace)
+      // The EDT may have been unblocked while its stack was captured. Then the probe already ran and will not set
+      // the duration of the stall, so it is dropped
+      if (!probe.stall.compareAndSet(null, stall)) return
+
+      addStall(stall)
+      Logger.warning("EDT blocked for more than $stallThresholdMs ms at:\n" + formatStackTrace(stall.stackTrace))
+    }
+  }
+
+  private fun addStall(stall: Stall) {
+    synchronized(recentStalls) {
+      if (recentStalls.size >= MAX_STALLS) {
+        recentStalls.pollFirst()
+      }
+      recentStalls.add(stall)
+    }
+  }
+}
\ No newline at end of file
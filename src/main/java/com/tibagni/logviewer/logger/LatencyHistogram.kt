@@ -0,0 +1,91 @@
+package com.tibagni.logviewer.logger
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Counts latencies in buckets that double in size (< 1 ms, < 2 ms, < 4 ms, ...), so a few counters are enough to
+ * know how latencies are distributed, no matter how many of them were recorded. It can be recorded from any thread
+ */
+class LatencyHistogram {
+  companion object {
+    // Upper bound (exclusive) of each bucket but the last one, which has all latencies above them
+    private val UPPER_BOUNDS_MS = LongArray(14) { 1L shl it }
+  }
+
+  private val counts = AtomicLongArray(UPPER_BOUNDS_MS.size + 1)
+  private val max = AtomicLong()
+
+  val bucketCount: Int
+    get() = counts.length()
+
+  val totalCount: Long
+    get() = (0 until bucketCount).sumOf { counts[it] }
+
+  val maxMs: Long
+    get() = max.get()
+
+  fun record(latencyMs: Long) {
+    val latency = maxOf(0, latencyMs)
+    counts.incrementAndGet(bucketOf(latency))
+    max.accumulateAndGet(latency, ::maxOf)
+  }
+
+  fun count(bucket: Int) = counts[bucket]
+
+  /**
+   * @return the upper bound (exclusive) of the latencies counted in 'bucket', or [Long.MAX_VALUE] for the last one
+   */
+  fun upperBoundMs(bucket: Int) = if (bucket < UPPER_BOUNDS_MS.size) UPPER_BOUNDS_MS[bucket] else Long.MAX_VALUE
+
+  /**
+   * @return the upper bound of the bucket with the latency below which 'percentile' % of the latencies are, or 0 if
+   * nothing was recorded. For the last bucket, the max latency is returned
+   */
+  fun percentileMs(percentile: Double): Long {
+    val total = totalCount
+    if (total == 0L) return 0
+
+    val target = maxOf(1, Math.ceil(total * percentile / 100).toLong())
+    var counted = 0L
+    for (bucket in 0 until bucketCount) {
+      counted += counts[bucket]
+      if (counted >= target) {
+        return minOf(upperBoundMs(bucket), maxMs)
+      }
+    }
+    return maxMs
+  }
+
+  fun reset() {
+    for (bucket in 0 until bucketCount) counts[bucket] = 0
+    max.set(0)
+  }
+
+  /**
+   * @return one line for each bucket with latencies and their count, followed by a summary
+   */
+  fun describe(): String {
+    val description = StringBuilder()
+    for (bucket in 0 until bucketCount) {
+      val count = counts[bucket]
+      if (count == 0L) continue
+
+      val range = if (bucket < UPPER_BOUNDS_MS.size) {
+        "< ${upperBoundMs(bucket)} ms"
+      } else {
+        ">= ${UPPER_BOUNDS_MS.last()} ms"
+      }
+      description.append(range.padStart(10)).append(": ").append(count).append('\n')
+    }
+    description.append("count=$totalCount p50=${percentileMs(50.0)} ms p99=${percentileMs(99.0)} ms max=$maxMs ms")
+    return description.toString()
+  }
+
+  private fun bucketOf(latencyMs: Long): Int {
+    for (bucket in UPPER_BOUNDS_MS.indices) {
+      if (latencyMs < UPPER_BOUNDS_MS[bucket]) return bucket
+    }
+    return UPPER_BOUNDS_MS.size
+  }
+}
\ No newline at end of file
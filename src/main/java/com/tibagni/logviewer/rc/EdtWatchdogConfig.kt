@@ -0,0 +1,23 @@
+package com.tibagni.logviewer.rc
+
+/**
+ * How long (in ms) the Event Dispatch Thread can be blocked before the watchdog reports it as a stall, or
+ * [THRESHOLD_OFF] to not watch it at all. e.g. "edtwatchdog=250" or "edtwatchdog=off"
+ */
+class EdtWatchdogConfig(configValue: String) : Config<Long> {
+  companion object {
+    const val THRESHOLD_OFF = 0L
+    const val DEFAULT_THRESHOLD_MS = 500L
+  }
+
+  private val thresholdMs: Long
+  init {
+    thresholdMs = if (configValue.lowercase() == "off") {
+      THRESHOLD_OFF
+    } else {
+      configValue.toLongOrNull()?.takeIf { it > 0 } ?: DEFAULT_THRESHOLD_MS
+    }
+  }
+
+  override fun getConfigValue() = thresholdMs
+}
\ No newline at end of file
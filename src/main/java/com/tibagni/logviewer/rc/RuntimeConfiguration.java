@@ -20,6 +20,8 @@ public class RuntimeConfiguration {
     public static final String UI_SCALE = "uiscale";
     public static final String LOG_LEVEL = "loglevel";
     public static final String CRASH_REPORT = "crashreport";
+    public static final String TEXT_INDEX = "textindex";
+    public static final String EDT_WATCHDOG = "edtwatchdog";
 
     @NotNull
     static RuntimeConfiguration initializeForTest() {
@@ -85,6 +87,12 @@ public class RuntimeConfiguration {
             case CRASH_REPORT:
                 config = new CrashReportConfig(configValue);
                 break;
+            case TEXT_INDEX:
+                config = new TextIndexConfig(configValue);
+                break;
+            case EDT_WATCHDOG:
+                config = new EdtWatchdogConfig(configValue);
+                break;
             default:
                 Logger.error("Invalid config: " + configName);
                 break;
@@ -0,0 +1,10 @@
+package com.tibagni.logviewer.rc
+
+class TextIndexConfig(configValue: String) : Config<Boolean> {
+  private val state: Boolean
+  init {
+    state = configValue.lowercase() == "on"
+  }
+
+  override fun getConfigValue() = state
+}
\ No newline at end of file
@@ -0,0 +1,392 @@
+package com.tibagni.logviewer.view
+
+import com.tibagni.logviewer.log.LogCellRenderer
+import com.tibagni.logviewer.log.LogEntry
+import com.tibagni.logviewer.log.LogListTableModel
+import java.awt.*
+import java.awt.datatransfer.StringSelection
+import java.awt.event.*
+import javax.swing.*
+import javax.swing.event.TableModelEvent
+import javax.swing.table.TableModel
+
+/**
+ * Shows the log entries of a [TableModel] (one entry per row, in its first column), drawing only the rows that are
+ * visible with a [LogCellRenderer].
+ *
+ * Unlike a [JTable], the rows are not laid out in advance. The viewport is scrolled by rows (and by lines inside the
+ * first visible row, for rows with wrapped text), so the memory and time needed to paint it do not depend on how many
+ * rows there are. The scroll bar goes over the rows, not over pixels.
+ */
+class LogViewport(val model: TableModel) : JComponent() {
+  val selectionModel: ListSelectionModel = DefaultListSelectionModel()
+  private val scrollBar = JScrollBar(JScrollBar.VERTICAL)
+
+  var renderer: LogCellRenderer? = null
+    set(value) {
+      field = value
+      repaint()
+    }
+
+  // The first visible row and how many of its lines are scrolled out of the top
+  private var firstRow = 0
+  private var firstRowLine = 0
+  private var isUpdatingScrollBar = false
+
+  // Rows painted last time and where each of them starts, to find the row at a point
+  private var paintedRows = 0
+  private var paintedRowTops = IntArray(64)
+  private var fullyVisibleRows = 0
+
+  val rowCount: Int
+    get() = model.rowCount
+
+  val selectedRow: Int
+    get() = selectionModel.minSelectionIndex
+
+  val selectedRows: IntArray
+    get() {
+      if (selectionModel.isSelectionEmpty) return IntArray(0)
+      return (selectionModel.minSelectionIndex..selectionModel.maxSelectionIndex)
+        .filter { selectionModel.isSelectedIndex(it) }
+        .toIntArray()
+    }
+
+  val selectedRowCount: Int
+    get() = selectedRows.size
+
+  init {
+    isFocusable = true
+    isOpaque = true
+    layout = null
+    add(scrollBar)
+
+    scrollBar.addAdjustmentListener {
+      if (!isUpdatingScrollBar) {
+        // The end of the scroll bar goes over the lines of the last row (see 'updateScrollBar')
+        val maxRow = maxFirstRow()
+        firstRow = minOf(it.value, maxRow)
+        firstRowLine = if (it.value > maxRow) minOf(it.value - maxRow, maxFirstRowLine(maxRow)) else 0
+        repaint()
+      }
+    }
+
+    model.addTableModelListener {
+      val rowsChanged = it.type != TableModelEvent.UPDATE || it.lastRow == Int.MAX_VALUE
+      if (rowsChanged) {
+        selectionModel.clearSelection()
+        firstRow = firstRow.coerceIn(0, maxOf(0, rowCount - 1))
+        firstRowLine = 0
+      }
+      updateScrollBar()
+      repaint()
+    }
+
+    selectionModel.addListSelectionListener { repaint() }
+
+    val mouseHandler = MouseHandler()
+    addMouseListener(mouseHandler)
+    addMouseMotionListener(mouseHandler)
+    addMouseWheelListener { scrollLines(it.unitsToScroll) }
+
+    setupKeyboardActions()
+  }
+
+  fun setRowSelectionInterval(index0: Int, index1: Int) {
+    selectionModel.setSelectionInterval(index0, index1)
+  }
+
+  /**
+   * @return the row at 'point', or -1 if there is no row there
+   */
+  fun rowAtPoint(point: Point): Int {
+    for (i in 0 until paintedRows) {
+      val bottom = if (i + 1 < paintedRows) paintedRowTops[i + 1] else paintedRowTops[i] + rowHeight(firstRow + i)
+      if (point.y >= paintedRowTops[i] && point.y < bottom) return firstRow + i
+    }
+
+    return -1
+  }
+
+  /**
+   * Scrolls to 'row' if it is not fully visible, showing it in the middle of the viewport
+   */
+  fun scrollToVisible(row: Int) {
+    if (row < 0 || row >= rowCount || isFullyVisible(row)) return
+
+    scrollToFirstRow(rowAbove(row, textHeight() / 2))
+  }
+
+  private fun ensureVisible(row: Int) {
+    if (isFullyVisible(row)) return
+
+    if (row <= firstRow) {
+      scrollToFirstRow(row)
+    } else {
+      // Show it at the bottom
+      val above = rowAbove(row, textHeight() - rowHeight(row))
+      scrollToFirstRow(if (rowHeight(row) > textHeight()) row else above)
+    }
+  }
+
+  private fun isFullyVisible(row: Int): Boolean {
+    return row >= firstRow && row < firstRow + fullyVisibleRows && (row > firstRow || firstRowLine == 0)
+  }
+
+  /**
+   * @return the first row to be shown so there are at least 'height' pixels of rows above 'row'
+   */
+  private fun rowAbove(row: Int, height: Int): Int {
+    var first = row
+    var heightAbove = 0
+    while (first > 0 && heightAbove < height) {
+      first--
+      heightAbove += rowHeight(first)
+    }
+    return first
+  }
+
+  private fun scrollToFirstRow(row: Int) {
+    firstRow = row.coerceIn(0, maxFirstRow())
+    firstRowLine = 0
+    updateScrollBar()
+    repaint()
+  }
+
+  /**
+   * Scrolls by lines of text. Rows with wrapped text take more than one line
+   */
+  fun scrollLines(lines: Int) {
+    val renderer = renderer ?: return
+    if (rowCount == 0) return
+
+    var remaining = lines
+    val maxRow = maxFirstRow()
+    while (remaining > 0 && firstRow < maxRow) {
+      val lineCount = renderer.layoutRow(this, entryAt(firstRow), textWidth()).lineCount
+      if (firstRowLine + remaining < lineCount) {
+        firstRowLine += remaining
+        remaining = 0
+      } else {
+        remaining -= lineCount - firstRowLine
+        firstRow++
+        firstRowLine = 0
+      }
+    }
+    if (remaining > 0 && firstRow == maxRow) {
+      // Only the last row can be scrolled inside, until its bottom is at the bottom of the viewport
+      firstRowLine = minOf(firstRowLine + remaining, maxOf(firstRowLine, maxFirstRowLine(maxRow)))
+    }
+    while (remaining < 0 && (firstRow > 0 || firstRowLine > 0)) {
+      if (firstRowLine + remaining >= 0) {
+        firstRowLine += remaining
+        remaining = 0
+      } else {
+        remaining += firstRowLine + 1
+        firstRow--
+        firstRowLine = renderer.layoutRow(this, entryAt(firstRow), textWidth()).lineCount - 1
+      }
+    }
+
+    updateScrollBar()
+    repaint()
+  }
+
+  /**
+   * @return the last row that can be the first visible one, so the viewport does not scroll past the last row
+   */
+  private fun maxFirstRow(): Int {
+    if (rowCount == 0) return 0
+    val last = rowCount - 1
+    val above = rowAbove(last, textHeight() - rowHeight(last))
+    // The rows above are not fully visible if they do not fit
+    var heightFromAbove = 0
+    for (row in above..last) heightFromAbove += rowHeight(row)
+    return if (heightFromAbove > textHeight()) minOf(above + 1, last) else above
+  }
+
+  /**
+   * @return how many lines of 'maxRow' can be scrolled out of the top. Only the last row, if it is taller than the
+   * viewport, has lines that can be scrolled out so its end is shown
+   */
+  private fun maxFirstRowLine(maxRow: Int): Int {
+    val renderer = renderer ?: return 0
+    if (rowCount == 0 || maxRow != rowCount - 1) return 0
+
+    val overflow = rowHeight(maxRow) - textHeight()
+    val lineHeight = maxOf(1, renderer.getLineHeight(this))
+    val lineCount = renderer.layoutRow(this, entryAt(maxRow), textWidth()).lineCount
+    return if (overflow <= 0) 0 else minOf((overflow + lineHeight - 1) / lineHeight, lineCount - 1)
+  }
+
+  private fun entryAt(row: Int) = model.getValueAt(row, 0) as LogEntry
+
+  private fun rowHeight(row: Int): Int {
+    val renderer = renderer ?: return 1
+    return renderer.layoutRow(this, entryAt(row), textWidth()).height
+  }
+
+  private fun textWidth() = width - scrollBar.preferredSize.width
+
+  private fun textHeight() = height
+
+  override fun doLayout() {
+    val scrollBarWidth = scrollBar.preferredSize.width
+    scrollBar.setBounds(width - scrollBarWidth, 0, scrollBarWidth, height)
+    updateScrollBar()
+  }
+
+  override fun getPreferredSize(): Dimension {
+    return if (isPreferredSizeSet) super.getPreferredSize() else Dimension(100, 100)
+  }
+
+  private fun updateScrollBar() {
+    isUpdatingScrollBar = true
+    try {
+      // The scroll bar ends at the last row that can be first, followed by the lines that can be scrolled in it
+      val extent = maxOf(1, fullyVisibleRows)
+      val maxRow = maxFirstRow()
+      val maxValue = maxRow + maxFirstRowLine(maxRow)
+      val value = minOf(firstRow, maxRow) + if (firstRow == maxRow) firstRowLine else 0
+      scrollBar.setValues(minOf(value, maxValue), extent, 0, maxValue + extent)
+      scrollBar.unitIncrement = 1
+      scrollBar.blockIncrement = extent
+    } finally {
+      isUpdatingScrollBar = false
+    }
+  }
+
+  override fun paintComponent(g: Graphics) {
+    val g2 = g.create() as Graphics2D
+    try {
+      // Same text rendering as the other text components
+      (Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints") as? Map<*, *>)
+        ?.let { g2.addRenderingHints(it) }
+      g2.color = UIManager.getColor("Table.background") ?: background
+      g2.fillRect(0, 0, width, height)
+      paintRows(g2)
+    } finally {
+      g2.dispose()
+    }
+  }
+
+  private fun paintRows(g: Graphics2D) {
+    val renderer = renderer
+    if (renderer == null || rowCount == 0) {
+      paintedRows = 0
+      return
+    }
+
+    val width = textWidth()
+    val searchResult = (model as? LogListTableModel)?.searchResult
+    val previousFullyVisibleRows = fullyVisibleRows
+    var y = -firstRowLine * renderer.getLineHeight(this)
+    var row = firstRow
+    paintedRows = 0
+    fullyVisibleRows = 0
+    val clip = g.clipBounds ?: Rectangle(0, 0, width, height)
+    while (row < rowCount && y < height) {
+      val entry = entryAt(row)
+      val layout = renderer.layoutRow(this, entry, width)
+      if (y + layout.height > clip.y && y < clip.y + clip.height) {
+        val searchFilter = if (searchResult?.isMatch(row) == true) searchResult.filter else null
+        renderer.paintRow(g, this, entry, row, layout, y, width, selectionModel.isSelectedIndex(row), searchFilter)
+      }
+
+      if (paintedRows == paintedRowTops.size) paintedRowTops = paintedRowTops.copyOf(paintedRows * 2)
+      paintedRowTops[paintedRows++] = y
+      if (y >= 0 && y + layout.height <= height) fullyVisibleRows++
+      y += layout.height
+      row++
+    }
+
+    if (fullyVisibleRows != previousFullyVisibleRows) {
+      SwingUtilities.invokeLater { updateScrollBar() }
+    }
+  }
+
+  private fun setupKeyboardActions() {
+    // There is no menu shortcut without a display (i.e. in tests)
+    val menuShortcut = if (GraphicsEnvironment.isHeadless()) InputEvent.CTRL_DOWN_MASK else
+      Toolkit.getDefaultToolkit().menuShortcutKeyMaskEx
+    bindKey(KeyEvent.VK_UP, 0, "selectPrevious") { moveSelection(-1, false) }
+    bindKey(KeyEvent.VK_UP, InputEvent.SHIFT_DOWN_MASK, "extendPrevious") { moveSelection(-1, true) }
+    bindKey(KeyEvent.VK_DOWN, 0, "selectNext") { moveSelection(1, false) }
+    bindKey(KeyEvent.VK_DOWN, InputEvent.SHIFT_DOWN_MASK, "extendNext") { moveSelection(1, true) }
+    bindKey(KeyEvent.VK_PAGE_UP, 0, "selectPreviousPage") { moveSelection(-maxOf(1, fullyVisibleRows), false) }
+    bindKey(KeyEvent.VK_PAGE_DOWN, 0, "selectNextPage") { moveSelection(maxOf(1, fullyVisibleRows), false) }
+    bindKey(KeyEvent.VK_HOME, menuShortcut, "selectFirst") { moveSelection(-rowCount, false) }
+    bindKey(KeyEvent.VK_END, menuShortcut, "selectLast") { moveSelection(rowCount, false) }
+    bindKey(KeyEvent.VK_A, menuShortcut, "selectAll") {
+      if (rowCount > 0) selectionModel.setSelectionInterval(0, rowCount - 1)
+    }
+    bindKey(KeyEvent.VK_C, menuShortcut, "copy") { copySelection() }
+  }
+
+  private fun bindKey(keyCode: Int, modifiers: Int, name: String, action: () -> Unit) {
+    getInputMap(WHEN_FOCUSED).put(KeyStroke.getKeyStroke(keyCode, modifiers), name)
+    actionMap.put(name, object : AbstractAction() {
+      override fun actionPerformed(e: ActionEvent) = action()
+    })
+  }
+
+  private fun moveSelection(rows: Int, extend: Boolean) {
+    if (rowCount == 0) return
+
+    val lead = selectionModel.leadSelectionIndex.takeIf { it in 0 until rowCount } ?: firstRow
+    val target = (lead + rows).coerceIn(0, rowCount - 1)
+    if (extend) {
+      val anchor = selectionModel.anchorSelectionIndex.takeIf { it in 0 until rowCount } ?: lead
+      selectionModel.setSelectionInterval(anchor, target)
+    } else {
+      selectionModel.setSelectionInterval(target, target)
+    }
+    ensureVisible(target)
+  }
+
+  private fun copySelection() {
+    val rows = selectedRows
+    if (rows.isEmpty()) return
+
+    val text = rows.joinToString("\n") { entryAt(it).logText }
+    Toolkit.getDefaultToolkit().systemClipboard.setContents(StringSelection(text), null)
+  }
+
+  // Test helpers
+  internal val firstRowForTesting: Int
+    get() = firstRow
+
+  internal val firstRowLineForTesting: Int
+    get() = firstRowLine
+
+  private inner class MouseHandler : MouseAdapter() {
+    override fun mousePressed(e: MouseEvent) {
+      if (!SwingUtilities.isLeftMouseButton(e)) return
+
+      requestFocusInWindow()
+      val row = rowAtPoint(e.point)
+      if (row == -1) return
+
+      when {
+        e.isShiftDown && selectionModel.anchorSelectionIndex != -1 ->
+          selectionModel.setSelectionInterval(selectionModel.anchorSelectionIndex, row)
+        (e.modifiersEx and Toolkit.getDefaultToolkit().menuShortcutKeyMaskEx) != 0 ->
+          if (selectionModel.isSelectedIndex(row)) {
+            selectionModel.removeSelectionInterval(row, row)
+          } else {
+            selectionModel.addSelectionInterval(row, row)
+          }
+        else -> selectionModel.setSelectionInterval(row, row)
+      }
+    }
+
+    override fun mouseDragged(e: MouseEvent) {
+      if (!SwingUtilities.isLeftMouseButton(e)) return
+
+      val row = rowAtPoint(e.point)
+      if (row != -1 && selectionModel.anchorSelectionIndex != -1) {
+        selectionModel.setSelectionInterval(selectionModel.anchorSelectionIndex, row)
+      }
+    }
+  }
+}
@@ -3,14 +3,16 @@ package com.tibagni.logviewer.view
 import com.jgoodies.forms.builder.PanelBuilder
 import com.jgoodies.forms.factories.CC
 import com.jgoodies.forms.layout.FormLayout
+import com.tibagni.logviewer.filter.CandidateLines
 import com.tibagni.logviewer.filter.Filter
-import com.tibagni.logviewer.log.LogCellRenderer
 import com.tibagni.logviewer.log.LogEntry
 import com.tibagni.logviewer.log.LogLevel
+import com.tibagni.logviewer.log.LogListTableModel
+import com.tibagni.logviewer.log.SearchResult
 import com.tibagni.logviewer.logger.Logger
 import com.tibagni.logviewer.util.StringUtils
-import com.tibagni.logviewer.util.SwingUtils
 import com.tibagni.logviewer.util.layout.GBConstraintsBuilder
+import com.tibagni.logviewer.util.scaling.UIScaleUtils
 import kotlinx.coroutines.*
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.launchIn
@@ -19,16 +21,11 @@ import java.awt.*
 import java.awt.event.KeyAdapter
 import java.awt.event.KeyEvent
 import javax.swing.*
-import javax.swing.table.AbstractTableModel
-import javax.swing.table.TableColumnModel
+import javax.swing.event.TableModelEvent
 import javax.swing.table.TableModel
 
 
-class SearchableTable @JvmOverloads constructor(
-  dm: TableModel? = null,
-  cm: TableColumnModel? = null,
-  sm: ListSelectionModel? = null
-) : JPanel() {
+class SearchableTable(model: TableModel) : JPanel() {
 
   private val searchOptionPanel = JPanel()
   private val searchText = HintTextField("Search")
@@ -39,14 +36,34 @@ class SearchableTable @JvmOverloads constructor(
   private val matchCaseOption = JCheckBox("Match Case")
   private val close = FlatButton(StringUtils.DELETE)
 
-  val table = JTable(dm, cm, sm)
+  val viewport = LogViewport(model)
+  // Shows the title of the logs, as the header of a table would
+  private val header = object : JLabel(model.getColumnName(0), CENTER) {
+    override fun updateUI() {
+      super.updateUI()
+      isOpaque = true
+      font = UIManager.getFont("TableHeader.font")
+      background = UIManager.getColor("TableHeader.background")
+      foreground = UIManager.getColor("TableHeader.foreground")
+      val padding = BorderFactory.createEmptyBorder(UIScaleUtils.dip(3), 0, UIScaleUtils.dip(3), 0)
+      val separatorColor = UIManager.getColor("TableHeader.bottomSeparatorColor")
+      border = if (separatorColor == null) padding else BorderFactory.createCompoundBorder(
+        BorderFactory.createMatteBorder(0, 0, 1, 0, separatorColor), padding
+      )
+    }
+  }
 
   private val scope: CoroutineScope = CoroutineScope(Dispatchers.Main)
-  private var lastSearchJob: Deferred<List<Int>>? = null
+  private var lastSearchJob: Deferred<SearchResult>? = null
 
-  private val performSearchState = MutableStateFlow(Any())
+  private val performSearchState = MutableStateFlow(SearchRequest(true))
   private var lastSearchGoToPos = -1
 
+  /**
+   * Provides the index used to find which rows may match a search. All rows are checked by default
+   */
+  var candidateLinesProvider: () -> CandidateLines = { CandidateLines.ALL }
+
   init {
     buildUi()
     searchOptionPanel.isVisible = false
@@ -65,7 +82,7 @@ class SearchableTable @JvmOverloads constructor(
 
     clearSearchText.addActionListener { searchText.text = "" }
 
-    table.addKeyListener(object : KeyAdapter() {
+    viewport.addKeyListener(object : KeyAdapter() {
       override fun keyPressed(e: KeyEvent) {
         when (e.keyCode) {
           KeyEvent.VK_F -> if (e.isControlDown || e.isMetaDown) showSearch()
@@ -87,90 +104,102 @@ class SearchableTable @JvmOverloads constructor(
     close.addActionListener { hideSearch() }
     close.toolTipText = "Hide search bar"
 
-    searchText.whenTextChanges { performSearchState.value = Any() }
+    searchText.whenTextChanges { performSearchState.value = SearchRequest(true) }
 
-    table.selectionModel.addListSelectionListener {
+    viewport.model.addTableModelListener {
+      // The rows changed, so search again to keep the results valid. The user is not looking for them now,
+      // so do not scroll to the first one
+      val rowsChanged = it.type != TableModelEvent.UPDATE || it.lastRow == Int.MAX_VALUE
+      if (rowsChanged && searchText.text.isNotBlank()) {
+        performSearchState.value = SearchRequest(false)
+      }
+    }
+
+    viewport.selectionModel.addListSelectionListener {
       lastSearchGoToPos = -1
-      val renderer = table.getDefaultRenderer(LogEntry::class.java) as LogCellRenderer
-      renderer.highlightLine(-1)
-      table.revalidate()
-      table.repaint()
+      viewport.renderer?.highlightLine(-1)
+      viewport.repaint()
     }
 
     performSearchState
-      .onEach { searchContent() }
+      .onEach { searchContent(it.scrollToFirstMatch) }
       .launchIn(scope)
   }
 
   private fun searchInDirection(searchDown: Boolean) {
     scope.launch {
-      val matchedIndexList = lastSearchJob?.await() ?: emptyList()
-      if (matchedIndexList.isEmpty()) return@launch
+      val result = lastSearchJob?.await() ?: SearchResult.EMPTY
+      if (result.isEmpty) return@launch
 
-      val lastPos = if (lastSearchGoToPos != -1) lastSearchGoToPos else table.selectedRow
+      val lastPos = if (lastSearchGoToPos != -1) lastSearchGoToPos else viewport.selectedRow
       // find the nearest matched item index
       val itemIndex = if (searchDown) {
-        matchedIndexList.indexOfFirst { it > lastPos }.takeIf { it != -1 } ?: 0
+        result.findFirstAfter(lastPos).takeIf { it != -1 } ?: 0
       } else {
-        matchedIndexList.indexOfLast { it < lastPos }.takeIf { it != -1 } ?: matchedIndexList.lastIndex
+        result.findLastBefore(lastPos).takeIf { it != -1 } ?: (result.size() - 1)
       }
-      searchResult.text = " ${itemIndex + 1}/${matchedIndexList.size} "
-      val targetCellPos = matchedIndexList[itemIndex]
-      SwingUtils.scrollToVisible(table, targetCellPos)
-      val renderer = table.getDefaultRenderer(LogEntry::class.java) as LogCellRenderer
-      renderer.highlightLine(targetCellPos)
-      table.revalidate()
-      table.repaint()
+      searchResult.text = " ${itemIndex + 1}/${result.size()} "
+      val targetCellPos = result.getRow(itemIndex)
+      viewport.scrollToVisible(targetCellPos)
+      viewport.renderer?.highlightLine(targetCellPos)
+      viewport.repaint()
       lastSearchGoToPos = targetCellPos
     }
   }
 
   private fun matchCaseStateChanged() {
-    performSearchState.value = Any()
+    performSearchState.value = SearchRequest(true)
   }
 
-  private fun searchContent() {
+  private fun searchContent(scrollToFirstMatch: Boolean) {
     lastSearchJob?.cancel()
     lastSearchGoToPos = -1
+    val model = viewport.model
+    val rowCount = model.rowCount
+    // The logs of a LogListTableModel are never changed, so they can be searched as they are
+    val entries = (model as? LogListTableModel)?.logs ?: object : AbstractList<LogEntry>() {
+      override val size = rowCount
+      override fun get(index: Int) = model.getValueAt(index, 0) as LogEntry
+    }
+    val pattern = searchText.text
+    val matchCase = matchCaseOption.isSelected
+    // Reset whenever the rows change, so it can be refined while it is still valid for the current rows
+    val previousResult = (model as? LogListTableModel)?.searchResult ?: SearchResult.EMPTY
+    val candidateLines = candidateLinesProvider()
     lastSearchJob = scope.async(Dispatchers.Default) {
-      val pattern = searchText.text
       val filterResult = if (pattern.isNotBlank()) runCatching {
         Filter(
           "search",
           pattern,
           Color.RED,
           LogLevel.DEBUG,
-          matchCaseOption.isSelected
+          matchCase
         )
       }.onFailure { Logger.error("create filter error", it) } else null
 
-      val matchedEntries = mutableListOf<Int>()
-      val updatedRow = mutableListOf<Int>()
-      for (index in 0 until table.model.rowCount) {
-        val entry = table.model.getValueAt(index, 0) as LogEntry
-        if (filterResult?.getOrNull()?.appliesTo(entry) == true) {
-          matchedEntries += index
-          updatedRow += index
-          entry.searchFilter = filterResult.getOrNull()
-        } else {
-          if (entry.searchFilter != null) {
-            updatedRow += index
-            entry.searchFilter = null
-          }
+      val filter = filterResult?.getOrNull()
+      val result = if (filter != null) {
+        val job = coroutineContext[Job]
+        SearchResult.search(entries, filter, previousResult, candidateLines, { job?.isActive == false }) { firstMatch ->
+          // Do not wait for the whole table to be searched to show the first result
+          if (scrollToFirstMatch) launch(Dispatchers.Main) { viewport.scrollToVisible(firstMatch) }
         }
+      } else {
+        SearchResult.EMPTY
       }
 
       withContext(Dispatchers.Main) {
         searchResult.text =
-          if (filterResult?.isFailure == true) " bad pattern " else "  ${matchedEntries.size} results  "
-        if (matchedEntries.isNotEmpty()) {
-          SwingUtils.scrollToVisible(table, matchedEntries[0])
-        }
-        updatedRow.forEach {
-          (table.model as AbstractTableModel).fireTableCellUpdated(it, 0)
+          if (filterResult?.isFailure == true) " bad pattern " else "  ${result.size()} results  "
+        // The search result is kept by the model and read when the rows are painted, so a single repaint
+        // updates all of them
+        // unless the logs were replaced while they were searched
+        if (model is LogListTableModel && model.logs === entries) {
+          model.searchResult = result
         }
+        viewport.repaint()
       }
-      matchedEntries
+      result
     }
   }
 
@@ -188,7 +217,7 @@ class SearchableTable @JvmOverloads constructor(
     searchOptionPanel.isVisible = false
     searchText.text = ""
     matchCaseOption.isSelected = false
-    table.requestFocus()
+    viewport.requestFocus()
     revalidate()
   }
 
@@ -220,14 +249,26 @@ class SearchableTable @JvmOverloads constructor(
     )
 
     add(
-      JScrollPane(table),
+      header,
       GBConstraintsBuilder()
         .withGridx(0)
         .withGridy(2)
+        .withWeightx(1.0)
+        .withFill(GridBagConstraints.HORIZONTAL)
+        .build()
+    )
+
+    add(
+      viewport,
+      GBConstraintsBuilder()
+        .withGridx(0)
+        .withGridy(3)
         .withWeightx(2.0)
         .withWeighty(1.0)
         .withFill(GridBagConstraints.BOTH)
         .build()
     )
   }
+
+  private class SearchRequest(val scrollToFirstMatch: Boolean)
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+package com.tibagni.logviewer
+
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import org.mockito.Mockito.*
+import java.util.concurrent.AbstractExecutorService
+import java.util.concurrent.CancellationException
+import java.util.concurrent.TimeUnit
+
+class AsyncPresenterTests {
+  private class TestPresenter(view: AsyncPresenterView) : AsyncPresenter(view) {
+    fun runAsync(key: String, task: (ProgressReporter) -> Unit) = doAsync(key) { task(it) }
+  }
+
+  private lateinit var mockView: AsyncPresenter.AsyncPresenterView
+  private lateinit var presenter: TestPresenter
+  private val pendingTasks = mutableListOf<Runnable>()
+
+  @Before
+  fun setUp() {
+    mockView = mock(AsyncPresenter.AsyncPresenterView::class.java)
+    presenter = TestPresenter(mockView)
+    // Keep the tasks, so we can decide when they run
+    presenter.setBgExecutorService(object : AbstractExecutorService() {
+      override fun execute(command: Runnable) {
+        pendingTasks.add(command)
+      }
+
+      override fun shutdown() {}
+      override fun shutdownNow() = mutableListOf<Runnable>()
+      override fun isShutdown() = false
+      override fun isTerminated() = false
+      override fun awaitTermination(timeout: Long, unit: TimeUnit) = true
+    })
+    presenter.setUiExecutor { it.run() }
+  }
+
+  private fun runPendingTasks() {
+    while (pendingTasks.isNotEmpty()) {
+      pendingTasks.removeAt(0).run()
+    }
+  }
+
+  @Test
+  fun testOnlyLatestTaskWithSameKeyRuns() {
+    val executed = mutableListOf<String>()
+    presenter.runAsync("apply-filters") { executed.add("filters 1") }
+    presenter.runAsync("load-logs") { executed.add("logs") }
+    presenter.runAsync("apply-filters") { executed.add("filters 2") }
+    presenter.runAsync("apply-filters") { executed.add("filters 3") }
+
+    runPendingTasks()
+
+    assertEquals(listOf("logs", "filters 3"), executed)
+  }
+
+  @Test
+  fun testRunningTaskIsCancelled() {
+    var wasCancelled = false
+    presenter.runAsync("apply-filters") {
+      it.onProgress(10, "first")
+      assertFalse(it.isCancelled)
+
+      // A newer task is submitted while this one is running
+      presenter.runAsync("apply-filters") { reporter -> reporter.onProgress(50, "second") }
+      wasCancelled = it.isCancelled
+      it.onProgress(20, "first")
+      throw CancellationException()
+    }
+
+    runPendingTasks()
+
+    assertTrue(wasCancelled)
+    verify(mockView).showLoadingProgress(10, "first")
+    verify(mockView, never()).showLoadingProgress(20, "first")
+    verify(mockView).showLoadingProgress(50, "second")
+  }
+
+  @Test
+  fun testFinishedTaskDoesNotAffectNewOnes() {
+    val executed = mutableListOf<String>()
+    presenter.runAsync("search") { executed.add("search") }
+    presenter.runAsync("search") { executed.add("search again") }
+    runPendingTasks()
+    presenter.runAsync("search") { executed.add("another search") }
+    runPendingTasks()
+
+    assertEquals(listOf("search again", "another search"), executed)
+  }
+}
@@ -18,6 +18,7 @@ import org.mockito.MockitoAnnotations
 import java.awt.Color
 import java.io.File
 import java.nio.charset.StandardCharsets
+import java.util.concurrent.ExecutorService
 
 class LogViewerPresenterTests {
   @Mock
@@ -790,6 +791,71 @@ class LogViewerPresenterTests {
     verify(view, times(1)).showNavigationPrevOver()
   }
 
+  @Test
+  fun testNavigateAppliedFilterPositions() {
+    val timestamp = LogTimestamp(10, 12, 22, 32, 50, 264)
+    `when`(mockLogsRepository.currentlyOpenedLogs).thenReturn(
+      listOf(
+        LogEntry("10-12 22:32:50.264  2646  2664 I test  : ABCDeF log", LogLevel.INFO, timestamp, "main"),
+        LogEntry("10-12 22:32:50.264  2646  2664 I test  : Other log", LogLevel.INFO, timestamp, "main"),
+        LogEntry("10-12 22:32:50.264  2646  2664 I test  : ABCDeF log", LogLevel.INFO, timestamp, "radio"),
+        LogEntry("10-12 22:32:50.264  2646  2664 I test  : Unrelated", LogLevel.INFO, timestamp, "main"),
+        LogEntry("10-12 22:32:50.264  2646  2664 I test  : ABCDeF log", LogLevel.INFO, timestamp, "main"),
+        LogEntry("10-12 22:32:50.264  2646  2664 I test  : Other log", LogLevel.INFO, timestamp, "radio")
+      )
+    )
+
+    // The first filter colors all its entries, but the second one must still find them
+    val filters = listOf(
+      Filter("abc", "ABCDeF", Color.black, LogLevel.VERBOSE),
+      Filter("log", "log", Color.black, LogLevel.VERBOSE)
+    )
+    filters.forEach { it.isApplied = true }
+    `when`(mockFiltersRepository.currentlyOpenedFilters).thenReturn(mapOf("Test" to filters))
+    presenter.setAvailableStreamsForTesting(setOf(LogStream.MAIN, LogStream.RADIO), true)
+
+    presenter.applyFilters()
+
+    // Filtered logs: ABCDeF(main), Other(main), ABCDeF(radio), ABCDeF(main), Other(radio)
+    val abc = filters[0]
+    val log = filters[1]
+    assertEquals(0, presenter.getNextFilteredLogForFilter(abc, -1))
+    assertEquals(2, presenter.getNextFilteredLogForFilter(abc, 0))
+    assertEquals(3, presenter.getNextFilteredLogForFilter(abc, 2))
+    assertEquals(4, presenter.getNextFilteredLogForFilter(log, 3))
+    verify(view, never()).showNavigationNextOver()
+    assertEquals(0, presenter.getNextFilteredLogForFilter(abc, 3))
+    verify(view, times(1)).showNavigationNextOver()
+
+    assertEquals(3, presenter.getPrevFilteredLogForFilter(abc, -1))
+    assertEquals(0, presenter.getPrevFilteredLogForFilter(abc, 2))
+    verify(view, never()).showNavigationPrevOver()
+    assertEquals(3, presenter.getPrevFilteredLogForFilter(abc, 0))
+    verify(view, times(1)).showNavigationPrevOver()
+
+    // Filtered logs: ABCDeF(main), Other(main), ABCDeF(main)
+    presenter.setStreamAllowed(LogStream.RADIO, false)
+    assertEquals(2, presenter.getNextFilteredLogForFilter(abc, 0))
+    assertEquals(1, presenter.getNextFilteredLogForFilter(log, 0))
+    assertEquals(0, presenter.getPrevFilteredLogForFilter(abc, 2))
+  }
+
+  @Test
+  fun testFilteredLogPosition() {
+    val timestamp = LogTimestamp(10, 12, 22, 32, 50, 264)
+    val entries = (0 until 6).map {
+      LogEntry("10-12 22:32:50.264  2646  2664 I test  : log $it", LogLevel.INFO, timestamp).apply { index = it }
+    }
+    presenter.setFilteredLogsForTesting(arrayOf(entries[1], entries[2], entries[4]), true)
+
+    assertEquals(0, presenter.getFilteredLogPosition(entries[1]))
+    assertEquals(1, presenter.getFilteredLogPosition(entries[2]))
+    assertEquals(2, presenter.getFilteredLogPosition(entries[4]))
+    assertEquals(-1, presenter.getFilteredLogPosition(entries[0]))
+    assertEquals(-1, presenter.getFilteredLogPosition(entries[3]))
+    assertEquals(-1, presenter.getFilteredLogPosition(entries[5]))
+  }
+
   @Test
   fun testGotoTimestampInvalidTimestamp() {
     presenter.goToTimestamp("invalid")
@@ -1036,6 +1102,54 @@ class LogViewerPresenterTests {
     verify(view).showLogLocationAtSearchedTimestamp(4, -1)
   }
 
+  @Test
+  fun testGotoTimestampAfterVisibleLogsChange() {
+    val allLogs = (0 until 10).map {
+      LogEntry("Log$it", LogLevel.INFO, LogTimestamp(10, 12, 22, 32, 50 + it, 0))
+    }
+    `when`(mockLogsRepository.firstVisibleLogIndex).thenReturn(0)
+    `when`(mockLogsRepository.lastVisibleLogIndex).thenReturn(9)
+    `when`(mockLogsRepository.currentlyOpenedLogs).thenReturn(allLogs)
+    presenter.goToTimestamp("10-12 22:32:55.000")
+    verify(view).showLogLocationAtSearchedTimestamp(5, -1)
+
+    // The index of the previous logs is not used for the new ones
+    `when`(mockLogsRepository.currentlyOpenedLogs).thenReturn(allLogs.subList(4, 10))
+    presenter.ignoreLogsBefore(4)
+    presenter.goToTimestamp("10-12 22:32:55.000")
+    verify(view).showLogLocationAtSearchedTimestamp(1, -1)
+  }
+
+  @Test
+  fun testTimestampIndicesAreBuiltInBackground() {
+    // Background tasks only run when the test runs them
+    val backgroundTasks = mutableListOf<Runnable>()
+    val bgExecutor = mock(ExecutorService::class.java)
+    doAnswer { backgroundTasks.add(it.arguments[0] as Runnable) }.`when`(bgExecutor).execute(anyOrNull())
+    presenter.setBgExecutorService(bgExecutor)
+
+    val allLogs = (0 until 10).map {
+      LogEntry("Log$it", LogLevel.INFO, LogTimestamp(10, 12, 22, 32, 50 + it, 0), if (it % 2 == 0) "main" else "radio")
+    }
+    `when`(mockLogsRepository.currentlyOpenedLogs).thenReturn(allLogs)
+    presenter.setFilteredLogsForTesting(allLogs.toTypedArray())
+    presenter.setAvailableStreamsForTesting(setOf(LogStream.MAIN, LogStream.RADIO), true)
+
+    // The filtered logs are shown before their index is built
+    presenter.setStreamAllowed(LogStream.RADIO, false)
+    verify(view).showFilteredLogs(anyOrNull())
+    assertEquals(1, backgroundTasks.size)
+
+    // Going to a timestamp waits for the pending indices instead of building them again
+    presenter.goToTimestamp("10-12 22:32:56.000")
+    presenter.goToTimestamp("10-12 22:32:56.000")
+    assertEquals(2, backgroundTasks.size)
+    verify(view, never()).showLogLocationAtSearchedTimestamp(anyInt(), anyInt())
+
+    backgroundTasks.forEach { it.run() }
+    verify(view, times(2)).showLogLocationAtSearchedTimestamp(6, 3)
+  }
+
   @Test
   fun testGotoTimestampNoLogs() {
     presenter.goToTimestamp("10-12 22:32:51.032")
@@ -114,4 +114,19 @@ class MyLogsRepositoryTests {
     assertEquals(4, myLogsRepository.logs.size)
     assertEquals(listOf(log1, log2, log3, log4), myLogsRepository.logs)
   }
-}
\ No newline at end of file
+
+  @Test
+  fun testLogsAreNotChangedAfterReturned() {
+    val log1 = LogEntry("48012 09-04 13:34:22.530 Log line 1", LogLevel.DEBUG, LogTimestamp(9, 4, 13, 34, 22, 530))
+    val log2 = LogEntry("48012 09-04 13:34:23.210 Log line 2", LogLevel.DEBUG, LogTimestamp(9, 4, 13, 34, 23, 210))
+
+    myLogsRepository.addLogEntries(listOf(log1))
+    val logs = myLogsRepository.logs
+    myLogsRepository.addLogEntries(listOf(log2))
+    myLogsRepository.removeLogEntries(listOf(log1))
+
+    // The views show the returned lists without copying them
+    assertEquals(listOf(log1), logs)
+    assertEquals(listOf(log2), myLogsRepository.logs)
+  }
+}
@@ -0,0 +1,94 @@
+package com.tibagni.logviewer.filter
+
+import com.tibagni.logviewer.ProgressReporter
+import com.tibagni.logviewer.log.LogEntry
+import com.tibagni.logviewer.log.LogLevel
+import com.tibagni.logviewer.log.LogTimestamp
+import org.junit.Assert.*
+import org.junit.Test
+import org.mockito.Mockito.mock
+import java.awt.Color
+import java.util.*
+
+class AhoCorasickTests {
+
+  private fun findAll(automaton: AhoCorasick, text: String, patterns: Int): Set<Int>? {
+    val marks = IntArray(patterns)
+    if (!automaton.findAll(text, marks, 1)) return null
+
+    return (0 until patterns).filter { marks[it] == 1 }.toSet()
+  }
+
+  @Test
+  fun testOverlappingPatterns() {
+    val automaton = AhoCorasick.Builder(false)
+      .add("he", 0)
+      .add("she", 1)
+      .add("his", 2)
+      .add("hers", 3)
+      .build()
+
+    assertEquals(setOf(0, 1, 3), findAll(automaton, "ushers", 4))
+    assertEquals(setOf(2), findAll(automaton, "this", 4))
+    assertEquals(emptySet<Int>(), findAll(automaton, "HERS", 4))
+    assertEquals(emptySet<Int>(), findAll(automaton, "", 4))
+  }
+
+  @Test
+  fun testCaseInsensitive() {
+    val automaton = AhoCorasick.Builder(true)
+      .add("ActivityManager", 0)
+      .add("ação", 1)
+      .build()
+
+    assertEquals(setOf(0), findAll(automaton, "I ACTIVITYMANAGER: started", 2))
+    assertEquals(setOf(1), findAll(automaton, "AÇÃO", 2))
+  }
+
+  @Test
+  fun testCharsThatCannotBeFolded() {
+    assertTrue(AhoCorasick.canFold("simple text"))
+    assertFalse(AhoCorasick.canFold("İstanbul"))
+    assertFalse(AhoCorasick.canFold("Σ"))
+    assertFalse(AhoCorasick.canFold("𐐀"))
+
+    val automaton = AhoCorasick.Builder(true).add("text", 0).build()
+    assertNull(findAll(automaton, "text Σ", 1))
+  }
+
+  @Test
+  fun testSameResultAsFilteringOneByOne() {
+    val random = Random(7)
+    val words = listOf("Activity", "activity", "MANAGER", "wifi", "Wifi", "Σigma", "σ", "ção", "Ç", "tive",
+      "ity", "a")
+    val filters = listOf(
+      Filter("f0", "activity", Color.RED, LogLevel.VERBOSE),
+      Filter("f1", "Activity", Color.RED, LogLevel.VERBOSE, true),
+      Filter("f2", "tivity man", Color.RED, LogLevel.INFO),
+      Filter("f3", "wifi", Color.RED, LogLevel.VERBOSE, true),
+      Filter("f4", "σ", Color.RED, LogLevel.VERBOSE),
+      Filter("f5", "ÇÃO", Color.RED, LogLevel.VERBOSE),
+      Filter("f6", "Σigma", Color.RED, LogLevel.VERBOSE),
+      Filter("f7", "Act.*ager", Color.RED, LogLevel.VERBOSE),
+      Filter("f8", "ity", Color.RED, LogLevel.ERROR)
+    ).toTypedArray()
+
+    val input = (0 until 2000).map {
+      val text = (0 until random.nextInt(6)).joinToString(" ") { words[random.nextInt(words.size)] }
+      // Unique timestamps, so the filtered result order is deterministic
+      LogEntry(text, LogLevel.values()[random.nextInt(LogLevel.values().size)], LogTimestamp(1, 1, 0, 0, 0, it))
+    }
+
+    val filtered = Filters.applyMultipleFilters(input, filters, mock(ProgressReporter::class.java))
+    val counts = filters.map { it.temporaryInfo.totalLinesFound }
+
+    val expectedFiltered = input.filter { entry -> filters.any { it.appliesTo(entry) } }
+    assertEquals(expectedFiltered, filtered)
+    expectedFiltered.forEach { entry ->
+      assertSame(filters.first { it.appliesTo(entry) }, entry.appliedFilter)
+    }
+    filters.forEachIndexed { i, filter ->
+      assertEquals(filter.name, input.count { filter.appliesTo(it) }, counts[i])
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package com.tibagni.logviewer.filter
+
+import com.tibagni.logviewer.ProgressReporter
+import com.tibagni.logviewer.log.LogEntry
+import com.tibagni.logviewer.log.LogLevel
+import com.tibagni.logviewer.log.LogTimestamp
+import org.junit.Assert.*
+import org.junit.Test
+import org.mockito.Mockito.mock
+import java.awt.Color
+
+class FilterMatchCacheTests {
+  private val input = (0 until 150).map {
+    val text = when (it % 3) {
+      0 -> "ActivityManager: Start proc $it"
+      1 -> "WifiStateMachine: state=$it"
+      else -> "ActivityManager: ANR in $it"
+    }
+    LogEntry(text, if (it % 2 == 0) LogLevel.DEBUG else LogLevel.ERROR, LogTimestamp(1, 1, 0, 0, 0, it), "main")
+  }
+
+  private fun apply(filters: Array<Filter>, cache: FilterMatchCache) =
+    Filters.applyFilters(input, filters, cache, mock(ProgressReporter::class.java)).filteredLogs
+
+  @Test
+  fun testSameResultAsWithoutCache() {
+    val filters = arrayOf(
+      Filter("anr", "ANR in \\d+", Color.RED, LogLevel.VERBOSE),
+      Filter("am", "ActivityManager", Color.BLUE, LogLevel.ERROR),
+      Filter("wifi", "wifistatemachine", Color.GREEN, LogLevel.VERBOSE)
+    )
+    val cache = FilterMatchCache()
+
+    val expected = Filters.applyMultipleFilters(input, filters, mock(ProgressReporter::class.java))
+    val expectedFilters = expected.map { it.appliedFilter }
+    val expectedCounts = filters.map { it.temporaryInfo.totalLinesFound }
+
+    // Once to fill the cache and then once using it
+    repeat(2) {
+      val filtered = apply(filters, cache)
+      assertEquals(expected, filtered)
+      assertEquals(expectedFilters, filtered.map { it.appliedFilter })
+      assertEquals(expectedCounts, filters.map { it.temporaryInfo.totalLinesFound })
+    }
+    assertEquals(3, cache.sizeForTesting())
+  }
+
+  @Test
+  fun testReorderAndColorChangesReuseTheCache() {
+    val anr = Filter("anr", "ANR in", Color.RED, LogLevel.VERBOSE)
+    val am = Filter("am", "ActivityManager", Color.BLUE, LogLevel.VERBOSE)
+    val cache = FilterMatchCache()
+
+    apply(arrayOf(anr, am), cache)
+    assertEquals(2, cache.sizeForTesting())
+
+    am.updateFilter("am", "ActivityManager", Color.YELLOW, LogLevel.VERBOSE, false)
+    val filtered = apply(arrayOf(am, anr), cache)
+    assertEquals(2, cache.sizeForTesting())
+    assertEquals(100, filtered.size)
+    assertTrue(filtered.all { it.appliedFilter === am })
+    assertEquals(100, am.temporaryInfo.totalLinesFound)
+    assertEquals(50, anr.temporaryInfo.totalLinesFound)
+  }
+
+  @Test
+  fun testEditedFiltersAreCheckedAgain() {
+    val am = Filter("am", "ActivityManager", Color.BLUE, LogLevel.VERBOSE)
+    val cache = FilterMatchCache()
+
+    assertEquals(100, apply(arrayOf(am), cache).size)
+
+    am.updateFilter("am", "ActivityManager", Color.BLUE, LogLevel.ERROR, false)
+    assertEquals(50, apply(arrayOf(am), cache).size)
+
+    am.updateFilter("am", "activitymanager", Color.BLUE, LogLevel.ERROR, true)
+    assertEquals(0, apply(arrayOf(am), cache).size)
+    assertEquals(3, cache.sizeForTesting())
+  }
+}
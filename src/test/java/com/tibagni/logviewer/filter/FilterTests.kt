@@ -8,6 +8,7 @@ import org.junit.Assert.*
 import org.junit.Test
 import org.mockito.Mockito.mock
 import java.awt.Color
+import java.util.concurrent.CancellationException
 
 class FilterTests {
   @Test
@@ -405,4 +406,71 @@ class FilterTests {
     assertEquals(filter, filterCopy)
     assertNotSame(filter, filterCopy)
   }
+
+  @Test
+  fun testNarrowerFilters() {
+    val activ = Filter("name", "Activ", Color.WHITE, LogLevel.VERBOSE)
+
+    assertTrue(Filter("name", "activity", Color.WHITE, LogLevel.VERBOSE).isNarrowerThan(activ))
+    assertTrue(Filter("name", "Activity", Color.WHITE, LogLevel.ERROR).isNarrowerThan(activ))
+    assertTrue(activ.isNarrowerThan(activ))
+    assertFalse(activ.isNarrowerThan(Filter("name", "Activity", Color.WHITE, LogLevel.VERBOSE)))
+    assertFalse(Filter("name", "Activity", Color.WHITE, LogLevel.VERBOSE, true).isNarrowerThan(activ))
+    assertFalse(Filter("name", "Other", Color.WHITE, LogLevel.VERBOSE).isNarrowerThan(activ))
+    assertFalse(Filter("name", "Activ.*y", Color.WHITE, LogLevel.VERBOSE).isNarrowerThan(activ))
+    assertFalse(activ.isNarrowerThan(Filter("name", "Acti|x", Color.WHITE, LogLevel.VERBOSE)))
+    assertFalse(activ.isNarrowerThan(Filter("name", "Activ", Color.WHITE, LogLevel.ERROR)))
+  }
+
+  @Test
+  fun testSerializeQueryFilter() {
+    val filter = Filter("Query", "tag:A level>=W", Color(0, 0, 0), LogLevel.VERBOSE, false, true)
+
+    val serialized = filter.serializeFilter()
+    val deserialized = Filter.createFromString(serialized)
+
+    assertEquals("Query,dGFnOkEgbGV2ZWw+PVc=,2,0:0:0,VERBOSE,QUERY", serialized)
+    assertTrue(deserialized.isQueryFilter)
+    assertEquals("tag:A level>=W", deserialized.patternString)
+    assertEquals(filter, deserialized)
+    assertNotEquals(filter, Filter("Query", "tag:A level>=W", Color(0, 0, 0), LogLevel.VERBOSE))
+  }
+
+  @Test(expected = FilterException::class)
+  fun testInvalidQueryFilter() {
+    Filter("Query", "tag:A (level>=W", Color.WHITE, LogLevel.VERBOSE, false, true)
+  }
+
+  @Test
+  fun testApplyQueryFilter() {
+    val filters = arrayOf(
+      Filter("name", "Log line -text:\"2\" level>=I", Color.WHITE, LogLevel.VERBOSE, false, true),
+      Filter("name", "other", Color.WHITE, LogLevel.VERBOSE)
+    )
+    val input = listOf(
+      LogEntry("Log line 1", LogLevel.DEBUG, null),
+      LogEntry("Log line 2", LogLevel.INFO, null),
+      LogEntry("Log line 3", LogLevel.INFO, null),
+      LogEntry("Other line", LogLevel.DEBUG, null),
+      LogEntry("Log line 4", LogLevel.ERROR, null)
+    )
+
+    val filtered = Filters.applyMultipleFilters(input, filters, mock(ProgressReporter::class.java))
+
+    assertEquals(listOf("Log line 3", "Other line", "Log line 4"), filtered.map { it.logText })
+    // Negated texts are not highlighted
+    assertEquals(listOf("\\QLog\\E", "\\Qline\\E"), filters[0].highlightPatterns.map { it.pattern() })
+  }
+
+  @Test(expected = CancellationException::class)
+  fun testApplyFiltersCancelled() {
+    val filter = Filter("name", "Log line", Color.WHITE, LogLevel.VERBOSE)
+    val input = listOf(LogEntry("Log line 1", LogLevel.INFO, null))
+    val cancelledReporter = object : ProgressReporter {
+      override fun onProgress(progress: Int, description: String) {}
+      override fun isCancelled() = true
+    }
+
+    Filters.applyMultipleFilters(input, arrayOf(filter), cancelledReporter)
+  }
 }
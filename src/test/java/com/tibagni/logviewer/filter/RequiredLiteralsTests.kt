@@ -0,0 +1,91 @@
+package com.tibagni.logviewer.filter
+
+import com.tibagni.logviewer.log.LogLevel
+import org.junit.Assert.*
+import org.junit.Test
+import java.awt.Color
+import java.util.*
+import java.util.regex.Pattern
+
+class RequiredLiteralsTests {
+
+  private fun literals(regex: String, caseSensitive: Boolean = true): List<String> {
+    val flags = if (caseSensitive) 0 else Pattern.CASE_INSENSITIVE
+    return RequiredLiterals.of(regex, flags).literalsForTesting.toList()
+  }
+
+  @Test
+  fun testExtractLiterals() {
+    assertEquals(listOf("ActivityManager", "ANR in "), literals("ActivityManager.*ANR in (\\w+)"))
+    assertEquals(listOf("WifiStateMachine: ", "state="), literals("WifiStateMachine: .*state=\\d+"))
+    assertEquals(listOf("abc"), literals("^abc$"))
+    assertEquals(listOf("a.b"), literals("a\\.b"))
+    assertEquals(listOf("a(b)*"), literals("\\Qa(b)*\\E"))
+    assertEquals(listOf("tag", "end"), literals("tag[:=]{1,2}(?:value|other)end"))
+  }
+
+  @Test
+  fun testQuantifiedChars() {
+    assertEquals(listOf("ab", "d"), literals("abc?d"))
+    assertEquals(listOf("ab", "d"), literals("abc*d"))
+    assertEquals(listOf("ab", "d"), literals("abc{0,3}d"))
+    assertEquals(listOf("abc", "d"), literals("abc+d"))
+    assertEquals(listOf("abc", "de"), literals("abc{2}de"))
+    assertEquals(listOf("ab", "d"), literals("abc??d"))
+    assertEquals(listOf("a", "b"), literals("a😀?b"))
+  }
+
+  @Test
+  fun testCaseInsensitiveLiterals() {
+    assertEquals(listOf("activitymanager"), literals("ActivityManager.*", false))
+  }
+
+  @Test
+  fun testPatternsThatAreNotUnderstood() {
+    assertEquals(emptyList<String>(), literals("abc|def"))
+    assertEquals(emptyList<String>(), literals("(?i)abc"))
+    assertEquals(emptyList<String>(), literals("abc(?i:def)"))
+    assertEquals(emptyList<String>(), literals("(a)\\1"))
+    assertEquals(emptyList<String>(), literals("\\x41bc"))
+    assertEquals(emptyList<String>(), literals(".*"))
+    assertEquals(emptyList<String>(), RequiredLiterals.of("abc", Pattern.COMMENTS).literalsForTesting.toList())
+  }
+
+  @Test
+  fun testMayMatch() {
+    val required = RequiredLiterals.of("ActivityManager.*ANR in (\\w+)", Pattern.CASE_INSENSITIVE)
+    assertTrue(required.mayMatch("E ACTIVITYMANAGER: anr IN com.app"))
+    assertTrue(required.mayMatch("ActivityManager ANR in app"))
+    assertFalse(required.mayMatch("E ActivityManager: Start proc"))
+    assertFalse(required.mayMatch("ANR in com.app"))
+  }
+
+  @Test
+  fun testSameResultAsRegex() {
+    val random = Random(9)
+    val pieces = listOf("a", "b", "B", "c", "ab", "Tag", ":", " ", ".", "\\.", ".*", "\\d+", "\\w", "[a-c]", "[]x]",
+      "[^b]", "?", "*", "+", "{2}", "{0,1}", "(ab)", "(?:b|c)", "(?=a)", "|", "^", "$", "\\Qa.\\E", "ç",
+      "Ç", "σ", "k", "s", "i", "\\s", "\\b", "\\p{L}", "x{1,}?")
+    val words = listOf("a", "b", "B", "A", "c", "ab", "tag", "TAG", ":", " ", ".", "1", "22", "x", "ç",
+      "Ç", "σ", "Σ", "K", "K", "ſ", "S", "İ", "I", "ı", "😀")
+
+    var checked = 0
+    while (checked < 300) {
+      val regex = (0 until 1 + random.nextInt(6)).joinToString("") { pieces[random.nextInt(pieces.size)] }
+      val caseSensitive = random.nextBoolean()
+      val filter = try {
+        Filter("name", regex, Color.RED, LogLevel.VERBOSE, caseSensitive)
+      } catch (e: FilterException) {
+        continue
+      }
+      if (filter.isSimpleFilter) continue
+
+      val pattern = Pattern.compile(regex, if (caseSensitive) 0 else Pattern.CASE_INSENSITIVE)
+      repeat(200) {
+        val line = (0 until random.nextInt(8)).joinToString("") { words[random.nextInt(words.size)] }
+        assertEquals("'$regex' on '$line'", pattern.matcher(line).find(), filter.matches(line))
+      }
+      checked++
+    }
+  }
+}
@@ -0,0 +1,197 @@
+package com.tibagni.logviewer.filter.query
+
+import com.tibagni.logviewer.filter.FilterException
+import com.tibagni.logviewer.log.LogEntry
+import com.tibagni.logviewer.log.LogLevel
+import com.tibagni.logviewer.log.LogStore
+import com.tibagni.logviewer.log.LogStream
+import com.tibagni.logviewer.log.LogTimestamp
+import org.junit.Assert.*
+import org.junit.Test
+
+class FilterQueryTests {
+  private val store = LogStore.Builder(6).apply {
+    addAll(LogStore.Chunk(LogStream.MAIN).apply {
+      add("Wifi disconnected", LogLevel.WARNING, LogTimestamp.pack(1, 1, 10, 1, 0, 0), 100, 101, "WifiService")
+      add("Wifi scan started", LogLevel.DEBUG, LogTimestamp.pack(1, 1, 10, 2, 0, 0), 100, 102, "WifiService")
+      add("Start proc 200", LogLevel.INFO, LogTimestamp.pack(1, 1, 10, 5, 59, 999), 300, 300, "ActivityManager")
+      add("ANR in com.app", LogLevel.ERROR, LogTimestamp.pack(1, 2, 10, 6, 0, 0), 300, 301, "ActivityManager")
+      add("No header", LogLevel.VERBOSE, LogStore.NO_TIMESTAMP)
+    })
+    addAll(LogStore.Chunk(LogStream.SYSTEM).apply {
+      add("Wifi connected", LogLevel.INFO, LogTimestamp.pack(1, 1, 11, 0, 0, 0), 100, 101, "WifiService")
+    })
+  }.build()
+
+  private fun matching(query: String, caseSensitive: Boolean = false): List<Int> {
+    val parsed = FilterQuery.parse(query, caseSensitive)
+    return store.indices.filter { parsed.matches(store[it]) }
+  }
+
+  private fun assertInvalid(query: String) {
+    try {
+      FilterQuery.parse(query, false)
+      fail("Query should be invalid: $query")
+    } catch (e: FilterException) {
+      // Expected
+    }
+  }
+
+  @Test
+  fun testTerms() {
+    assertEquals(listOf(0, 1, 5), matching("tag:WifiService"))
+    assertEquals(listOf(0, 1, 5), matching("pid:100"))
+    assertEquals(listOf(0, 5), matching("tid:101"))
+    assertEquals(listOf(0, 3), matching("level:W"))
+    assertEquals(listOf(0, 3), matching("level>=warning"))
+    assertEquals(listOf(3), matching("level>W"))
+    assertEquals(listOf(1, 4), matching("level<I"))
+    assertEquals(listOf(2, 5), matching("level=I"))
+    assertEquals(listOf(5), matching("stream:system"))
+    assertEquals(listOf(0, 5), matching("text:connected"))
+    assertEquals(listOf(0, 5), matching("connected"))
+    assertEquals(listOf(2, 3), matching("regex:\"(proc|ANR) \\\\w+\""))
+  }
+
+  @Test
+  fun testCaseSensitivity() {
+    assertEquals(listOf(0, 1, 5), matching("WIFI"))
+    assertEquals(listOf<Int>(), matching("WIFI", true))
+    assertEquals(listOf(0, 1, 5), matching("Wifi", true))
+    // Only the text terms follow the case sensitivity
+    assertEquals(listOf<Int>(), matching("tag:wifiservice"))
+  }
+
+  @Test
+  fun testOperators() {
+    assertEquals(listOf(0), matching("tag:WifiService level>=W"))
+    assertEquals(listOf(0), matching("tag:WifiService AND level>=W"))
+    assertEquals(listOf(0), matching("tag:WifiService & level>=W"))
+    assertEquals(listOf(0, 1, 3, 5), matching("tag:WifiService OR level:E"))
+    assertEquals(listOf(0, 1, 3, 5), matching("tag:WifiService | level:E"))
+    assertEquals(listOf(1, 5), matching("tag:WifiService -text:disconnected"))
+    assertEquals(listOf(1, 5), matching("tag:WifiService NOT disconnected"))
+    assertEquals(listOf(1, 5), matching("tag:WifiService !disconnected"))
+  }
+
+  @Test
+  fun testPrecedence() {
+    // AND binds tighter than OR
+    assertEquals(listOf(0, 3), matching("tag:WifiService level:W OR level:E"))
+    assertEquals(listOf(0, 3), matching("level:E OR tag:WifiService level:W"))
+    assertEquals(listOf(0), matching("tag:WifiService (level:W OR level:E)"))
+    assertEquals(listOf(2, 4), matching("-(tag:WifiService OR level:E)"))
+  }
+
+  @Test
+  fun testQuotedValues() {
+    assertEquals(listOf(1), matching("text:\"scan started\""))
+    assertEquals(listOf(3), matching("\"ANR in\""))
+    assertEquals(listOf<Int>(), matching("text:\"\\\"quoted\\\"\""))
+  }
+
+  @Test
+  fun testUnknownFieldIsText() {
+    val parsed = FilterQuery.parse("ActivityManager: Start", false)
+
+    assertFalse(parsed.matches(store[2]))
+    assertTrue(parsed.matches(LogEntry("I/ActivityManager: Start proc", LogLevel.INFO, null)))
+  }
+
+  @Test
+  fun testTimeRange() {
+    // The end of the range includes everything up to the precision it was written with
+    assertEquals(listOf(0, 1, 2), matching("time:10:00-10:05"))
+    assertEquals(listOf(1, 2), matching("time:10:02-10:05:59"))
+    assertEquals(listOf(1), matching("time:10:02-10:05:59.998"))
+    // The fraction is in milliseconds
+    assertEquals(listOf(2), matching("time:10:05:59.9-10:05:59.9"))
+    assertEquals(listOf(2), matching("time:10:05:59.999-10:05:59.9999"))
+    assertEquals(listOf<Int>(), matching("time:10:05:59.5-10:05:59.998"))
+    // The date is ignored. Entries without timestamp never match
+    assertEquals(listOf(3, 5), matching("time:10:06-23:59"))
+    assertEquals(listOf(4), matching("-time:00:00-23:59"))
+  }
+
+  @Test
+  fun testInvalidQueries() {
+    assertInvalid("")
+    assertInvalid("tag:")
+    assertInvalid("(tag:A")
+    assertInvalid("tag:A)")
+    assertInvalid("text:\"unclosed")
+    assertInvalid("text:\"\"")
+    assertInvalid("pid:abc")
+    assertInvalid("level:X")
+    assertInvalid("level<>W")
+    assertInvalid("stream:other")
+    assertInvalid("time:10:00")
+    assertInvalid("time:10:05-10:00")
+    assertInvalid("time:10-11")
+    assertInvalid("time:24:00-24:10")
+    assertInvalid("time:10:60-11:00")
+    assertInvalid("time:10:00:60-11:00")
+    assertInvalid("regex:(")
+    assertInvalid("tag:A OR")
+  }
+
+  @Test
+  fun testErrorPosition() {
+    try {
+      FilterQuery.parse("tag:A (pid:1", false)
+      fail("Query should be invalid")
+    } catch (e: FilterException) {
+      assertEquals("Invalid query at position 13: Missing ')'", e.message)
+    }
+  }
+
+  @Test
+  fun testRequiredTextsAndHighlights() {
+    val parsed = FilterQuery.parse("tag:A text:one (two OR regex:t.o) -three", false)
+
+    assertEquals(listOf("one"), parsed.getRequiredTexts())
+    assertEquals(listOf("\\Qone\\E", "\\Qtwo\\E", "t.o"), parsed.getHighlightPatterns().map { it.pattern() })
+    assertTrue(FilterQuery.parse("tag:A level:W", false).getHighlightPatterns().isEmpty())
+  }
+
+  @Test
+  fun testHighlightPatternsOfEachTerm() {
+    // Each regex is compiled on its own, so their groups do not conflict
+    val parsed = FilterQuery.parse("regex:\"(?<id>[0-9]+)-\\\\1\" OR regex:\"(?<id>[a-z]+)=\\\\1\"", false)
+
+    assertTrue(parsed.matches(LogEntry("12-12", LogLevel.INFO, null)))
+    assertEquals(listOf("(?<id>[0-9]+)-\\1", "(?<id>[a-z]+)=\\1"), parsed.getHighlightPatterns().map { it.pattern() })
+  }
+
+  @Test
+  fun testIndexCandidates() {
+    fun candidates(query: String, input: List<LogEntry>) = FilterQuery.parse(query, false).findCandidates(input)
+      ?.let { bits -> input.indices.filter { (bits[it ushr 6] and (1L shl it)) != 0L } }
+
+    assertEquals(listOf(0, 1, 5), candidates("tag:WifiService level:W", store))
+    assertEquals(listOf(0, 1, 2, 3, 5), candidates("tag:WifiService OR pid:300", store))
+    assertEquals(listOf(2, 3), candidates("pid:300 tag:ActivityManager", store))
+    assertEquals(listOf<Int>(), candidates("pid:100 tag:ActivityManager", store))
+    assertEquals(listOf<Int>(), candidates("tag:Unknown", store))
+    // Only the entries of the range, relative to its start
+    assertEquals(listOf(0, 1), candidates("pid:300", store.subList(2, 5)))
+
+    assertNull(candidates("level:W", store))
+    assertNull(candidates("tag:WifiService OR level:E", store))
+    assertNull(candidates("-tag:WifiService", store))
+    assertNull(candidates("tag:WifiService", ArrayList(store)))
+  }
+
+  @Test
+  fun testCheapestTermsAreEvaluatedFirst() {
+    val node = QueryParser.parse("regex:a text:b tag:c level:W", false) as QueryNode.And
+    val costs = listOf(QueryNode.COLUMN_COST, QueryNode.TAG_COST, QueryNode.TEXT_COST, QueryNode.REGEX_COST)
+
+    assertEquals(costs.sum(), node.cost)
+    // The text is never read if a column predicate does not match
+    val entry = object : LogEntry("b", LogLevel.DEBUG, null) {
+      override fun getLogText(): String = throw AssertionError("Text should not be read")
+    }
+    assertFalse(node.matches(QueryNode.Row(entry)))
+  }
+}
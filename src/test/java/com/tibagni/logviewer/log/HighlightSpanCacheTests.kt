@@ -0,0 +1,67 @@
+package com.tibagni.logviewer.log
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.regex.Pattern
+
+class HighlightSpanCacheTests {
+  private val store = LogStore.Builder(2).apply {
+    addAll(LogStore.Chunk(LogStream.MAIN).apply {
+      add("Start proc 123 for activity", LogLevel.INFO, LogStore.NO_TIMESTAMP)
+      add("No match here", LogLevel.INFO, LogStore.NO_TIMESTAMP)
+    })
+  }.build()
+
+  @Test
+  fun testFindSpans() {
+    assertArrayEquals(intArrayOf(0, 5, 6, 10), HighlightSpanCache.findSpans("Start proc", Pattern.compile("\\w+")))
+    assertArrayEquals(intArrayOf(6, 10), HighlightSpanCache.findSpans("Start proc", Pattern.compile("proc")))
+    assertArrayEquals(intArrayOf(), HighlightSpanCache.findSpans("Start proc", Pattern.compile("other")))
+    // Empty matches are not highlighted
+    assertArrayEquals(intArrayOf(1, 2), HighlightSpanCache.findSpans("abc", Pattern.compile("b*")))
+  }
+
+  @Test
+  fun testFindSpansOfManyPatterns() {
+    val patterns = listOf(Pattern.compile("proc \\d"), Pattern.compile("Start"), Pattern.compile("c 12"))
+
+    // Overlapping spans are merged
+    assertArrayEquals(intArrayOf(0, 5, 6, 13), HighlightSpanCache.findSpans("Start proc 123", patterns))
+    assertArrayEquals(intArrayOf(), HighlightSpanCache.findSpans("other", patterns))
+  }
+
+  @Test
+  fun testSpansAreCached() {
+    val cache = HighlightSpanCache()
+    val pattern = Pattern.compile("\\d+")
+
+    val spans = cache.getSpans(store[0], pattern)
+    assertArrayEquals(intArrayOf(11, 14), spans)
+    // Flyweight entries of the same store row share the spans
+    assertSame(spans, cache.getSpans(store[0], pattern))
+    assertSame(HighlightSpanCache.NO_SPANS, cache.getSpans(store[1], pattern))
+    assertEquals(2, cache.sizeForTesting())
+  }
+
+  @Test
+  fun testSpansOfOtherPatterns() {
+    val cache = HighlightSpanCache()
+
+    assertArrayEquals(intArrayOf(11, 14), cache.getSpans(store[0], Pattern.compile("\\d+")))
+    // A filter that changed has a new pattern, even if the regex is the same
+    assertArrayEquals(intArrayOf(0, 5), cache.getSpans(store[0], Pattern.compile("start", Pattern.CASE_INSENSITIVE)))
+    assertArrayEquals(intArrayOf(), cache.getSpans(store[0], Pattern.compile("start")))
+    assertEquals(3, cache.sizeForTesting())
+  }
+
+  @Test
+  fun testEntriesNotStored() {
+    val cache = HighlightSpanCache()
+    val pattern = Pattern.compile("line")
+    val first = LogEntry("line 1", LogLevel.INFO, null)
+    val second = LogEntry("other line", LogLevel.INFO, null)
+
+    assertArrayEquals(intArrayOf(0, 4), cache.getSpans(first, pattern))
+    assertArrayEquals(intArrayOf(6, 10), cache.getSpans(second, pattern))
+  }
+}
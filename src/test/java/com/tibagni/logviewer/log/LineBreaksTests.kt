@@ -0,0 +1,54 @@
+package com.tibagni.logviewer.log
+
+import org.junit.Assert.*
+import org.junit.Test
+
+class LineBreaksTests {
+  @Test
+  fun testBreakLongLines() {
+    assertArrayEquals(intArrayOf(0), LineBreaks.find("", 10))
+    assertArrayEquals(intArrayOf(0), LineBreaks.find("0123456789", 10))
+    assertArrayEquals(intArrayOf(0, 10), LineBreaks.find("0123456789a", 10))
+    assertArrayEquals(intArrayOf(0, 10, 20), LineBreaks.find("012345678901234567890", 10))
+  }
+
+  @Test
+  fun testBreakAtNewLines() {
+    assertArrayEquals(intArrayOf(0, 2), LineBreaks.find("a\nb", 10))
+    assertArrayEquals(intArrayOf(0, 2, 3), LineBreaks.find("a\n\nb", 10))
+    assertArrayEquals(intArrayOf(0, 11, 21), LineBreaks.find("first line\n0123456789a", 10))
+  }
+
+  @Test
+  fun testWrapWords() {
+    // "one two " fits in the first line and "three" goes to the next one, instead of being broken
+    assertArrayEquals(intArrayOf(0, 8), LineBreaks.find("one two three", 10))
+    assertArrayEquals(intArrayOf(0, 8, 19), LineBreaks.find("one two three four five", 10))
+    assertArrayEquals(intArrayOf(0, 11, 22), LineBreaks.find("0123456789 0123456789 0123456789", 10))
+    assertArrayEquals(intArrayOf(0, 22), LineBreaks.find("0123456789 0123456789 0123456789", 25))
+  }
+
+  @Test
+  fun testWhitespaceAtTheEndOfLines() {
+    assertArrayEquals(intArrayOf(0), LineBreaks.find("0123456789   ", 10))
+    assertArrayEquals(intArrayOf(0, 13), LineBreaks.find("0123456789   a", 10))
+  }
+
+  @Test
+  fun testManyLines() {
+    val text = "x".repeat(1000)
+
+    val lineStarts = LineBreaks.find(text, 7)
+    assertEquals(143, lineStarts.size)
+    lineStarts.forEachIndexed { i, start -> assertEquals(i * 7, start) }
+  }
+
+  @Test
+  fun testExpandTabs() {
+    val text = "a\tbc\t\td\n\te"
+    val noTabs = "no tabs"
+    assertSame(noTabs, LineBreaks.expandTabs(noTabs, 8))
+    assertEquals("a   bc      d\n    e", LineBreaks.expandTabs(text, 4))
+    assertArrayEquals(intArrayOf(0, 1, 4, 5, 6, 8, 12, 13, 14, 18, 19), LineBreaks.expandedOffsets(text, 4))
+  }
+}
@@ -0,0 +1,104 @@
+package com.tibagni.logviewer.log
+
+import com.tibagni.logviewer.filter.Filter
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import java.awt.Color
+import javax.swing.event.TableModelEvent
+
+class LogListTableModelTests {
+  private lateinit var model: LogListTableModel
+  private val events = mutableListOf<TableModelEvent>()
+
+  private val logs = listOf(
+    LogEntry("Log line 1", LogLevel.INFO, null),
+    LogEntry("Log line 2", LogLevel.INFO, null),
+    LogEntry("Log line 3", LogLevel.INFO, null)
+  )
+
+  private fun search(entries: List<LogEntry>): SearchResult {
+    val filter = Filter("search", "line", Color.RED, LogLevel.DEBUG, false)
+    return SearchResult.search(entries, filter, SearchResult.EMPTY, { false }) {}
+  }
+
+  @Before
+  fun setUp() {
+    model = LogListTableModel("Logs")
+    model.addTableModelListener { events.add(it) }
+  }
+
+  @Test
+  fun testLogsAreNotCopied() {
+    val store = LogStore.Builder(3).apply {
+      addAll(LogStore.Chunk(LogStream.MAIN).apply {
+        logs.forEach { add(it.logText, it.logLevel, LogStore.NO_TIMESTAMP) }
+      })
+    }.build()
+
+    model.setLogs(store)
+
+    assertEquals(3, model.rowCount)
+    assertSame(store, (model.getValueAt(1, 0) as LogEntry).store)
+    assertEquals("Log line 3", model.lastEntry?.logText)
+  }
+
+  @Test
+  fun testShowLogs() {
+    model.setLogs(logs)
+
+    assertEquals(1, events.size)
+    assertEquals(TableModelEvent.INSERT, events[0].type)
+    assertEquals(0, events[0].firstRow)
+    assertEquals(2, events[0].lastRow)
+  }
+
+  @Test
+  fun testReplaceLogs() {
+    model.setLogs(logs)
+    model.searchResult = search(logs)
+    events.clear()
+
+    model.setLogs(logs.subList(0, 1))
+
+    // A single event for the whole change, instead of removing and inserting the rows
+    assertEquals(1, events.size)
+    assertEquals(TableModelEvent.UPDATE, events[0].type)
+    assertEquals(Int.MAX_VALUE, events[0].lastRow)
+    assertEquals(1, model.rowCount)
+    assertSame(SearchResult.EMPTY, model.searchResult)
+  }
+
+  @Test
+  fun testShowSameLogs() {
+    model.setLogs(logs)
+    model.searchResult = search(logs)
+    events.clear()
+
+    model.setLogs(logs)
+
+    // The rows are the same, only how they are shown may have changed
+    assertEquals(1, events.size)
+    assertEquals(TableModelEvent.UPDATE, events[0].type)
+    assertEquals(0, events[0].firstRow)
+    assertEquals(2, events[0].lastRow)
+    assertNotSame(SearchResult.EMPTY, model.searchResult)
+  }
+
+  @Test
+  fun testClear() {
+    model.clear()
+    assertTrue(events.isEmpty())
+
+    model.setLogs(logs)
+    events.clear()
+    model.clear()
+
+    assertEquals(1, events.size)
+    assertEquals(TableModelEvent.DELETE, events[0].type)
+    assertEquals(0, events[0].firstRow)
+    assertEquals(2, events[0].lastRow)
+    assertEquals(0, model.rowCount)
+    assertNull(model.lastEntry)
+  }
+}
@@ -0,0 +1,132 @@
+package com.tibagni.logviewer.log
+
+import com.tibagni.logviewer.filter.Filter
+import org.junit.Assert.*
+import org.junit.Test
+import java.awt.Color
+
+class LogStoreTests {
+
+  private fun buildStore(vararg entries: LogEntry): LogStore {
+    val chunk = LogStore.Chunk(LogStream.MAIN)
+    entries.forEach { chunk.add(it.logText, it.logLevel, LogStore.packTimestamp(it.timestamp)) }
+
+    return LogStore.Builder(entries.size).apply { addAll(chunk) }.build()
+  }
+
+  @Test
+  fun testStoreEntries() {
+    val store = buildStore(
+      LogEntry("Latin-1 text: ação", LogLevel.INFO, LogTimestamp(10, 12, 22, 32, 50, 264)),
+      LogEntry("UTF-16 text: 日本", LogLevel.ERROR, null),
+      LogEntry("", LogLevel.VERBOSE, LogTimestamp(1, 1, 0, 0, 0, 999999999))
+    )
+
+    assertEquals(3, store.size)
+    assertEquals("Latin-1 text: ação", store[0].logText)
+    assertEquals("UTF-16 text: 日本", store[1].logText)
+    assertEquals("", store[2].logText)
+    assertEquals(15, store[1].length)
+
+    assertEquals(LogLevel.INFO, store[0].logLevel)
+    assertEquals(LogLevel.ERROR, store[1].logLevel)
+    assertEquals(LogTimestamp(10, 12, 22, 32, 50, 264), store[0].timestamp)
+    assertNull(store[1].timestamp)
+    assertEquals(LogTimestamp(1, 1, 0, 0, 0, 999999999), store[2].timestamp)
+
+    assertEquals(LogStream.MAIN, store[2].stream)
+    assertEquals(listOf(0, 1, 2), store.map { it.index })
+  }
+
+  @Test
+  fun testFlyweightEntries() {
+    val store = buildStore(
+      LogEntry("Line 1", LogLevel.INFO, LogTimestamp(10, 12, 22, 32, 50, 264)),
+      LogEntry("Line 2", LogLevel.INFO, LogTimestamp(10, 12, 22, 32, 50, 264))
+    )
+
+    assertNotSame(store[0], store[0])
+    assertEquals(store[0], store[0])
+    assertEquals(store[0].hashCode(), store[0].hashCode())
+    assertNotEquals(store[0], store[1])
+    assertTrue(store[0] < store[1])
+
+    // Equal to a standalone entry with the same values
+    val standalone = LogEntry("Line 2", LogLevel.INFO, LogTimestamp(10, 12, 22, 32, 50, 264), "main")
+    standalone.index = 1
+    assertEquals(standalone, store[1])
+    assertEquals(standalone.hashCode(), store[1].hashCode())
+  }
+
+  @Test
+  fun testAppliedFilterIsKeptInTheStore() {
+    val store = buildStore(
+      LogEntry("Line 1", LogLevel.INFO, null),
+      LogEntry("Line 2", LogLevel.INFO, null)
+    )
+    val filter = Filter("name", "Line", Color.WHITE, LogLevel.VERBOSE)
+
+    assertNull(store[1].appliedFilter)
+    store[1].appliedFilter = filter
+    assertSame(filter, store[1].appliedFilter)
+    assertNull(store[0].appliedFilter)
+
+    store[1].appliedFilter = null
+    assertNull(store[1].appliedFilter)
+  }
+
+  @Test(expected = UnsupportedOperationException::class)
+  fun testStoredEntryIndexCannotChange() {
+    buildStore(LogEntry("Line 1", LogLevel.INFO, null))[0].index = 5
+  }
+
+  @Test
+  fun testHeaderColumnsAndIndices() {
+    val first = LogStore.Chunk(LogStream.MAIN)
+    first.add("Line 0", LogLevel.INFO, LogStore.NO_TIMESTAMP, 10, 11, "TagA")
+    first.add("Line 1", LogLevel.INFO, LogStore.NO_TIMESTAMP, 20, 21, "TagB")
+    first.add("Line 2", LogLevel.INFO, LogStore.NO_TIMESTAMP)
+    val second = LogStore.Chunk(LogStream.SYSTEM)
+    second.add("Line 3", LogLevel.INFO, LogStore.NO_TIMESTAMP, 10, 12, "TagB")
+    second.add("Line 4", LogLevel.INFO, LogStore.NO_TIMESTAMP, 30, 31, "TagC")
+
+    // Entries of different chunks can be interleaved
+    val store = LogStore.Builder(5).apply {
+      add(first, 0)
+      add(second, 0)
+      add(first, 1)
+      add(second, 1)
+      add(first, 2)
+    }.build()
+
+    assertEquals(listOf(10, 10, 20, 30, -1), store.map { it.pid })
+    assertEquals(listOf(11, 12, 21, 31, -1), store.map { it.tid })
+    assertEquals(listOf("TagA", "TagB", "TagB", "TagC", null), store.map { it.tag })
+    assertEquals(listOf("TagA", "TagB", "TagC"), store.tags)
+    assertArrayEquals(intArrayOf(1, 2), store.getIndicesWithTag("TagB"))
+    assertArrayEquals(intArrayOf(0), store.getIndicesWithTag("TagA"))
+    assertArrayEquals(intArrayOf(), store.getIndicesWithTag("Unknown"))
+    assertArrayEquals(intArrayOf(10, 20, 30), store.pids)
+    assertArrayEquals(intArrayOf(0, 1), store.getIndicesWithPid(10))
+    assertArrayEquals(intArrayOf(), store.getIndicesWithPid(40))
+  }
+
+  @Test
+  fun testNoHeaderColumns() {
+    val store = buildStore(LogEntry("Line 1", LogLevel.INFO, null))
+
+    assertEquals(-1, store[0].pid)
+    assertEquals(-1, store[0].tid)
+    assertNull(store[0].tag)
+    assertTrue(store.tags.isEmpty())
+    assertEquals(0, store.pids.size)
+    assertEquals(-1, LogEntry("Standalone", LogLevel.INFO, null).pid)
+  }
+
+  @Test
+  fun testNoTimestamp() {
+    assertTrue(LogStore.NO_TIMESTAMP < LogStore.packTimestamp(LogTimestamp(0, 0, 0, 0, 0, 0)))
+    assertEquals(LogStore.NO_TIMESTAMP, LogStore.packTimestamp(null))
+    assertNull(LogStore.unpackTimestamp(LogStore.NO_TIMESTAMP))
+  }
+}
@@ -0,0 +1,63 @@
+package com.tibagni.logviewer.log
+
+import org.junit.Assert.*
+import org.junit.Test
+
+class LogTimestampTests {
+
+  @Test
+  fun testFields() {
+    val timestamp = LogTimestamp(12, 31, 23, 59, 58, 999999999)
+
+    assertEquals(12, timestamp.month)
+    assertEquals(31, timestamp.day)
+    assertEquals(23, timestamp.hour)
+    assertEquals(59, timestamp.minutes)
+    assertEquals(58, timestamp.seconds)
+    assertEquals(999999999, timestamp.hundredth)
+    assertEquals(timestamp, LogTimestamp.fromPacked(timestamp.packed))
+    assertEquals(LogTimestamp("12", "31", "23", "59", "58", "999999999"), timestamp)
+  }
+
+  @Test
+  fun testMaxFraction() {
+    assertEquals(Int.MAX_VALUE, LogTimestamp(1, 1, 0, 0, 0, Int.MAX_VALUE).hundredth)
+  }
+
+  @Test
+  fun testInvalidFieldsAreSaturated() {
+    val timestamp = LogTimestamp(99, 99, 99, 99, 99, 0)
+
+    assertEquals(15, timestamp.month)
+    assertEquals(31, timestamp.day)
+    assertEquals(31, timestamp.hour)
+    assertEquals(63, timestamp.minutes)
+    assertEquals(63, timestamp.seconds)
+  }
+
+  @Test
+  fun testCompareFollowsFieldOrder() {
+    val fields = listOf(
+      intArrayOf(1, 1, 0, 0, 0, 0),
+      intArrayOf(1, 1, 0, 0, 0, 1),
+      intArrayOf(1, 1, 0, 0, 0, Int.MAX_VALUE),
+      intArrayOf(1, 1, 0, 0, 1, 0),
+      intArrayOf(1, 1, 0, 59, 59, 999),
+      intArrayOf(1, 1, 23, 0, 0, 0),
+      intArrayOf(1, 31, 0, 0, 0, 0),
+      intArrayOf(12, 1, 0, 0, 0, 0),
+      intArrayOf(12, 1, 0, 0, 0, 0)
+    )
+
+    for (a in fields) {
+      for (b in fields) {
+        val expected = (0 until 6).map { a[it].compareTo(b[it]) }.firstOrNull { it != 0 } ?: 0
+        val timestampA = LogTimestamp(a[0], a[1], a[2], a[3], a[4], a[5])
+        val timestampB = LogTimestamp(b[0], b[1], b[2], b[3], b[4], b[5])
+
+        assertEquals(Integer.signum(expected), Integer.signum(timestampA.compareTo(timestampB)))
+        assertEquals(expected == 0, timestampA == timestampB)
+      }
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package com.tibagni.logviewer.log
+
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.File
+import java.nio.charset.Charset
+import java.nio.charset.StandardCharsets
+
+class MappedFileLogReaderTests {
+  private var temporaryFile: File? = null
+
+  @After
+  fun tearDown() {
+    temporaryFile?.delete()
+  }
+
+  private fun createTempFile(content: String, charset: Charset = StandardCharsets.UTF_8): File {
+    return File.createTempFile("log", "txt").apply {
+      writeText(content, charset)
+      temporaryFile = this
+    }
+  }
+
+  @Test
+  fun testReadAsciiFile() {
+    val content = "01-06 20:46:26.091 821-2168/? V/ThermalMonitor: Foreground Application Changed\n" +
+        "01-06 20:46:26.091 821-2168/? D/ThermalMonitor: Foreground Application Changed\n"
+    val file = createTempFile(content)
+    val reader = MappedFileLogReader(arrayOf(file))
+
+    reader.readLogs(StandardCharsets.UTF_8)
+    val text = reader.get(file.path)
+
+    assertEquals(1, reader.size())
+    assertEquals(setOf(file.path), reader.availableLogPaths)
+    assertEquals(content.length, text.length)
+    assertEquals('0', text[0])
+    assertEquals('\n', text[content.indexOf('\n')])
+    assertEquals(content, text.toString())
+  }
+
+  @Test
+  fun testDecodeOnlyWhenConvertedToString() {
+    val firstLine = "01-06 20:46:26.091 821-2168/? I/Test: ação é ótima"
+    val content = "$firstLine\n01-06 20:46:26.092 821-2168/? I/Test: second"
+    val file = createTempFile(content)
+    val reader = MappedFileLogReader(arrayOf(file))
+
+    reader.readLogs(StandardCharsets.UTF_8)
+    val text = reader.get(file.path)
+
+    // Indices are byte offsets, so the multi-byte characters are reported as a replacement char
+    val byteLength = firstLine.toByteArray(StandardCharsets.UTF_8).size
+    assertEquals('\n', text[byteLength])
+    assertEquals(MappedLogText.NON_ASCII_CHAR, text[firstLine.indexOf('ç')])
+
+    // But the lines are decoded correctly
+    assertEquals(firstLine, text.subSequence(0, byteLength).toString())
+    assertEquals(content, text.toString())
+  }
+
+  @Test
+  fun testReadUtf16File() {
+    val content = "01-06 20:46:26.091 821-2168/? I/Test: UTF-16 text\n"
+    val file = createTempFile(content, StandardCharsets.UTF_16LE)
+    val reader = MappedFileLogReader(arrayOf(file))
+
+    reader.readLogs(StandardCharsets.UTF_16LE)
+
+    assertEquals(content, reader.get(file.path).toString())
+  }
+
+  @Test
+  fun testSupportedCharsets() {
+    assertTrue(MappedLogText.isSupportedCharset(StandardCharsets.UTF_8))
+    assertTrue(MappedLogText.isSupportedCharset(StandardCharsets.US_ASCII))
+    assertTrue(MappedLogText.isSupportedCharset(StandardCharsets.ISO_8859_1))
+    assertFalse(MappedLogText.isSupportedCharset(StandardCharsets.UTF_16))
+    assertFalse(MappedLogText.isSupportedCharset(StandardCharsets.UTF_16BE))
+    assertFalse(MappedLogText.isSupportedCharset(StandardCharsets.UTF_16LE))
+  }
+
+  @Test(expected = LogReaderException::class)
+  fun testReadInvalidFile() {
+    MappedFileLogReader(arrayOf(File("invalid"))).readLogs(StandardCharsets.UTF_8)
+  }
+
+  @Test(expected = LogReaderException::class)
+  fun testReadNoFiles() {
+    MappedFileLogReader(arrayOf()).readLogs(StandardCharsets.UTF_8)
+  }
+}
@@ -0,0 +1,100 @@
+package com.tibagni.logviewer.log
+
+import com.tibagni.logviewer.filter.Filter
+import org.junit.Assert.*
+import org.junit.Test
+import java.awt.Color
+import java.util.concurrent.CancellationException
+
+class SearchResultTests {
+  private val entries = (0 until 50_000).map {
+    LogEntry(if (it % 7 == 3) "ActivityManager: Start proc $it" else "Other: log $it", LogLevel.DEBUG, null)
+  }
+
+  private val filter = Filter("search", "start proc", Color.RED, LogLevel.DEBUG, false)
+
+  @Test
+  fun testSearch() {
+    var firstMatch = -1
+    val result = SearchResult.search(entries, filter, SearchResult.EMPTY, { false }) { firstMatch = it }
+
+    val expected = entries.indices.filter { it % 7 == 3 }
+    assertEquals(expected, (0 until result.size()).map { result.getRow(it) })
+    assertEquals(3, firstMatch)
+    assertSame(filter, result.filter)
+    assertTrue(result.isMatch(10))
+    assertFalse(result.isMatch(11))
+  }
+
+  @Test
+  fun testSearchWithoutMatches() {
+    var firstMatch = -1
+    val noMatches = Filter("search", "nothing here", Color.RED, LogLevel.DEBUG, false)
+    val result = SearchResult.search(entries, noMatches, SearchResult.EMPTY, { false }) { firstMatch = it }
+
+    assertTrue(result.isEmpty)
+    assertEquals(-1, firstMatch)
+  }
+
+  @Test(expected = CancellationException::class)
+  fun testSearchCancelled() {
+    SearchResult.search(entries, filter, SearchResult.EMPTY, { true }) { fail("Should not find anything") }
+  }
+
+  @Test
+  fun testRefineSearch() {
+    val checked = mutableSetOf<Int>()
+    val countingEntries = object : AbstractList<LogEntry>() {
+      override val size = entries.size
+      override fun get(index: Int): LogEntry {
+        synchronized(checked) { checked.add(index) }
+        return entries[index]
+      }
+    }
+    val previous = SearchResult.search(countingEntries, filter, SearchResult.EMPTY, { false }) { }
+    checked.clear()
+
+    var firstMatch = -1
+    val refining = Filter("search", "start proc 1", Color.RED, LogLevel.DEBUG, false)
+    val result = SearchResult.search(countingEntries, refining, previous, { false }) { firstMatch = it }
+
+    val expected = entries.indices.filter { it % 7 == 3 && entries[it].logText.contains("Start proc 1") }
+    assertEquals(expected, (0 until result.size()).map { result.getRow(it) })
+    assertEquals(expected[0], firstMatch)
+    assertEquals(previous.size(), checked.size)
+  }
+
+  @Test
+  fun testSearchIsNotRefinedForOtherEntries() {
+    val previous = SearchResult.search(entries.subList(0, 30), filter, SearchResult.EMPTY, { false }) { }
+
+    // The rows of the previous result are not valid for other entries, even if the filter is narrower
+    val refining = Filter("search", "start proc 1", Color.RED, LogLevel.DEBUG, false)
+    val result = SearchResult.search(entries, refining, previous, { false }) { }
+    assertEquals(entries.count { it.logText.contains("Start proc 1") }, result.size())
+    assertSame(entries, result.entries)
+  }
+
+  @Test
+  fun testSearchIsNotRefinedForUnrelatedFilters() {
+    val previous = SearchResult.search(entries, filter, SearchResult.EMPTY, { false }) { }
+
+    val other = Filter("search", "other: log 1", Color.RED, LogLevel.DEBUG, false)
+    val result = SearchResult.search(entries, other, previous, { false }) { }
+    assertEquals(entries.count { it.logText.startsWith("Other: log 1") }, result.size())
+  }
+
+  @Test
+  fun testFindMatchesAround() {
+    val result = SearchResult.search(entries.subList(0, 30), filter, SearchResult.EMPTY, { false }) { }
+
+    // Matches at rows 3, 10, 17 and 24
+    assertEquals(0, result.findFirstAfter(-1))
+    assertEquals(1, result.findFirstAfter(3))
+    assertEquals(1, result.findFirstAfter(5))
+    assertEquals(-1, result.findFirstAfter(24))
+    assertEquals(3, result.findLastBefore(29))
+    assertEquals(2, result.findLastBefore(24))
+    assertEquals(-1, result.findLastBefore(3))
+  }
+}
@@ -0,0 +1,139 @@
+package com.tibagni.logviewer.log
+
+import com.tibagni.logviewer.ProgressReporter
+import com.tibagni.logviewer.filter.Filter
+import com.tibagni.logviewer.filter.FilterMatchCache
+import com.tibagni.logviewer.filter.Filters
+import org.junit.Assert.*
+import org.junit.Test
+import java.awt.Color
+import java.util.concurrent.CancellationException
+
+class TextIndexTests {
+  private val noProgress = object : ProgressReporter {
+    override fun onProgress(progress: Int, description: String?) {}
+  }
+
+  private fun buildStore(texts: List<String>): LogStore {
+    val chunk = LogStore.Chunk(LogStream.MAIN)
+    texts.forEach { chunk.add(it, LogLevel.DEBUG, LogStore.NO_TIMESTAMP) }
+    return LogStore.Builder(texts.size).apply { addAll(chunk) }.build()
+  }
+
+  // One rare line for each 1000 lines
+  private val store = buildStore((0 until 20_000).map {
+    if (it % 1000 == 500) "ActivityManager: Start proc $it for activity" else "Other: log line $it"
+  })
+
+  private fun filter(pattern: String, caseSensitive: Boolean = false) =
+    Filter("filter", pattern, Color.RED, LogLevel.VERBOSE, caseSensitive)
+
+  private fun candidates(bits: LongArray?, size: Int) =
+    (0 until size).filter { bits == null || (bits[it ushr 6] and (1L shl it)) != 0L }
+
+  private fun assertCandidatesHaveAllMatches(index: TextIndex, entries: List<LogEntry>, filter: Filter) {
+    val found = candidates(index.find(filter, entries), entries.size)
+    entries.indices.filter { filter.appliesTo(entries[it]) }.forEach { assertTrue(found.contains(it)) }
+  }
+
+  @Test
+  fun testFindCandidates() {
+    val index = TextIndex(store).apply { build { false } }
+    val simple = filter("start proc")
+
+    val found = candidates(index.find(simple, store), store.size)
+    assertTrue(found.size < store.size / 10)
+    assertCandidatesHaveAllMatches(index, store, simple)
+    assertTrue(index.memoryUsage > 0)
+  }
+
+  @Test
+  fun testFindCandidatesForRegex() {
+    val index = TextIndex(store).apply { build { false } }
+    val regex = filter("Start proc \\d+ for")
+
+    assertTrue(candidates(index.find(regex, store), store.size).size < store.size / 10)
+    assertCandidatesHaveAllMatches(index, store, regex)
+  }
+
+  @Test
+  fun testAllLinesAreCandidatesWithoutRequiredTexts() {
+    val index = TextIndex(store).apply { build { false } }
+
+    assertNull(index.find(filter("ab"), store))
+    assertNull(index.find(filter(".*"), store))
+    assertNull(index.find(filter("pr\u00F6c"), store))
+  }
+
+  @Test
+  fun testFindCandidatesInSubList() {
+    val index = TextIndex(store).apply { build { false } }
+    val subList = store.subList(1234, 5678)
+    val copy = ArrayList(subList)
+
+    assertCandidatesHaveAllMatches(index, subList, filter("start proc"))
+    assertArrayEquals(index.find(filter("start proc"), subList), index.find(filter("start proc"), copy))
+  }
+
+  @Test
+  fun testEntriesFromOtherLogsAreCandidates() {
+    val index = TextIndex(store).apply { build { false } }
+    val entries = listOf(store[0], LogEntry("Not indexed", LogLevel.DEBUG, null), store[500])
+
+    assertEquals(listOf(1, 2), candidates(index.find(filter("start proc"), entries), entries.size))
+  }
+
+  @Test
+  fun testIgnoreCase() {
+    val entries = buildStore(listOf("one", "START PROC", "two", "\u017Ftart pro\u212A", "three"))
+    val index = TextIndex(entries).apply { build { false } }
+
+    assertCandidatesHaveAllMatches(index, entries, filter("start proc"))
+    assertCandidatesHaveAllMatches(index, entries, filter("Start Proc", true))
+    assertCandidatesHaveAllMatches(index, entries, filter("start prok"))
+  }
+
+  @Test
+  fun testPartialIndex() {
+    // Big enough to be indexed in more than one batch
+    val bigStore = buildStore((0 until 150_000).map { if (it % 1000 == 500) "Start proc $it" else "Line $it" })
+    val index = TextIndex(bigStore)
+    var batches = 0
+    try {
+      index.build { batches++ > 0 }
+      fail("Build should have been cancelled")
+    } catch (e: CancellationException) {
+      // Expected
+    }
+
+    assertTrue(index.indexedBlocksForTesting > 0)
+    assertTrue(index.indexedBlocksForTesting * TextIndex.LINES_PER_BLOCK < bigStore.size)
+    assertCandidatesHaveAllMatches(index, bigStore, filter("start proc"))
+  }
+
+  @Test
+  fun testNothingIndexed() {
+    assertNull(TextIndex(store).find(filter("start proc"), store))
+  }
+
+  @Test
+  fun testApplyFiltersWithIndex() {
+    val index = TextIndex(store).apply { build { false } }
+    val filters = arrayOf(filter("start proc 1"), filter("line 1999\\d"), filter("activity"))
+
+    val expected = Filters.applyFilters(store, filters, FilterMatchCache(), noProgress)
+    val result = Filters.applyFilters(store, filters, FilterMatchCache(), index, noProgress)
+
+    assertEquals(expected.filteredLogs, result.filteredLogs)
+    filters.indices.forEach { assertArrayEquals(expected.getFilterPositions(it), result.getFilterPositions(it)) }
+  }
+
+  @Test
+  fun testSearchWithIndex() {
+    val index = TextIndex(store).apply { build { false } }
+    val search = filter("start proc 15")
+
+    val result = SearchResult.search(store, search, SearchResult.EMPTY, index, { false }) { }
+    assertEquals(store.indices.filter { search.appliesTo(store[it]) }, (0 until result.size()).map { result.getRow(it) })
+  }
+}
@@ -0,0 +1,83 @@
+package com.tibagni.logviewer.log
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.*
+
+class TimestampIndexTests {
+
+  private fun entry(seconds: Int, hundredth: Int) =
+    LogEntry("Text", LogLevel.DEBUG, LogTimestamp(10, 12, 22, 32, seconds, hundredth))
+
+  private fun noTimestampEntry() = LogEntry("Text", LogLevel.DEBUG, null)
+
+  // Same rules the presenter used to apply entry by entry
+  private fun findLinearly(entries: List<LogEntry>, packedTimestamp: Long): Int {
+    if (entries.isEmpty()) return -1
+    val firstNotBefore = entries.indexOfFirst { it.packedTimestamp >= packedTimestamp }
+    return when {
+      firstNotBefore < 0 -> entries.lastIndex
+      entries[firstNotBefore].packedTimestamp == packedTimestamp -> firstNotBefore
+      else -> maxOf(firstNotBefore - 1, 0)
+    }
+  }
+
+  private fun packed(seconds: Int, hundredth: Int) = LogTimestamp(10, 12, 22, 32, seconds, hundredth).packed
+
+  @Test
+  fun testEmpty() {
+    assertEquals(-1, TimestampIndex.create(emptyList()).findClosestIndex(packed(1, 0)))
+  }
+
+  @Test
+  fun testFindClosestIndex() {
+    val entries = listOf(entry(50, 10), entry(51, 32), entry(51, 32), entry(51, 500), entry(53, 0))
+    val index = TimestampIndex.create(entries)
+
+    assertTrue(index.isSortedForTesting)
+    assertEquals(1, index.findClosestIndex(packed(51, 32)))
+    assertEquals(2, index.findClosestIndex(packed(51, 132)))
+    assertEquals(3, index.findClosestIndex(packed(52, 0)))
+    assertEquals(0, index.findClosestIndex(packed(49, 0)))
+    assertEquals(0, index.findClosestIndex(packed(50, 10)))
+    assertEquals(4, index.findClosestIndex(packed(53, 0)))
+    assertEquals(4, index.findClosestIndex(packed(59, 0)))
+  }
+
+  @Test
+  fun testUnsortedEntries() {
+    val entries = listOf(entry(50, 0), entry(55, 0), entry(51, 0), entry(56, 0))
+    val index = TimestampIndex.create(entries)
+
+    assertFalse(index.isSortedForTesting)
+    assertEquals(0, index.findClosestIndex(packed(51, 0)))
+    assertEquals(1, index.findClosestIndex(packed(55, 0)))
+    assertEquals(3, index.findClosestIndex(packed(57, 0)))
+  }
+
+  @Test
+  fun testSameResultAsLinearSearch() {
+    val random = Random(14)
+    repeat(50) {
+      val entries = mutableListOf<LogEntry>()
+      repeat(random.nextInt(5)) { entries.add(noTimestampEntry()) }
+      var seconds = random.nextInt(3)
+      var hundredth = 0
+      repeat(random.nextInt(300)) {
+        if (random.nextInt(10) == 0) {
+          seconds += 1 + random.nextInt(2)
+          hundredth = 0
+        }
+        hundredth += random.nextInt(3)
+        entries.add(entry(seconds, hundredth))
+      }
+      val index = TimestampIndex.create(entries)
+
+      assertTrue(index.isSortedForTesting)
+      repeat(100) {
+        val target = packed(random.nextInt(seconds + 3), random.nextInt(hundredth + 3))
+        assertEquals(findLinearly(entries, target), index.findClosestIndex(target))
+      }
+    }
+  }
+}
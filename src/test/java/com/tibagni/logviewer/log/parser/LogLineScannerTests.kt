@@ -0,0 +1,179 @@
+package com.tibagni.logviewer.log.parser
+
+import com.tibagni.logviewer.log.LogLevel
+import com.tibagni.logviewer.log.LogTimestamp
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.*
+import java.util.regex.Pattern
+
+class LogLineScannerTests {
+    // The regular expressions the scanner replaces. They are the reference for the expected behavior
+    private val logStartPattern = "^\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}.*"
+    private val logLevelPattern = Pattern.compile("^\\d{2}-\\d{2}\\s\\d{2}:\\d{2}:\\d{2}.*?([VDIWE])")
+    private val logTimestampPattern =
+        Pattern.compile("^(\\d{1,2})-(\\d{1,2})\\s(\\d{1,2}):(\\d{1,2}):(\\d{1,2}).(\\d{3,})")
+
+    private val scanner = LogLineScanner()
+
+    private val parserTestsLines = listOf(
+        "01-06 20:46:26.091 821-2168/? V/ThermalMonitor: Foreground Application Changed: com.voidcorporation.carimbaai",
+        "01-06 20:46:26.091 821-2168/? D/ThermalMonitor: Foreground Application Changed: com.voidcorporation.carimbaai",
+        "01-06 20:46:42.501 821-2810/? I/ActivityManager: Process com.voidcorporation.carimbaai (pid 25175) (adj 0) has died.",
+        "01-06 20:46:39.491 821-1054/? W/ActivityManager:   Force finishing activity com.voidcorporation.carimbaai/.UserProfileActivity",
+        "01-06 20:46:39.481 25175-25175/? E/AndroidRuntime: FATAL EXCEPTION: main",
+        "10-12 22:33:46.839  3172  3172 V KeyguardStatusView: refresh statusview showing:true",
+        "10-12 22:53:16.205  3172  3172 D StatusBarKeyguardViewManager: requestUnlock collapse=true",
+        "10-12 22:32:50.264  2646  2664 I chatty  : uid=1000(system) batterystats-sy expire 13 lines",
+        "10-13 03:00:11.066   442  8037 W vold    : Failed to open none: No such file or directory",
+        "10-13 12:27:59.318 18114 18114 E ActivityThread: Activity com.facebook.katana.activity.FbMainTabActivity has leaked",
+        "01-06 20:46:42.501 821-1054/? I/WindowState: WIN DEATH: Window{431586d0 u0 com.voidcorporation.carimbaai}",
+        "10-12 22:32:50.264  2646  2664 I test  : Test log Test Log",
+        "10-12 22:32:50.264  2646  2664 I test  : Line 1" + System.lineSeparator() + "continuation of line 1",
+        "--------- beginning of main",
+        "continuation of line 1",
+        ""
+    )
+
+    private val edgeCases = listOf(
+        "10-12 22:32:50",
+        "10-12 22:32:50.26",
+        "10-12 22:32:50.2645678",
+        "10-12 22:32:50264 I test",
+        "10-12 22:32:5.264 I test",
+        "1-2 3:4:5.678 I test",
+        "10-12\t22:32:50.264 I test",
+        "10-12 22:32:50.264 no level here",
+        "10-12 22:32:50.264\nW in the next line",
+        "10-12 22:32:50\n264 I test",
+        "10-12 22:32:50.99999999999 I overflow",
+        "10-12 22:32:50.0000000000123 I leading zeros",
+        "100-12 22:32:50.264 I test",
+        "10-12 22:32:50.264",
+        "1a-12 22:32:50.264 I test",
+        " 10-12 22:32:50.264 I test"
+    )
+
+    @Test
+    fun testScannerMatchesRegexOnParserTestsLines() {
+        parserTestsLines.forEach { assertSameAsRegex(it) }
+    }
+
+    @Test
+    fun testScannerMatchesRegexOnEdgeCases() {
+        edgeCases.forEach { assertSameAsRegex(it) }
+    }
+
+    @Test
+    fun testScannerMatchesRegexOnRandomLines() {
+        val random = Random(42)
+        val alphabet = "0123456789-: .\t\r\nVDIWEx"
+        val template = "10-12 22:32:50.264 I "
+
+        repeat(20000) {
+            val line = StringBuilder()
+            template.forEach { c ->
+                // Keep most of the template so the interesting cases are common
+                line.append(if (random.nextInt(8) == 0) alphabet[random.nextInt(alphabet.length)] else c)
+            }
+            repeat(random.nextInt(6)) { line.append(alphabet[random.nextInt(alphabet.length)]) }
+
+            assertSameAsRegex(line.toString())
+        }
+    }
+
+    @Test
+    fun testTimestampAndLevel() {
+        assertTrue(scanner.scan("10-12 22:32:50.264  2646  2664 W chatty  : uid=1000(system)"))
+        assertEquals(LogLevel.WARNING, scanner.logLevel)
+        assertEquals(LogTimestamp(10, 12, 22, 32, 50, 264), scanner.createTimestamp())
+
+        assertFalse(scanner.scan("continuation of line 1"))
+        assertEquals(LogLevel.DEBUG, scanner.logLevel)
+        assertFalse(scanner.hasTimestamp())
+        assertNull(scanner.createTimestamp())
+    }
+
+    @Test
+    fun testThreadtimeHeader() {
+        assertTrue(scanner.scan("10-12 22:32:50.264  2646  2664 I chatty  : uid=1000(system) expire 13 lines"))
+        assertEquals(2646, scanner.pid)
+        assertEquals(2664, scanner.tid)
+        assertEquals("chatty", scanner.tag)
+
+        assertTrue(scanner.scan("10-13 03:00:11.066   442  8037 W vold    : Failed to open none: No such file"))
+        assertEquals(442, scanner.pid)
+        assertEquals(8037, scanner.tid)
+        assertEquals("vold", scanner.tag)
+    }
+
+    @Test
+    fun testStudioHeader() {
+        assertTrue(scanner.scan("01-06 20:46:39.481 25175-25175/? E/AndroidRuntime: FATAL EXCEPTION: main"))
+        assertEquals(25175, scanner.pid)
+        assertEquals(25175, scanner.tid)
+        assertEquals("AndroidRuntime", scanner.tag)
+
+        assertTrue(scanner.scan("01-06 20:46:42.501 821-2810/com.android.server I/ActivityManager: Process died"))
+        assertEquals(821, scanner.pid)
+        assertEquals(2810, scanner.tid)
+        assertEquals("ActivityManager", scanner.tag)
+    }
+
+    @Test
+    fun testNoHeader() {
+        listOf(
+            "10-12 22:32:50.264 no header here",
+            "10-12 22:32:50.264  2646  2664 I no tag separator",
+            "10-12 22:32:50.264  2646 I test  : no tid",
+            "10-12 22:32:50.264  2646  2664 Itest  : no space after the level",
+            "10-12 22:32:50.264 821-2810/? I test: studio without the level separator",
+            "continuation of line 1"
+        ).forEach {
+            scanner.scan(it)
+            assertEquals(it, -1, scanner.pid)
+            assertEquals(it, -1, scanner.tid)
+            assertNull(it, scanner.tag)
+        }
+    }
+
+    @Test
+    fun testUnicodeLineSeparatorDoesNotBreakLogLine() {
+        // This is the only (intentional) difference from the old regex based parser
+        val line = "10-12 22:32:50.264  2646  2664 I test  : a\u2028b"
+
+        assertFalse(line.matches(logStartPattern.toRegex()))
+        assertTrue(scanner.scan(line))
+        assertEquals(LogLevel.INFO, scanner.logLevel)
+    }
+
+    private fun assertSameAsRegex(line: String) {
+        val isLogLine = scanner.scan(line)
+
+        // Log lines are only checked for physical lines, which never have '\n' or '\r'
+        if (!line.contains('\n') && !line.contains('\r')) {
+            assertEquals("isLogLine: $line", line.matches(logStartPattern.toRegex()), isLogLine)
+        }
+        assertEquals("logLevel: $line", regexLogLevel(line), scanner.logLevel)
+        assertEquals("timestamp: $line", regexTimestamp(line), scanner.createTimestamp())
+    }
+
+    private fun regexLogLevel(line: String): LogLevel {
+        val matcher = logLevelPattern.matcher(line)
+        return if (matcher.find()) LogLevel.createFromStringLevel(matcher.group(1)) else LogLevel.DEBUG
+    }
+
+    private fun regexTimestamp(line: String): LogTimestamp? {
+        return try {
+            val matcher = logTimestampPattern.matcher(line)
+            if (matcher.find()) {
+                LogTimestamp(matcher.group(1), matcher.group(2), matcher.group(3),
+                    matcher.group(4), matcher.group(5), matcher.group(6))
+            } else {
+                null
+            }
+        } catch (e: NumberFormatException) {
+            null
+        }
+    }
+}
@@ -14,6 +14,7 @@ import org.mockito.Mock
 import org.mockito.Mockito.*
 import org.mockito.MockitoAnnotations
 import java.nio.charset.StandardCharsets
+import java.util.concurrent.CancellationException
 
 class ParserTests {
     private lateinit var logParser: LogParser
@@ -109,6 +110,33 @@ class ParserTests {
         assertArrayEquals(expectedLogs, actualLogs)
     }
 
+    @Test
+    fun testParseLogsInParallelSkipsFailedFile() {
+        val logNames = linkedSetOf("main", "system", "radio")
+        `when`(reader.availableLogPaths).thenReturn(logNames)
+        `when`(reader.get("main")).thenReturn("10-12 22:32:50.264  2646  2664 I test  : main log")
+        `when`(reader.get("system")).thenThrow(IllegalStateException("Failed to read"))
+        `when`(reader.get("radio")).thenReturn("10-12 22:32:50.265  2646  2664 I test  : radio log")
+
+        val parser = LogParser(reader, progressReporter, 3)
+        val entries = parser.parseLogs(StandardCharsets.UTF_8)
+
+        assertEquals(listOf("system"), parser.logsSkipped)
+        assertEquals(2, entries.size)
+        assertEquals("10-12 22:32:50.264  2646  2664 I test  : main log", entries[0].logText)
+        assertEquals("10-12 22:32:50.265  2646  2664 I test  : radio log", entries[1].logText)
+    }
+
+    @Test(expected = CancellationException::class)
+    fun testParseLogsCancelled() {
+        val logNames = linkedSetOf("main", "system")
+        `when`(reader.availableLogPaths).thenReturn(logNames)
+        `when`(reader.get(ArgumentMatchers.any())).thenReturn("10-12 22:32:50.264  2646  2664 I test  : log")
+        `when`(progressReporter.isCancelled).thenReturn(true)
+
+        LogParser(reader, progressReporter, 2).parseLogs(StandardCharsets.UTF_8)
+    }
+
     @Test
     fun testParseInvalidLogs() {
         val testLogLine = buildHugeLogPayload()
@@ -125,6 +153,101 @@ class ParserTests {
         assertEquals(LogParser.MAX_LOG_LINE_ALLOWED, parsedLogs[0].logText.length)
     }
 
+    @Test
+    fun testParseLogsWithDifferentLineBreaks() {
+        val logText = "10-12 22:32:50.264  2646  2664 I test  : Line 1\r\n" +
+                "continuation of line 1\n" +
+                "10-12 22:32:50.265  2646  2664 W test  : Line 2\r" +
+                "10-12 22:32:50.266  2646  2664 E test  : Line 3\n\n\r\n"
+
+        `when`(reader.availableLogPaths).thenReturn(setOf("main"))
+        `when`(reader.get(ArgumentMatchers.any())).thenReturn(logText)
+
+        val entries = logParser.parseLogs(StandardCharsets.UTF_8)
+
+        assertEquals(3, entries.size)
+        assertEquals("10-12 22:32:50.264  2646  2664 I test  : Line 1" + System.lineSeparator() +
+                "continuation of line 1", entries[0].logText)
+        assertEquals("10-12 22:32:50.265  2646  2664 W test  : Line 2", entries[1].logText)
+        assertEquals("10-12 22:32:50.266  2646  2664 E test  : Line 3", entries[2].logText)
+        assertEquals(LogLevel.WARNING, entries[1].logLevel)
+    }
+
+    @Test
+    fun testParseLogsInChunksMatchesSequentialParsing() {
+        val builder = StringBuilder()
+        builder.append("--------- beginning of main\n")
+        repeat(50) { i ->
+            builder.append("10-12 22:32:${10 + i % 40}.264  2646  2664 I test  : Line $i\n")
+            if (i % 3 == 0) builder.append("continuation of line $i\n")
+            if (i % 7 == 0) builder.append("\r\n")
+            if (i == 20) builder.append(buildHugeLogPayload())
+        }
+        val logText = builder.toString()
+
+        `when`(reader.availableLogPaths).thenReturn(setOf("main"))
+        `when`(reader.get(ArgumentMatchers.any())).thenReturn(logText)
+
+        val sequentialParser = LogParser(reader, progressReporter, 1)
+        val sequentialEntries = sequentialParser.parseLogs(StandardCharsets.UTF_8)
+
+        val chunkedParser = LogParser(reader, progressReporter, 4)
+        chunkedParser.setMinChunkLengthForTesting(64)
+        val chunkedEntries = chunkedParser.parseLogs(StandardCharsets.UTF_8)
+
+        assertEquals(51, chunkedEntries.size)
+        assertEquals(sequentialEntries.map { it.logText }, chunkedEntries.map { it.logText })
+        assertEquals(sequentialEntries, chunkedEntries)
+        assertEquals(LogParser.MAX_LOG_LINE_ALLOWED, chunkedEntries[21].logText.length)
+    }
+
+    @Test
+    fun testParseLogsMergesFilesInTimestampOrder() {
+        val main = "10-12 22:32:50.100  2646  2664 I test  : main 1\n" +
+                "10-12 22:32:50.300  2646  2664 I test  : main 2\n" +
+                "10-12 22:32:50.300  2646  2664 I test  : main 3\n" +
+                "10-12 22:32:50.500  2646  2664 I test  : main 4"
+        val system = "10-12 22:32:50.400  2646  2664 I test  : system 1\n" +
+                "10-12 22:32:50.300  2646  2664 I test  : system 2\n" +
+                "10-12 22:32:50.000  2646  2664 I test  : system 3\n" +
+                "10-12 22:32:50.300  2646  2664 I test  : system 4"
+        val radio = "10-12 22:32:50.300  2646  2664 I test  : radio 1\n" +
+                "10-12 22:32:50.600  2646  2664 I test  : radio 2"
+        `when`(reader.availableLogPaths).thenReturn(linkedSetOf("main", "system", "radio"))
+        `when`(reader.get("main")).thenReturn(main)
+        `when`(reader.get("system")).thenReturn(system)
+        `when`(reader.get("radio")).thenReturn(radio)
+
+        val entries = LogParser(reader, progressReporter, 1).parseLogs(StandardCharsets.UTF_8)
+
+        // Same order of a stable sort: entries with the same timestamp keep the file order
+        assertEquals(listOf("system 3", "main 1", "main 2", "main 3", "system 2", "system 4", "radio 1",
+                "system 1", "main 4", "radio 2"), entries.map { it.logText.substringAfter(": ") })
+        assertEquals((0 until 10).toList(), entries.map { it.index })
+    }
+
+    @Test
+    fun testParseLogsHeaderColumns() {
+        val main = "10-12 22:32:50.100  2646  2664 I test  : main 1\n" +
+                "continuation of main 1\n" +
+                "10-12 22:32:50.300   100   101 W other : main 2\n" +
+                "10-12 22:32:50.500 no header"
+        val system = "10-12 22:32:50.200  2646  2700 D test  : system 1\n" +
+                "10-12 22:32:50.400 100-102/? E/system: system 2"
+        `when`(reader.availableLogPaths).thenReturn(linkedSetOf("main", "system"))
+        `when`(reader.get("main")).thenReturn(main)
+        `when`(reader.get("system")).thenReturn(system)
+
+        val entries = LogParser(reader, progressReporter, 1).parseLogs(StandardCharsets.UTF_8)
+
+        assertEquals(listOf(2646, 2646, 100, 100, -1), entries.map { it.pid })
+        assertEquals(listOf(2664, 2700, 101, 102, -1), entries.map { it.tid })
+        assertEquals(listOf("test", "test", "other", "system", null), entries.map { it.tag })
+        assertArrayEquals(intArrayOf(0, 1), entries.getIndicesWithTag("test"))
+        assertArrayEquals(intArrayOf(2, 3), entries.getIndicesWithPid(100))
+        assertArrayEquals(intArrayOf(100, 2646), entries.pids)
+    }
+
     private fun buildHugeLogPayload(): String {
         val builder = StringBuilder()
         builder.append("10-12 22:32:50.264  2646  2664 I test  : Test log Test Log")
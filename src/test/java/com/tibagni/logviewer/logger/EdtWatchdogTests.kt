@@ -0,0 +1,115 @@
+package com.tibagni.logviewer.logger
+
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class EdtWatchdogTests {
+  private lateinit var uiThread: ExecutorService
+  @Volatile
+  private var now = 0L
+  private lateinit var watchdog: EdtWatchdog
+
+  @Before
+  fun setUp() {
+    uiThread = Executors.newSingleThreadExecutor { Thread(it, "FakeEDT") }
+    watchdog = EdtWatchdog(200, { uiThread.execute(it) }, { now })
+  }
+
+  @After
+  fun tearDown() {
+    uiThread.shutdownNow()
+  }
+
+  private fun waitForUiThread() {
+    uiThread.submit {}.get(5, TimeUnit.SECONDS)
+  }
+
+  private fun blockUiThread(unblock: CountDownLatch, blocked: CountDownLatch) {
+    lateinit var thread: Thread
+    uiThread.execute {
+      thread = Thread.currentThread()
+      blocked.countDown()
+      unblock.await()
+    }
+    blocked.await(5, TimeUnit.SECONDS)
+
+    // Only report it as blocked once it is really waiting, so its stack already has 'await'
+    val timeout = System.currentTimeMillis() + 5000
+    while (thread.state != Thread.State.WAITING && System.currentTimeMillis() < timeout) {
+      Thread.sleep(1)
+    }
+  }
+
+  @Test
+  fun testRecordLatencies() {
+    watchdog.check()
+    waitForUiThread()
+    now += 50
+    val unblock = CountDownLatch(1)
+    blockUiThread(unblock, CountDownLatch(1))
+    watchdog.check()
+    now += 3
+    unblock.countDown()
+    waitForUiThread()
+
+    assertEquals(2, watchdog.latencies.totalCount)
+    assertEquals(3, watchdog.latencies.maxMs)
+    assertTrue(watchdog.stalls.isEmpty())
+  }
+
+  @Test
+  fun testDetectStall() {
+    // The first probe finds which thread is the UI thread
+    watchdog.check()
+    waitForUiThread()
+
+    val unblock = CountDownLatch(1)
+    blockUiThread(unblock, CountDownLatch(1))
+    watchdog.check()
+    now += 100
+    watchdog.check()
+    assertTrue(watchdog.stalls.isEmpty())
+
+    now += 150
+    watchdog.check()
+    // Only reported once
+    watchdog.check()
+    assertEquals(1, watchdog.stalls.size)
+    val stall = watchdog.stalls[0]
+    assertEquals(-1, stall.durationMs)
+    assertTrue(stall.stackTrace.any { it.methodName == "await" })
+
+    unblock.countDown()
+    waitForUiThread()
+    assertEquals(250, stall.durationMs)
+    assertEquals(250, watchdog.latencies.maxMs)
+  }
+
+  @Test
+  fun testUnknownUiThread() {
+    val unblock = CountDownLatch(1)
+    blockUiThread(unblock, CountDownLatch(1))
+    watchdog.check()
+    now += 1000
+    watchdog.check()
+
+    // No probe ran yet, so there is no stack to capture
+    assertTrue(watchdog.stalls.isEmpty())
+    unblock.countDown()
+    waitForUiThread()
+    assertEquals(1000, watchdog.latencies.maxMs)
+  }
+
+  @Test
+  fun testSampleInterval() {
+    assertEquals(50, EdtWatchdog(200).sampleIntervalMs)
+    assertEquals(10, EdtWatchdog(20).sampleIntervalMs)
+    assertEquals(100, EdtWatchdog(5000).sampleIntervalMs)
+  }
+}
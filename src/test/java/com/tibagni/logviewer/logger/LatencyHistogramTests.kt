@@ -0,0 +1,76 @@
+package com.tibagni.logviewer.logger
+
+import org.junit.Assert.*
+import org.junit.Test
+
+class LatencyHistogramTests {
+  @Test
+  fun testRecordInBuckets() {
+    val histogram = LatencyHistogram()
+    histogram.record(0)
+    histogram.record(1)
+    histogram.record(3)
+    histogram.record(3)
+    histogram.record(1000)
+
+    assertEquals(5, histogram.totalCount)
+    assertEquals(1000, histogram.maxMs)
+    // < 1 ms, < 2 ms, < 4 ms
+    assertEquals(1, histogram.count(0))
+    assertEquals(1, histogram.count(1))
+    assertEquals(2, histogram.count(2))
+    assertEquals(1024, histogram.upperBoundMs(10))
+    assertEquals(1, histogram.count(10))
+  }
+
+  @Test
+  fun testVeryLongLatencies() {
+    val histogram = LatencyHistogram()
+    histogram.record(60_000)
+
+    val lastBucket = histogram.bucketCount - 1
+    assertEquals(Long.MAX_VALUE, histogram.upperBoundMs(lastBucket))
+    assertEquals(1, histogram.count(lastBucket))
+    assertEquals(60_000, histogram.percentileMs(50.0))
+  }
+
+  @Test
+  fun testPercentiles() {
+    val histogram = LatencyHistogram()
+    assertEquals(0, histogram.percentileMs(50.0))
+
+    repeat(98) { histogram.record(5) }
+    histogram.record(100)
+    histogram.record(300)
+
+    assertEquals(8, histogram.percentileMs(50.0))
+    assertEquals(8, histogram.percentileMs(98.0))
+    assertEquals(128, histogram.percentileMs(99.0))
+    // Not above the max latency
+    assertEquals(300, histogram.percentileMs(100.0))
+  }
+
+  @Test
+  fun testReset() {
+    val histogram = LatencyHistogram()
+    histogram.record(5)
+    histogram.reset()
+
+    assertEquals(0, histogram.totalCount)
+    assertEquals(0, histogram.maxMs)
+  }
+
+  @Test
+  fun testDescribe() {
+    val histogram = LatencyHistogram()
+    histogram.record(5)
+    histogram.record(20_000)
+
+    assertEquals(
+      "    < 8 ms: 1\n" +
+          ">= 8192 ms: 1\n" +
+          "count=2 p50=8 ms p99=20000 ms max=20000 ms",
+      histogram.describe()
+    )
+  }
+}
@@ -1,7 +1,9 @@
 package com.tibagni.logviewer.rc
 
+import org.junit.Assert.assertEquals
 import org.junit.Assert.assertNotNull
 import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
 import org.junit.Before
 import org.junit.Test
 
@@ -40,6 +42,34 @@ class RuntimeConfigurationTests {
         assertNotNull(RuntimeConfiguration.getConfig(RuntimeConfiguration.CRASH_REPORT, CrashReportConfig::class.java))
     }
 
+    @Test
+    fun testTextIndexConfig() {
+        testRcConfig.parseConfig("textindex=on")
+
+        assertNull(RuntimeConfiguration.getConfig(RuntimeConfiguration.CRASH_REPORT, CrashReportConfig::class.java))
+        assertNotNull(RuntimeConfiguration.getConfig(RuntimeConfiguration.TEXT_INDEX, TextIndexConfig::class.java))
+        assertTrue(RuntimeConfiguration.getConfig(RuntimeConfiguration.TEXT_INDEX, TextIndexConfig::class.java)!!
+            .configValue)
+    }
+
+    @Test
+    fun testEdtWatchdogConfig() {
+        testRcConfig.parseConfig("edtwatchdog=250")
+
+        assertNull(RuntimeConfiguration.getConfig(RuntimeConfiguration.TEXT_INDEX, TextIndexConfig::class.java))
+        assertEquals(250L, RuntimeConfiguration.getConfig(RuntimeConfiguration.EDT_WATCHDOG,
+            EdtWatchdogConfig::class.java)!!.configValue)
+
+        testRcConfig.parseConfig("edtwatchdog=OFF")
+        assertEquals(EdtWatchdogConfig.THRESHOLD_OFF, RuntimeConfiguration.getConfig(RuntimeConfiguration.EDT_WATCHDOG,
+            EdtWatchdogConfig::class.java)!!.configValue)
+
+        testRcConfig.parseConfig("edtwatchdog=-3")
+        assertEquals(EdtWatchdogConfig.DEFAULT_THRESHOLD_MS,
+            RuntimeConfiguration.getConfig(RuntimeConfiguration.EDT_WATCHDOG, EdtWatchdogConfig::class.java)!!
+                .configValue)
+    }
+
     @Test
     fun testAllConfig() {
         testRcConfig.parseConfig("loglevel=verbose")
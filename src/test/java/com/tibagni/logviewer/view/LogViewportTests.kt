@@ -0,0 +1,75 @@
+package com.tibagni.logviewer.view
+
+import com.tibagni.logviewer.log.LogCellRenderer
+import com.tibagni.logviewer.log.LogEntry
+import com.tibagni.logviewer.log.LogLevel
+import org.junit.Assert.*
+import org.junit.Test
+import javax.swing.JScrollBar
+import javax.swing.table.AbstractTableModel
+
+class LogViewportTests {
+  private val renderer = LogCellRenderer()
+
+  private fun createViewport(entries: List<LogEntry>): LogViewport {
+    val model = object : AbstractTableModel() {
+      override fun getRowCount() = entries.size
+      override fun getColumnCount() = 1
+      override fun getValueAt(rowIndex: Int, columnIndex: Int) = entries[rowIndex]
+    }
+
+    return LogViewport(model).apply {
+      renderer = this@LogViewportTests.renderer
+      setSize(400, 100)
+    }
+  }
+
+  private fun LogViewport.rowHeight(entry: LogEntry) =
+    this@LogViewportTests.renderer.layoutRow(this, entry, width - scrollBar().preferredSize.width).height
+
+  private fun LogViewport.scrollBar() = getComponent(0) as JScrollBar
+
+  @Test
+  fun testScrollToTheEndOfLongLastRow() {
+    val entries = listOf("Log1", "Log2", "Log3", "long ".repeat(500)).map { LogEntry(it, LogLevel.INFO, null) }
+    val viewport = createViewport(entries)
+    val lineHeight = renderer.getLineHeight(viewport)
+    val lastRowHeight = viewport.rowHeight(entries[3])
+    assertTrue(lastRowHeight > viewport.height)
+
+    viewport.scrollLines(1000)
+    // The bottom of the last row is at the bottom of the viewport
+    val lastRowBottom = lastRowHeight - viewport.firstRowLineForTesting * lineHeight
+    assertEquals(3, viewport.firstRowForTesting)
+    assertTrue(lastRowBottom <= viewport.height && lastRowBottom > viewport.height - lineHeight)
+
+    // It does not scroll past the end
+    val lastLine = viewport.firstRowLineForTesting
+    viewport.scrollLines(1)
+    assertEquals(lastLine, viewport.firstRowLineForTesting)
+
+    viewport.scrollLines(-1000)
+    assertEquals(0, viewport.firstRowForTesting)
+    assertEquals(0, viewport.firstRowLineForTesting)
+
+    // The end of the scroll bar shows the end of the last row as well
+    viewport.scrollBar().value = viewport.scrollBar().maximum
+    assertEquals(3, viewport.firstRowForTesting)
+    assertEquals(lastLine, viewport.firstRowLineForTesting)
+  }
+
+  @Test
+  fun testScrollBarDoesNotScrollPastTheLastRow() {
+    val entries = (0 until 50).map { LogEntry("Log$it", LogLevel.INFO, null) }
+    val viewport = createViewport(entries)
+    val rowHeight = viewport.rowHeight(entries[0])
+
+    viewport.scrollBar().value = viewport.scrollBar().maximum
+
+    // The rows below the first one fill the viewport, with no blank space after the last one
+    val rowsShown = entries.size - viewport.firstRowForTesting
+    assertTrue(rowsShown * rowHeight <= viewport.height)
+    assertTrue((rowsShown + 1) * rowHeight > viewport.height)
+    assertEquals(0, viewport.firstRowLineForTesting)
+  }
+}